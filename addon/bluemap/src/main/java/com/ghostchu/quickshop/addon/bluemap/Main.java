@@ -1,10 +1,12 @@
 package com.ghostchu.quickshop.addon.bluemap;
 
 import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.event.*;
 import com.ghostchu.quickshop.api.localization.text.TextManager;
 import com.ghostchu.quickshop.api.shop.Shop;
-import com.ghostchu.quickshop.api.shop.ShopType;
-import com.ghostchu.quickshop.util.Util;
+import com.ghostchu.quickshop.util.logger.Log;
+import com.ghostchu.quickshop.util.paste.item.SubPasteItem;
+import com.ghostchu.quickshop.util.paste.util.HTMLTable;
 import de.bluecolored.bluemap.api.BlueMapAPI;
 import de.bluecolored.bluemap.api.BlueMapMap;
 import de.bluecolored.bluemap.api.BlueMapWorld;
@@ -14,18 +16,44 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
-public final class Main extends JavaPlugin implements Listener {
+public final class Main extends JavaPlugin implements Listener, SubPasteItem {
+    private static final String MARKER_SET_ID = "quickshop-hikari-shops";
+    private static final String MARKER_ID_PREFIX = "quickshop-hikari-shop";
     static Main instance;
     private QuickShop plugin;
-    private BlueMapAPI blueMapAPI;
+    private volatile BlueMapAPI blueMapAPI;
+    /**
+     * Shops waiting for marker rebuild, keyed by shop id
+     */
+    private final Map<Long, Shop> dirtyShops = new ConcurrentHashMap<>();
+    /**
+     * Marker ids waiting for removal
+     */
+    private final Set<String> removedMarkers = ConcurrentHashMap.newKeySet();
+    /**
+     * The stock captured by the last main-thread snapshot, used when the shop is unloaded
+     */
+    private final Map<Long, String> lastKnownStock = new HashMap<>();
+    private MarkerTemplate labelTemplate;
+    private MarkerTemplate detailTemplate;
+    private volatile CycleStats lastCycle = new CycleStats(0, 0, 0, 0);
+    private long totalCycles = 0;
+
     @Override
     public void onLoad() {
         instance = this;
@@ -34,23 +62,35 @@ public final class Main extends JavaPlugin implements Listener {
     @Override
     public void onDisable() {
         HandlerList.unregisterAll((Plugin) this);
+        plugin.getPasteManager().unregister(this, this);
     }
 
     @Override
     public void onEnable() {
         saveDefaultConfig();
         plugin = QuickShop.getInstance();
-        getLogger().info("Registering the per shop permissions...");
-            BlueMapAPI.onEnable(blueMapAPI -> {
-                getLogger().info("Found BlueMap loaded! Hooking!");
-                createMarkerSet();
-                Bukkit.getScheduler().runTaskTimerAsynchronously(this, ()->{
-                    updateAllMarkers();
-                }, 1, getConfig().getInt("refresh-per-seconds") * 20L);
+        loadTemplates();
+        plugin.getPasteManager().register(this, this);
+        BlueMapAPI.onEnable(api -> {
+            getLogger().info("Found BlueMap loaded! Hooking!");
+            this.blueMapAPI = api;
+            Bukkit.getScheduler().runTask(this, () -> {
+                Bukkit.getPluginManager().registerEvents(this, this);
+                markAllDirty();
+                Bukkit.getScheduler().runTaskTimer(this, this::runCycle, 1, getConfig().getInt("refresh-per-seconds") * 20L);
             });
+        });
+        BlueMapAPI.onDisable(api -> {
+            HandlerList.unregisterAll((Listener) this);
+            Bukkit.getScheduler().cancelTasks(this);
+            this.blueMapAPI = null;
+        });
+    }
 
-        BlueMapAPI.onDisable(api -> Bukkit.getScheduler().cancelTasks(this));
-        }
+    private void loadTemplates() {
+        this.labelTemplate = MarkerTemplate.compile(Objects.requireNonNull(getConfig().getString("marker-label", "")));
+        this.detailTemplate = MarkerTemplate.compile(Objects.requireNonNull(getConfig().getString("marker-detail", "")));
+    }
 
     @NotNull
     public String plain(@NotNull Component component) {
@@ -62,7 +102,7 @@ public final class Main extends JavaPlugin implements Listener {
         return plugin.getTextManager();
     }
 
-    public MarkerSet createMarkerSet(){
+    public MarkerSet createMarkerSet() {
         return MarkerSet.builder()
                 .defaultHidden(true)
                 .label(plain(text().of("addon.bluemap.markerset-title").forLocale()))
@@ -70,47 +110,254 @@ public final class Main extends JavaPlugin implements Listener {
                 .toggleable(true)
                 .build();
     }
-    private void updateAllMarkers() {
-        blueMapAPI.getWorlds().forEach(bWorld-> bWorld.getMaps().forEach(bMap-> bMap.getMarkerSets().remove("quickshop-hikari-shops")));
-        plugin.getShopManager().getAllShops().forEach(this::updateShopMarker);
+
+    /**
+     * Mark a shop need to rebuild its marker in next cycle
+     *
+     * @param shop The shop
+     */
+    public void markDirty(@NotNull Shop shop) {
+        dirtyShops.put(shop.getShopId(), shop);
+    }
+
+    /**
+     * Mark all shops need to rebuild their markers in next cycle
+     */
+    public void markAllDirty() {
+        plugin.getShopManager().getAllShops().forEach(this::markDirty);
     }
 
-    public void updateShopMarker(Shop shop) {
-        Optional<BlueMapWorld> bWorld = blueMapAPI.getWorld(shop.getLocation().getWorld());
-        if(bWorld.isEmpty()) return;
-        String shopName = shop.getShopName();
-        String posStr = String.format("%s %s, %s, %s", shop.getLocation().getWorld().getName(), shop.getLocation().getBlockX(), shop.getLocation().getBlockY(), shop.getLocation().getBlockZ());
-        if (shopName == null) {
-            shopName = posStr;
+    /**
+     * Take a main-thread snapshot of all dirty shops, then apply the markers off the main thread.
+     */
+    private void runCycle() {
+        if (blueMapAPI == null || (dirtyShops.isEmpty() && removedMarkers.isEmpty())) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        int budget = Math.max(1, getConfig().getInt("max-markers-per-cycle", 500));
+        List<MarkerSnapshot> snapshots = new ArrayList<>(Math.min(budget, dirtyShops.size()));
+        Iterator<Shop> iterator = dirtyShops.values().iterator();
+        while (iterator.hasNext() && snapshots.size() < budget) {
+            Shop shop = iterator.next();
+            iterator.remove();
+            MarkerSnapshot snapshot = snapshot(shop);
+            if (snapshot != null) {
+                snapshots.add(snapshot);
+            }
         }
-        for (BlueMapMap map : bWorld.get().getMaps()) {
-            MarkerSet markerSet = map.getMarkerSets().computeIfAbsent("quickshop-hikari-shops",(key)-> createMarkerSet());
-            String markerName = fillPlaceholders(getConfig().getString("marker-label"), shop);
-            String desc = fillPlaceholders(getConfig().getString("marker-detail"), shop);
+        List<String> removals = new ArrayList<>(removedMarkers);
+        removedMarkers.removeAll(removals);
+        long snapshotTime = System.nanoTime() - startTime;
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> applyMarkers(snapshots, removals, snapshotTime));
+    }
+
+    @Nullable
+    private MarkerSnapshot snapshot(@NotNull Shop shop) {
+        Location loc = shop.getLocation();
+        World world = loc.getWorld();
+        if (world == null) {
+            return null;
+        }
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("owner", plain(shop.ownerName()));
+        placeholders.put("item", shop.getItem().getType().name());
+        placeholders.put("price", String.valueOf(shop.getPrice()));
+        // Only count the stock of loaded shops, unloaded shops keep the stock of the last snapshot
+        placeholders.put("stock", shop.isLoaded() ? String.valueOf(shop.getRemainingStock()) : lastKnownStock.getOrDefault(shop.getShopId(), "?"));
+        if (shop.isLoaded()) {
+            lastKnownStock.put(shop.getShopId(), placeholders.get("stock"));
+        }
+        placeholders.put("type", shop.getShopType().name());
+        placeholders.put("location", loc.getX() + "," + loc.getY() + "," + loc.getZ());
+        return new MarkerSnapshot(MARKER_ID_PREFIX + shop.getShopId(), world, loc.getX(), loc.getY(), loc.getZ(),
+                labelTemplate.fill(placeholders), detailTemplate.fill(placeholders));
+    }
+
+    private void applyMarkers(@NotNull List<MarkerSnapshot> snapshots, @NotNull List<String> removals, long snapshotTime) {
+        BlueMapAPI api = this.blueMapAPI;
+        if (api == null) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        if (!removals.isEmpty()) {
+            for (BlueMapWorld bWorld : api.getWorlds()) {
+                for (BlueMapMap map : bWorld.getMaps()) {
+                    MarkerSet markerSet = map.getMarkerSets().get(MARKER_SET_ID);
+                    if (markerSet != null) {
+                        removals.forEach(markerSet.getMarkers()::remove);
+                    }
+                }
+            }
+        }
+        double maxDistance = getConfig().getDouble("max-distance");
+        for (MarkerSnapshot snapshot : snapshots) {
+            Optional<BlueMapWorld> bWorld = api.getWorld(snapshot.world());
+            if (bWorld.isEmpty()) {
+                continue;
+            }
             POIMarker marker = POIMarker.builder()
-                    .label(markerName)
-                    .position(shop.getLocation().getX(),
-                            shop.getLocation().getY(),
-                            shop.getLocation().getZ())
-                    .maxDistance(getConfig().getDouble("max-distance"))
-                    .detail(desc)
+                    .label(snapshot.label())
+                    .position(snapshot.x(), snapshot.y(), snapshot.z())
+                    .maxDistance(maxDistance)
+                    .detail(snapshot.detail())
                     .styleClasses()
                     .build();
-            markerSet.getMarkers().put("quickshop-hikari-shop"+shop.getShopId(), marker);
+            for (BlueMapMap map : bWorld.get().getMaps()) {
+                MarkerSet markerSet = map.getMarkerSets().computeIfAbsent(MARKER_SET_ID, (key) -> createMarkerSet());
+                markerSet.getMarkers().put(snapshot.markerId(), marker);
+            }
         }
+        lastCycle = new CycleStats(snapshots.size(), removals.size(), snapshotTime, System.nanoTime() - startTime);
+        totalCycles++;
+        Log.debug("BlueMap marker cycle: " + lastCycle);
     }
 
-    private String fillPlaceholders(String s, Shop shop){
-        Location loc = shop.getLocation();
-        String x = String.valueOf(loc.getX());
-        String y = String.valueOf(loc.getY());
-        String z = String.valueOf(loc.getZ());
-        s = s.replace("%owner%", plain(shop.ownerName()));
-        s = s.replace("%item%", shop.getItem().getType().name());
-        s = s.replace("%price%", String.valueOf(shop.getPrice()));
-        s = s.replace("%stock%", String.valueOf(shop.getRemainingStock()));
-        s = s.replace("%type%", shop.getShopType().name());
-        s = s.replace("%location%", x + "," + y + "," + z );
-        return s;
+    @EventHandler(ignoreCancelled = true)
+    public void onEvent(WorldLoadEvent event) {
+        markAllDirty();
+    }
+
+    @EventHandler(ignoreCancelled = true)
+    public void onEvent(QSConfigurationReloadEvent event) {
+        reloadConfig();
+        loadTemplates();
+        markAllDirty();
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEvent(ShopCreateSuccessEvent event) {
+        markDirty(event.getShop());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEvent(ShopDeleteEvent event) {
+        dirtyShops.remove(event.getShop().getShopId());
+        lastKnownStock.remove(event.getShop().getShopId());
+        removedMarkers.add(MARKER_ID_PREFIX + event.getShop().getShopId());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEvent(ShopPriceChangeEvent event) {
+        markDirty(event.getShop());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEvent(ShopItemChangeEvent event) {
+        markDirty(event.getShop());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEvent(ShopTypeChangeEvent event) {
+        markDirty(event.getShop());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEvent(ShopOwnershipTransferEvent event) {
+        markDirty(event.getShop());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEvent(ShopSuccessPurchaseEvent event) {
+        markDirty(event.getShop());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onEvent(ShopSignUpdateEvent event) {
+        // Sign updates are triggered by the stock/space changes
+        markDirty(event.getShop());
+    }
+
+    @Override
+    public @NotNull String genBody() {
+        CycleStats stats = lastCycle;
+        HTMLTable table = new HTMLTable(2, true);
+        table.insert("Pending Dirty Shops", dirtyShops.size());
+        table.insert("Pending Removals", removedMarkers.size());
+        table.insert("Total Cycles", totalCycles);
+        table.insert("Last Cycle Updated", stats.updated());
+        table.insert("Last Cycle Removed", stats.removed());
+        table.insert("Last Cycle Snapshot Time (Main Thread)", String.format("%.3fms", stats.snapshotNanos() / 1_000_000d));
+        table.insert("Last Cycle Apply Time (Async)", String.format("%.3fms", stats.applyNanos() / 1_000_000d));
+        return table.render();
+    }
+
+    @Override
+    public @NotNull String getTitle() {
+        return "BlueMap Markers";
+    }
+
+    @NotNull
+    public CycleStats getLastCycle() {
+        return lastCycle;
+    }
+
+    record MarkerSnapshot(@NotNull String markerId, @NotNull World world, double x, double y, double z,
+                          @NotNull String label, @NotNull String detail) {
+    }
+
+    public record CycleStats(int updated, int removed, long snapshotNanos, long applyNanos) {
+    }
+
+    /**
+     * A marker text template that split into literal and %placeholder% segments once,
+     * so filling it doesn't need to scan the string for every placeholder.
+     */
+    static final class MarkerTemplate {
+        private static final Pattern PLACEHOLDER_NAME = Pattern.compile("[A-Za-z_-]+");
+        private final List<String> segments;
+        private final List<Boolean> placeholderFlags;
+
+        private MarkerTemplate(List<String> segments, List<Boolean> placeholderFlags) {
+            this.segments = segments;
+            this.placeholderFlags = placeholderFlags;
+        }
+
+        @NotNull
+        static MarkerTemplate compile(@NotNull String template) {
+            List<String> segments = new ArrayList<>();
+            List<Boolean> flags = new ArrayList<>();
+            int cursor = 0;
+            while (cursor < template.length()) {
+                int start = template.indexOf('%', cursor);
+                int end = start == -1 ? -1 : template.indexOf('%', start + 1);
+                if (start == -1 || end == -1) {
+                    segments.add(template.substring(cursor));
+                    flags.add(false);
+                    break;
+                }
+                String name = template.substring(start + 1, end);
+                if (!PLACEHOLDER_NAME.matcher(name).matches()) {
+                    // Not a placeholder (e.g. "120%"), keep the percent sign as literal
+                    segments.add(template.substring(cursor, start + 1));
+                    flags.add(false);
+                    cursor = start + 1;
+                    continue;
+                }
+                if (start > cursor) {
+                    segments.add(template.substring(cursor, start));
+                    flags.add(false);
+                }
+                segments.add(name);
+                flags.add(true);
+                cursor = end + 1;
+            }
+            return new MarkerTemplate(List.copyOf(segments), List.copyOf(flags));
+        }
+
+        @NotNull
+        String fill(@NotNull Map<String, String> placeholders) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < segments.size(); i++) {
+                String segment = segments.get(i);
+                if (placeholderFlags.get(i)) {
+                    String value = placeholders.get(segment);
+                    builder.append(value != null ? value : "%" + segment + "%");
+                } else {
+                    builder.append(segment);
+                }
+            }
+            return builder.toString();
+        }
     }
 }
@@ -99,6 +99,9 @@ public final class Main extends JavaPlugin implements Listener, SlashCommandProv
     @Override
     public ReloadResult reloadModule() throws Exception {
         this.reloadConfig();
+        if (databaseHelper != null) {
+            databaseHelper.invalidateCache();
+        }
         return Reloadable.super.reloadModule();
     }
 
@@ -10,6 +10,8 @@ import com.ghostchu.quickshop.common.util.CommonUtil;
 import com.ghostchu.quickshop.common.util.JsonUtil;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logger.Log;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -19,10 +21,16 @@ import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class DiscordDatabaseHelper {
     private final Main plugin;
+    // Write-through settings cache, the notifications are checking the settings for every trade
+    private final Cache<UUID, NotificationSettings> settingsCache = CacheBuilder.newBuilder()
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .maximumSize(10000)
+            .build();
 
     public DiscordDatabaseHelper(@NotNull Main plugin, @NotNull SQLManager sqlManager, @NotNull String dbPrefix) throws SQLException {
         this.plugin = plugin;
@@ -45,31 +53,64 @@ public class DiscordDatabaseHelper {
         } else {
             settings.getSettings().put(feature, status);
         }
+        int result;
         try (SQLQuery query = DiscordTables.DISCORD_PLAYERS.createQuery()
                 .setLimit(1)
                 .addCondition("player", playerUuid)
                 .build().execute();
              ResultSet set = query.getResultSet()) {
             if (set.next()) {
-                return DiscordTables.DISCORD_PLAYERS.createUpdate()
+                result = DiscordTables.DISCORD_PLAYERS.createUpdate()
                         .setLimit(1)
                         .addCondition("player", playerUuid)
                         .setColumnValues("notifaction", JsonUtil.getGson().toJson(settings))
                         .build().execute();
             } else {
-                return DiscordTables.DISCORD_PLAYERS.createInsert()
+                result = DiscordTables.DISCORD_PLAYERS.createInsert()
                         .setColumnNames("player", "notifaction")
                         .setParams(playerUuid, JsonUtil.getGson().toJson(settings))
                         .returnGeneratedKey()
                         .execute();
             }
+        } catch (SQLException e) {
+            // Database state is unknown, load it again next time
+            settingsCache.invalidate(playerUuid);
+            throw e;
         }
-
+        settingsCache.put(playerUuid, copyOf(settings));
+        return result;
     }
 
     @NotNull
     public NotificationSettings getPlayerNotifactionSetting(@NotNull UUID uuid) throws SQLException {
         Util.ensureThread(true);
+        NotificationSettings cached = settingsCache.getIfPresent(uuid);
+        if (cached != null) {
+            return copyOf(cached);
+        }
+        NotificationSettings settings = loadPlayerNotifactionSetting(uuid);
+        settingsCache.put(uuid, copyOf(settings));
+        return settings;
+    }
+
+    /**
+     * Drop all cached settings, the default values may changed after reloading
+     */
+    public void invalidateCache() {
+        settingsCache.invalidateAll();
+    }
+
+    @NotNull
+    private NotificationSettings copyOf(@NotNull NotificationSettings settings) {
+        Map<NotificationFeature, Boolean> map = new HashMap<>();
+        if (settings.getSettings() != null) {
+            map.putAll(settings.getSettings());
+        }
+        return new NotificationSettings(map);
+    }
+
+    @NotNull
+    private NotificationSettings loadPlayerNotifactionSetting(@NotNull UUID uuid) throws SQLException {
         try (SQLQuery query = DiscordTables.DISCORD_PLAYERS.createQuery().selectColumns("notifaction").addCondition("player",
                 uuid).setLimit(1).build().execute(); ResultSet set = query.getResultSet()) {
             if (set.next()) {
@@ -2,28 +2,27 @@ package com.ghostchu.quickshop.addon.discordsrv.message;
 
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.addon.discordsrv.parser.EmbedMessageParser;
+import com.ghostchu.quickshop.addon.discordsrv.parser.EmbedTemplate;
 import com.ghostchu.quickshop.api.obj.QUser;
-import github.scarsz.discordsrv.dependencies.jda.api.EmbedBuilder;
+import com.ghostchu.simplereloadlib.ReloadResult;
+import com.ghostchu.simplereloadlib.Reloadable;
 import github.scarsz.discordsrv.dependencies.jda.api.entities.MessageEmbed;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
-import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class MessageRepository {
+public class MessageRepository implements Reloadable {
     private static final String ADDON_TRANSLATION_KEY_PREFIX = "addon.discord.discord-messages.";
-    private final static String ZERO_WIDTH_SPACE = "\u200E";
     private final QuickShop plugin;
     private final EmbedMessageParser parser = new EmbedMessageParser();
+    // Compiled templates, key is "locale:message key"
+    private final Map<String, EmbedTemplate> compiledTemplates = new ConcurrentHashMap<>();
 
     public MessageRepository(QuickShop plugin) {
         this.plugin = plugin;
+        plugin.getReloadManager().register(this);
     }
 
     @AutoRegisterMessage(key = "sold-to-your-shop")
@@ -33,86 +32,23 @@ public class MessageRepository {
 
     @NotNull
     private MessageEmbed generateFromTemplate(@NotNull String key, @NotNull QUser langUser, @NotNull Map<String, String> placeHolders) {
-        return applyPlaceHolders(parser.parse(textOfString(langUser, key)), placeHolders);
+        String locale = plugin.text().findRelativeLanguages(langUser, false).getLocale();
+        EmbedTemplate template = compiledTemplates.computeIfAbsent(locale + ":" + key, k -> parser.compile(textOfString(locale, key)));
+        return template.build(placeHolders);
     }
 
     @NotNull
-    private MessageEmbed applyPlaceHolders(@NotNull MessageEmbed embed, @NotNull Map<String, String> placeholders) {
-        EmbedBuilder builder = new EmbedBuilder(embed);
-        for (Map.Entry<String, String> entry : placeholders.entrySet()) {
-            if (StringUtils.isEmpty(entry.getValue())) {
-                entry.setValue(ZERO_WIDTH_SPACE);
-            }
-        }
-        builder.setTitle(applyPlaceHolders(embed.getTitle(), placeholders));
-        builder.setDescription(applyPlaceHolders(embed.getDescription(), placeholders));
-        if (embed.getAuthor() != null) {
-            MessageEmbed.AuthorInfo authorInfo = applyPlaceHolders(embed.getAuthor(), placeholders);
-            if (authorInfo != null) {
-                builder.setAuthor(authorInfo.getName(), authorInfo.getUrl(), authorInfo.getIconUrl());
-            }
-        }
-        if (embed.getImage() != null) {
-            builder.setImage(applyPlaceHolders(embed.getImage().getUrl(), placeholders));
-        }
-        if (embed.getThumbnail() != null) {
-            builder.setThumbnail(applyPlaceHolders(embed.getThumbnail().getUrl(), placeholders));
-        }
-        builder.setTimestamp(Instant.now());
-        if (embed.getFooter() != null) {
-            String text = applyPlaceHolders(embed.getFooter().getText(), placeholders);
-            String url = applyPlaceHolders(embed.getFooter().getIconUrl(), placeholders);
-            builder.setFooter(text, url);
-        }
-        List<MessageEmbed.Field> newFields = new ArrayList<>();
-        for (MessageEmbed.Field field : builder.getFields()) {
-            String title = applyPlaceHolders(field.getName(), placeholders);
-            String value = applyPlaceHolders(field.getValue(), placeholders);
-            newFields.add(new MessageEmbed.Field(title, value, field.isInline()));
-        }
-        builder.clearFields();
-        newFields.forEach(builder::addField);
-        return builder.build();
-    }
-
-    @NotNull
-    private String textOfString(@Nullable QUser langUser, @NotNull String key) {
+    private String textOfString(@NotNull String locale, @NotNull String key) {
         return PlainTextComponentSerializer.plainText().serialize(plugin.text().of(ADDON_TRANSLATION_KEY_PREFIX + key)
-                .forLocale(plugin.text().findRelativeLanguages(langUser, false).getLocale()));
-    }
-
-    @Nullable
-    private String applyPlaceHolders(@Nullable String string, @NotNull Map<String, String> placeholders) {
-        if (string == null) {
-            return null;
-        }
-        for (Map.Entry<String, String> entry : placeholders.entrySet()) {
-            String value = entry.getValue();
-            if (value == null) {
-                value = "";
-            }
-            string = string.replace("%%" + entry.getKey() + "%%", value);
-        }
-        return string;
-    }
-
-    @Nullable
-    private MessageEmbed.AuthorInfo applyPlaceHolders(@Nullable MessageEmbed.AuthorInfo info, @NotNull Map<String, String> placeholders) {
-        if (info == null) {
-            return null;
-        }
-        String iconUrl = info.getIconUrl();
-        String name = info.getName();
-        String url = info.getUrl();
-        String proxyUrl = info.getProxyIconUrl();
-        // apply
-        iconUrl = applyPlaceHolders(iconUrl, placeholders);
-        name = applyPlaceHolders(name, placeholders);
-        url = applyPlaceHolders(url, placeholders);
-        proxyUrl = applyPlaceHolders(proxyUrl, placeholders);
-        return new MessageEmbed.AuthorInfo(name, url, iconUrl, proxyUrl);
+                .forLocale(locale));
     }
 
+    @Override
+    public ReloadResult reloadModule() throws Exception {
+        // Translations may changed, compile them again when next used
+        compiledTemplates.clear();
+        return Reloadable.super.reloadModule();
+    }
 
     @AutoRegisterMessage(key = "bought-from-your-shop")
     public MessageEmbed boughtFromYourShop(@NotNull QUser langUser, @NotNull Map<String, String> placeHolders) {
@@ -1,85 +1,52 @@
 package com.ghostchu.quickshop.addon.discordsrv.parser;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.ghostchu.quickshop.common.util.CommonUtil;
 import com.ghostchu.quickshop.common.util.JsonUtil;
-import com.google.common.reflect.TypeToken;
-import github.scarsz.discordsrv.dependencies.jda.api.EmbedBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import github.scarsz.discordsrv.dependencies.jda.api.entities.MessageEmbed;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
-import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 public class EmbedMessageParser {
-    private final static String ZERO_WIDTH_SPACE = "\u200E";
-
     @NotNull
     public MessageEmbed parse(@NotNull String json) {
-        // test json
-        if (!CommonUtil.isJson(json)) {
+        return compile(json).build(Collections.emptyMap());
+    }
+
+    /**
+     * Parse the json template once into a pre-compiled template, the placeholders will be filled when building
+     *
+     * @param json The json template
+     * @return The compiled template
+     */
+    @NotNull
+    public EmbedTemplate compile(@NotNull String json) {
+        JsonElement element;
+        try {
+            element = JsonParser.parseString(json);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Invalid json: " + json, e);
+        }
+        if (!element.isJsonObject()) {
             throw new IllegalArgumentException("Invalid json: " + json);
         }
-        // map check
-        Map<String, Object> map = JsonUtil.getGson().fromJson(json, new TypeToken<Map<String, Object>>() {
-        }.getType());
-        if (!map.containsKey("embed") && map.containsKey("embeds")) {
+        JsonObject object = element.getAsJsonObject();
+        if (!object.has("embed") && object.has("embeds")) {
             throw new IllegalArgumentException("json argument are multiple embeds! only single embed message is supported!");
         }
-        PackageDTO packageDto = JsonUtil.getGson().fromJson(json, PackageDTO.class);
+        PackageDTO packageDto = JsonUtil.getGson().fromJson(object, PackageDTO.class);
         PackageDTO.EmbedDTO dto = packageDto.getEmbed();
-        EmbedBuilder builder = new EmbedBuilder();
-        if (dto.getTitle() != null) {
-            builder.setTitle(dto.getTitle());
-        }
-        if (dto.getDescription() != null) {
-            builder.setDescription(dto.getDescription());
-        }
-        if (dto.getColor() != null) {
-            builder.setColor(dto.getColor());
-        }
-        if (dto.getFooter() != null) {
-            builder.setFooter(dto.getFooter().getText(), dto.getFooter().getIconUrl());
-        }
-        if (dto.getThumbnail() != null) {
-            builder.setThumbnail(emptyDefault(dto.getThumbnail().getUrl()));
-        }
-        if (dto.getImage() != null && StringUtils.isNotBlank(dto.getImage().getUrl())) {
-            builder.setImage(dto.getImage().getUrl());
-        }
-        if (dto.getAuthor() != null) {
-            builder.setAuthor(dto.getAuthor().getName(), dto.getAuthor().getUrl(), dto.getAuthor().getIconUrl());
-        }
-        builder.setTimestamp(Instant.now());
-        if (dto.getFields() != null) {
-            for (PackageDTO.EmbedDTO.FieldsDTO field : dto.getFields()) {
-                if (field != null && field.getName() != null && field.getValue() != null) {
-                    String fieldName = field.getName();
-                    String fieldValue = field.getValue();
-                    if (StringUtils.isEmpty(fieldName)) {
-                        fieldName = ZERO_WIDTH_SPACE;
-                    }
-                    if (StringUtils.isEmpty(fieldValue)) {
-                        fieldValue = ZERO_WIDTH_SPACE;
-                    }
-                    builder.addField(fieldName, fieldValue, field.inline);
-                }
-            }
-        }
-        return builder.build();
-    }
-
-    @Nullable
-    private String emptyDefault(@Nullable String v) {
-        if (v == null || !v.startsWith("http")) {
-            return null;
+        if (dto == null) {
+            throw new IllegalArgumentException("json argument doesn't contains a embed: " + json);
         }
-        return v;
+        return new EmbedTemplate(dto);
     }
 
     @NoArgsConstructor
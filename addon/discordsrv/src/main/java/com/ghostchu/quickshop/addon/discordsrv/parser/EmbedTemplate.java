@@ -0,0 +1,171 @@
+package com.ghostchu.quickshop.addon.discordsrv.parser;
+
+import github.scarsz.discordsrv.dependencies.jda.api.EmbedBuilder;
+import github.scarsz.discordsrv.dependencies.jda.api.entities.MessageEmbed;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pre-compiled embed message template, the text parts are split into literal segments and placeholder slots once,
+ * so building a message only fills the slots.
+ */
+public class EmbedTemplate {
+    private final static String ZERO_WIDTH_SPACE = "\u200E";
+    private final Slot title;
+    private final Slot description;
+    private final Integer color;
+    private final Slot authorName;
+    private final Slot authorUrl;
+    private final Slot authorIconUrl;
+    private final Slot thumbnailUrl;
+    private final Slot imageUrl;
+    private final Slot footerText;
+    private final Slot footerIconUrl;
+    private final boolean hasAuthor;
+    private final boolean hasFooter;
+    private final List<FieldSlot> fields = new ArrayList<>();
+
+    EmbedTemplate(@NotNull EmbedMessageParser.PackageDTO.EmbedDTO dto) {
+        this.title = Slot.compile(dto.getTitle());
+        this.description = Slot.compile(dto.getDescription());
+        this.color = dto.getColor();
+        this.hasAuthor = dto.getAuthor() != null;
+        this.authorName = hasAuthor ? Slot.compile(dto.getAuthor().getName()) : Slot.NULL;
+        this.authorUrl = hasAuthor ? Slot.compile(dto.getAuthor().getUrl()) : Slot.NULL;
+        this.authorIconUrl = hasAuthor ? Slot.compile(dto.getAuthor().getIconUrl()) : Slot.NULL;
+        this.thumbnailUrl = dto.getThumbnail() != null ? Slot.compile(httpOnly(dto.getThumbnail().getUrl())) : Slot.NULL;
+        this.imageUrl = dto.getImage() != null && StringUtils.isNotBlank(dto.getImage().getUrl()) ? Slot.compile(dto.getImage().getUrl()) : Slot.NULL;
+        this.hasFooter = dto.getFooter() != null;
+        this.footerText = hasFooter ? Slot.compile(dto.getFooter().getText()) : Slot.NULL;
+        this.footerIconUrl = hasFooter ? Slot.compile(dto.getFooter().getIconUrl()) : Slot.NULL;
+        if (dto.getFields() != null) {
+            for (EmbedMessageParser.PackageDTO.EmbedDTO.FieldsDTO field : dto.getFields()) {
+                if (field == null || field.getName() == null || field.getValue() == null) {
+                    continue;
+                }
+                String name = StringUtils.isEmpty(field.getName()) ? ZERO_WIDTH_SPACE : field.getName();
+                String value = StringUtils.isEmpty(field.getValue()) ? ZERO_WIDTH_SPACE : field.getValue();
+                fields.add(new FieldSlot(Slot.compile(name), Slot.compile(value), Boolean.TRUE.equals(field.getInline())));
+            }
+        }
+    }
+
+    @Nullable
+    private static String httpOnly(@Nullable String v) {
+        if (v == null || !v.startsWith("http")) {
+            return null;
+        }
+        return v;
+    }
+
+    /**
+     * Build the embed message with the placeholders, the empty placeholder values will be replaced with a
+     * zero-width space.
+     *
+     * @param placeholders The placeholders, without the %% wrapping
+     * @return The embed message
+     */
+    @NotNull
+    public MessageEmbed build(@NotNull Map<String, String> placeholders) {
+        EmbedBuilder builder = new EmbedBuilder();
+        builder.setTitle(title.fill(placeholders));
+        builder.setDescription(description.fill(placeholders));
+        if (color != null) {
+            builder.setColor(color);
+        }
+        if (hasAuthor) {
+            builder.setAuthor(authorName.fill(placeholders), authorUrl.fill(placeholders), authorIconUrl.fill(placeholders));
+        }
+        builder.setThumbnail(thumbnailUrl.fill(placeholders));
+        String image = imageUrl.fill(placeholders);
+        if (image != null) {
+            builder.setImage(image);
+        }
+        if (hasFooter) {
+            builder.setFooter(footerText.fill(placeholders), footerIconUrl.fill(placeholders));
+        }
+        builder.setTimestamp(Instant.now());
+        for (FieldSlot field : fields) {
+            builder.addField(field.name().fill(placeholders), field.value().fill(placeholders), field.inline());
+        }
+        return builder.build();
+    }
+
+    private record FieldSlot(@NotNull Slot name, @NotNull Slot value, boolean inline) {
+    }
+
+    /**
+     * A text split into literal segments and placeholder keys, the odd indexes are the placeholder keys.
+     */
+    private static final class Slot {
+        private static final Slot NULL = new Slot(null);
+        private final String[] parts;
+
+        private Slot(String[] parts) {
+            this.parts = parts;
+        }
+
+        @NotNull
+        static Slot compile(@Nullable String text) {
+            if (text == null) {
+                return NULL;
+            }
+            List<String> parts = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int cursor = 0;
+            while (true) {
+                int start = text.indexOf("%%", cursor);
+                int end = start == -1 ? -1 : text.indexOf("%%", start + 2);
+                if (end == -1) {
+                    literal.append(text, cursor, text.length());
+                    parts.add(literal.toString());
+                    break;
+                }
+                String key = text.substring(start + 2, end);
+                if (key.isEmpty() || StringUtils.containsWhitespace(key)) {
+                    // Not a placeholder, keep the first %% as literal and search again
+                    literal.append(text, cursor, start + 2);
+                    cursor = start + 2;
+                    continue;
+                }
+                literal.append(text, cursor, start);
+                parts.add(literal.toString());
+                parts.add(key);
+                literal.setLength(0);
+                cursor = end + 2;
+            }
+            return new Slot(parts.toArray(new String[0]));
+        }
+
+        @Nullable
+        String fill(@NotNull Map<String, String> placeholders) {
+            if (parts == null) {
+                return null;
+            }
+            if (parts.length == 1) {
+                return parts[0];
+            }
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < parts.length; i++) {
+                if (i % 2 == 0) {
+                    builder.append(parts[i]);
+                    continue;
+                }
+                if (!placeholders.containsKey(parts[i])) {
+                    // Not a known placeholder, keep it as is
+                    builder.append("%%").append(parts[i]).append("%%");
+                    continue;
+                }
+                String value = placeholders.get(parts[i]);
+                builder.append(StringUtils.isEmpty(value) ? ZERO_WIDTH_SPACE : value);
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -37,7 +37,7 @@ public class HikariDataExtension implements DataExtension {
     public HikariDataExtension(Main main) {
         this.main = main;
         this.dataUtil = new DataUtil(main);
-        this.metricQuery = new MetricQuery(main.getQuickShop(), (SimpleDatabaseHelperV2) main.getQuickShop().getDatabaseHelper());
+        this.metricQuery = new MetricQuery(main.getQuickShop(), (SimpleDatabaseHelperV2) main.getQuickShop().getDatabaseHelper(), main.getConfig().getLong("query-cache-ttl", 30));
     }
 
     @Override
@@ -135,7 +135,7 @@ public class HikariDataExtension implements DataExtension {
                 .columnThree("Item(amount)", Icon.called("box").build())
                 .columnFour("Balance", Icon.called("money-bill-wave").build());
 
-        List<ShopMetricRecord> records = this.metricQuery.queryServerPurchaseRecords(DateUtil.daysAgo(365), 50, true).stream().filter(record -> switch (record.getType()) {
+        List<ShopMetricRecord> records = this.metricQuery.queryPlayerPurchaseRecords(playerUUID, DateUtil.daysAgo(365), 50, true).stream().filter(record -> switch (record.getType()) {
             //noinspection deprecation
             case PURCHASE, PURCHASE_BUYING_SHOP, PURCHASE_SELLING_SHOP -> true;
             default -> false;
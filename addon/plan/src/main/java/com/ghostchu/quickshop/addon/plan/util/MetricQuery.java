@@ -8,24 +8,59 @@ import com.ghostchu.quickshop.api.database.bean.DataRecord;
 import com.ghostchu.quickshop.database.SimpleDatabaseHelperV2;
 import com.ghostchu.quickshop.obj.QUserImpl;
 import com.ghostchu.quickshop.util.logger.Log;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class MetricQuery {
     private final SimpleDatabaseHelperV2 databaseHelper;
     private final QuickShop plugin;
+    // Plan refreshes the providers frequently, cache the results for a short time
+    private final Cache<String, Long> countCache;
+    private final Cache<String, List<ShopMetricRecord>> recordsCache;
+    private final Cache<Long, Optional<DataRecord>> dataRecordCache;
 
     public MetricQuery(QuickShop plugin, SimpleDatabaseHelperV2 databaseHelper) {
+        this(plugin, databaseHelper, 30);
+    }
+
+    public MetricQuery(QuickShop plugin, SimpleDatabaseHelperV2 databaseHelper, long cacheTtlSeconds) {
         this.databaseHelper = databaseHelper;
         this.plugin = plugin;
+        this.countCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.recordsCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+                .maximumSize(500)
+                .build();
+        this.dataRecordCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(cacheTtlSeconds * 10, TimeUnit.SECONDS)
+                .maximumSize(5000)
+                .build();
     }
 
-
     public long queryServerPurchaseCount() {
+        Long cached = countCache.getIfPresent("server");
+        if (cached != null) {
+            return cached;
+        }
+        long result = queryServerPurchaseCountDirect();
+        if (result >= 0) {
+            countCache.put("server", result);
+        }
+        return result;
+    }
+
+    private long queryServerPurchaseCountDirect() {
         String sql = "SELECT COUNT(*) AS result FROM " + databaseHelper.getPrefix() + "log_purchase";
         try (SQLQuery query = databaseHelper.getManager().createQuery().withPreparedSQL(sql).setParams(Collections.emptyList()).execute()) {
             ResultSet set = query.getResultSet();
@@ -76,13 +111,19 @@ public class MetricQuery {
         LinkedHashMap<ShopMetricRecord, DataRecord> dataRecords = new LinkedHashMap<>();
         for (ShopMetricRecord metricRecord : metricRecords) {
             long shopId = metricRecord.getShopId();
-            Long dataId = databaseHelper.locateShopDataId(shopId).get();
-            if (dataId == null) {
-                Log.debug("dataId is null for shopId " + shopId);
-                continue;
+            Optional<DataRecord> dataRecord = dataRecordCache.getIfPresent(shopId);
+            //noinspection OptionalAssignedToNull
+            if (dataRecord == null) {
+                Long dataId = databaseHelper.locateShopDataId(shopId).get();
+                if (dataId == null) {
+                    Log.debug("dataId is null for shopId " + shopId);
+                    dataRecord = Optional.empty();
+                } else {
+                    dataRecord = Optional.ofNullable(databaseHelper.getDataRecord(dataId).get());
+                }
+                dataRecordCache.put(shopId, dataRecord);
             }
-            DataRecord dataRecord = databaseHelper.getDataRecord(dataId).get();
-            dataRecords.put(metricRecord, dataRecord);
+            dataRecord.ifPresent(record -> dataRecords.put(metricRecord, record));
         }
         return dataRecords;
 
@@ -90,31 +131,124 @@ public class MetricQuery {
 
     @NotNull
     public List<ShopMetricRecord> queryServerPurchaseRecords(@NotNull Date startTime, long limit, boolean descending) {
+        String cacheKey = "server:" + startTime.getTime() / 60000 + ":" + limit + ":" + descending;
+        List<ShopMetricRecord> cached = recordsCache.getIfPresent(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
         List<ShopMetricRecord> list = new ArrayList<>();
         try (SQLQuery query = databaseHelper.getManager().createQuery()
                 .inTable(databaseHelper.getPrefix() + "log_purchase")
                 .addTimeCondition("time", startTime, null)
                 .selectColumns()
-                .setLimit(1000)
+                .setLimit((int) limit)
                 .orderBy("id", !descending).build().execute()) {
             ResultSet set = query.getResultSet();
             while (set.next()) {
-                //"time", "shop", "data", "buyer", "type", "amount", "money", "tax"
-                ShopMetricRecord record = ShopMetricRecord.builder()
-                        .time(set.getDate("time").getTime())
-                        .shopId(set.getLong("shop"))
-                        .type(ShopOperationEnum.valueOf(set.getString("type")))
-                        .total(set.getDouble("money"))
-                        .tax(set.getDouble("tax"))
-                        .amount(set.getInt("amount"))
-                        .player(QUserImpl.createSync(plugin.getPlayerFinder(), set.getString("buyer")))
-                        .build();
-                list.add(record);
+                list.add(readPurchaseRecord(set));
             }
         } catch (SQLException e) {
             e.printStackTrace();
             return list;
         }
+        recordsCache.put(cacheKey, list);
         return list;
     }
+
+    /**
+     * Query the purchase records related to the player, the player is the buyer or the owner of the shop.
+     * Both lookups hit the indexes of the log_purchase table, instead of filtering the server records.
+     *
+     * @param player     The player
+     * @param startTime  The start time
+     * @param limit      The max records
+     * @param descending Order by time descending
+     * @return The records
+     */
+    @NotNull
+    public List<ShopMetricRecord> queryPlayerPurchaseRecords(@NotNull UUID player, @NotNull Date startTime, long limit, boolean descending) {
+        String cacheKey = "player:" + player + ":" + startTime.getTime() / 60000 + ":" + limit + ":" + descending;
+        List<ShopMetricRecord> cached = recordsCache.getIfPresent(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        Map<Long, ShopMetricRecord> merged = new HashMap<>();
+        Map<Long, ShopMetricRecord> buyerRecords = queryBuyerPurchaseRecords(player, startTime, limit, descending);
+        Map<Long, ShopMetricRecord> ownerRecords = queryOwnerPurchaseRecords(player, startTime, limit, descending);
+        if (buyerRecords == null || ownerRecords == null) {
+            // Don't cache the failed result
+            return new ArrayList<>();
+        }
+        merged.putAll(buyerRecords);
+        merged.putAll(ownerRecords);
+        Comparator<Map.Entry<Long, ShopMetricRecord>> comparator = Map.Entry.comparingByKey();
+        if (descending) {
+            comparator = comparator.reversed();
+        }
+        List<ShopMetricRecord> list = merged.entrySet().stream()
+                .sorted(comparator)
+                .limit(limit)
+                .map(Map.Entry::getValue)
+                .toList();
+        recordsCache.put(cacheKey, list);
+        return list;
+    }
+
+    @Nullable
+    private Map<Long, ShopMetricRecord> queryBuyerPurchaseRecords(@NotNull UUID player, @NotNull Date startTime, long limit, boolean descending) {
+        Map<Long, ShopMetricRecord> records = new HashMap<>();
+        try (SQLQuery query = databaseHelper.getManager().createQuery()
+                .inTable(databaseHelper.getPrefix() + "log_purchase")
+                .addCondition("buyer", player.toString())
+                .addTimeCondition("time", startTime, null)
+                .selectColumns()
+                .setLimit((int) limit)
+                .orderBy("id", !descending).build().execute()) {
+            ResultSet set = query.getResultSet();
+            while (set.next()) {
+                records.put(set.getLong("id"), readPurchaseRecord(set));
+            }
+        } catch (SQLException e) {
+            plugin.logger().warn("Failed to query the purchase records of buyer {}", player, e);
+            return null;
+        }
+        return records;
+    }
+
+    @Nullable
+    private Map<Long, ShopMetricRecord> queryOwnerPurchaseRecords(@NotNull UUID player, @NotNull Date startTime, long limit, boolean descending) {
+        Map<Long, ShopMetricRecord> records = new HashMap<>();
+        String sql = "SELECT p.* FROM " + databaseHelper.getPrefix() + "log_purchase p"
+                + " INNER JOIN " + databaseHelper.getPrefix() + "data d ON p.data = d.id"
+                + " WHERE d.owner = ? AND p.time >= ?"
+                + " ORDER BY p.id " + (descending ? "DESC" : "ASC")
+                + " LIMIT " + limit;
+        try (SQLQuery query = databaseHelper.getManager().createQuery()
+                .withPreparedSQL(sql)
+                .setParams(player.toString(), new Timestamp(startTime.getTime()))
+                .execute()) {
+            ResultSet set = query.getResultSet();
+            while (set.next()) {
+                records.put(set.getLong("id"), readPurchaseRecord(set));
+            }
+        } catch (SQLException e) {
+            plugin.logger().warn("Failed to query the purchase records of shop owner {}", player, e);
+            return null;
+        }
+        return records;
+    }
+
+    @NotNull
+    private ShopMetricRecord readPurchaseRecord(@NotNull ResultSet set) throws SQLException {
+        //"time", "shop", "data", "buyer", "type", "amount", "money", "tax"
+        return ShopMetricRecord.builder()
+                .time(set.getTimestamp("time").getTime())
+                .shopId(set.getLong("shop"))
+                .type(ShopOperationEnum.valueOf(set.getString("type")))
+                .total(set.getDouble("money"))
+                .tax(set.getDouble("tax"))
+                .amount(set.getInt("amount"))
+                .player(QUserImpl.createSync(plugin.getPlayerFinder(), set.getString("buyer")))
+                .build();
+    }
 }
@@ -53,15 +53,37 @@ public interface Platform {
 
     @NotNull String getMinecraftVersion();
 
-    @NotNull Component getTranslation(@NotNull Material material);
+    /**
+     * Gets the shared platform cache, the translations and item components are memoized here
+     *
+     * @return The platform cache
+     */
+    @NotNull PlatformCache getPlatformCache();
+
+    @NotNull
+    default Component getTranslation(@NotNull Material material) {
+        return getPlatformCache().translation(material, m -> Component.translatable(getTranslationKey(m)));
+    }
 
-    @NotNull Component getTranslation(@NotNull EntityType entity);
+    @NotNull
+    default Component getTranslation(@NotNull EntityType entity) {
+        return getPlatformCache().translation(entity, e -> Component.translatable(getTranslationKey(e)));
+    }
 
-    @NotNull Component getTranslation(@NotNull PotionEffectType potionEffectType);
+    @NotNull
+    default Component getTranslation(@NotNull PotionEffectType potionEffectType) {
+        return getPlatformCache().translation(potionEffectType, p -> Component.translatable(getTranslationKey(p)));
+    }
 
-    @NotNull Component getTranslation(@NotNull Enchantment enchantment);
+    @NotNull
+    default Component getTranslation(@NotNull Enchantment enchantment) {
+        return getPlatformCache().translation(enchantment, e -> Component.translatable(getTranslationKey(e)));
+    }
 
-    @NotNull Component getTranslation(@NotNull ItemStack itemStack);
+    @NotNull
+    default Component getTranslation(@NotNull ItemStack itemStack) {
+        return getPlatformCache().translation(itemStack, s -> Component.translatable(getTranslationKey(s)));
+    }
 
     @NotNull String getTranslationKey(@NotNull Material material);
 
@@ -0,0 +1,225 @@
+package com.ghostchu.quickshop.platform;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.event.HoverEvent;
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.EntityType;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.potion.PotionEffectType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The shared memoized path for all platforms.
+ * Translations are cached per Material, EntityType, PotionEffectType and Enchantment,
+ * and the item components (display name, lore and translation) are cached per item prototype (the item without amount).
+ * The items without meta are keyed by the Material, the others by a hash of the type, durability and meta
+ * (ItemStack#hashCode includes the amount, so it can't be used) and verified with a stored sample.
+ * <p>
+ * The cache must be invalidated when the translation mapping changed.
+ */
+public class PlatformCache {
+    private static final int MAX_PROTOTYPES = 2048;
+    private final Map<Material, Component> materials = new ConcurrentHashMap<>();
+    private final Map<EntityType, Component> entityTypes = new ConcurrentHashMap<>();
+    private final Map<PotionEffectType, Component> potionEffectTypes = new ConcurrentHashMap<>();
+    private final Map<Enchantment, Component> enchantments = new ConcurrentHashMap<>();
+    private final Map<Material, Prototype> plainPrototypes = new ConcurrentHashMap<>();
+    private final Cache<Integer, Prototype> stackPrototypes = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PROTOTYPES)
+            .recordStats()
+            .build();
+    private final Cache<Integer, Prototype> metaPrototypes = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PROTOTYPES)
+            .build();
+
+    @NotNull
+    public Component translation(@NotNull Material material, @NotNull Function<Material, Component> loader) {
+        return materials.computeIfAbsent(material, loader);
+    }
+
+    @NotNull
+    public Component translation(@NotNull EntityType entityType, @NotNull Function<EntityType, Component> loader) {
+        return entityTypes.computeIfAbsent(entityType, loader);
+    }
+
+    @NotNull
+    public Component translation(@NotNull PotionEffectType potionEffectType, @NotNull Function<PotionEffectType, Component> loader) {
+        return potionEffectTypes.computeIfAbsent(potionEffectType, loader);
+    }
+
+    @NotNull
+    public Component translation(@NotNull Enchantment enchantment, @NotNull Function<Enchantment, Component> loader) {
+        return enchantments.computeIfAbsent(enchantment, loader);
+    }
+
+    @NotNull
+    public Component translation(@NotNull ItemStack stack, @NotNull Function<ItemStack, Component> loader) {
+        Prototype prototype = prototype(stack);
+        Component translation = prototype.translation;
+        if (translation == null) {
+            translation = loader.apply(stack);
+            prototype.translation = translation;
+        }
+        return translation;
+    }
+
+    @NotNull
+    public Component displayName(@NotNull ItemStack stack, @NotNull Function<ItemStack, Component> loader) {
+        Prototype prototype = prototype(stack);
+        Component displayName = prototype.displayName;
+        if (displayName == null) {
+            displayName = loader.apply(stack);
+            prototype.displayName = displayName;
+        }
+        return withAmount(displayName, stack.getAmount());
+    }
+
+    /**
+     * The display name may carry a show_item hover with the amount (Paper), the cached one is rendered from another
+     * stack of the prototype, so put the amount of this stack back.
+     */
+    @NotNull
+    private static Component withAmount(@NotNull Component component, int amount) {
+        if (component.hoverEvent() != null && component.hoverEvent().value() instanceof HoverEvent.ShowItem showItem && showItem.count() != amount) {
+            return component.hoverEvent(HoverEvent.showItem(showItem.count(amount)));
+        }
+        return component;
+    }
+
+    @Nullable
+    public Component displayName(@NotNull ItemMeta meta, @NotNull Function<ItemMeta, Component> loader) {
+        Prototype prototype = prototype(meta);
+        Optional<Component> displayName = prototype.metaDisplayName;
+        if (displayName == null) {
+            displayName = Optional.ofNullable(loader.apply(meta));
+            prototype.metaDisplayName = displayName;
+        }
+        return displayName.orElse(null);
+    }
+
+    @Nullable
+    public List<Component> lore(@NotNull ItemStack stack, @NotNull Function<ItemStack, List<Component>> loader) {
+        return lore(prototype(stack), stack, loader);
+    }
+
+    @Nullable
+    public List<Component> lore(@NotNull ItemMeta meta, @NotNull Function<ItemMeta, List<Component>> loader) {
+        return lore(prototype(meta), meta, loader);
+    }
+
+    @Nullable
+    private <T> List<Component> lore(@NotNull Prototype prototype, @NotNull T source, @NotNull Function<T, List<Component>> loader) {
+        Optional<List<Component>> lore = prototype.lore;
+        if (lore == null) {
+            List<Component> loaded = loader.apply(source);
+            lore = Optional.ofNullable(loaded == null ? null : List.copyOf(loaded));
+            prototype.lore = lore;
+        }
+        // Callers may modify the returned lore
+        return lore.map(ArrayList::new).orElse(null);
+    }
+
+    @NotNull
+    private Prototype prototype(@NotNull ItemStack stack) {
+        if (!stack.hasItemMeta()) {
+            return plainPrototypes.computeIfAbsent(stack.getType(), type -> new Prototype(null));
+        }
+        int hash = prototypeHash(stack);
+        Prototype prototype = stackPrototypes.getIfPresent(hash);
+        if (prototype == null) {
+            // Never keep the caller's instance, it is mutable
+            ItemStack sample = stack.clone();
+            sample.setAmount(1);
+            prototype = new Prototype(sample);
+            stackPrototypes.put(hash, prototype);
+            return prototype;
+        }
+        if (prototype.sample instanceof ItemStack sample && sample.isSimilar(stack)) {
+            return prototype;
+        }
+        // Hash collision, don't cache it
+        return new Prototype(null);
+    }
+
+    /**
+     * Same as ItemStack#hashCode but without the amount, isSimilar ignores the amount too.
+     */
+    @SuppressWarnings("deprecation")
+    private static int prototypeHash(@NotNull ItemStack stack) {
+        int hash = stack.getType().hashCode();
+        hash = hash * 31 + (stack.getDurability() & 0xffff);
+        ItemMeta meta = stack.getItemMeta();
+        return hash * 31 + (meta == null ? 0 : meta.hashCode());
+    }
+
+    @NotNull
+    private Prototype prototype(@NotNull ItemMeta meta) {
+        int hash = meta.hashCode();
+        Prototype prototype = metaPrototypes.getIfPresent(hash);
+        if (prototype == null) {
+            prototype = new Prototype(meta.clone());
+            metaPrototypes.put(hash, prototype);
+            return prototype;
+        }
+        if (meta.equals(prototype.sample)) {
+            return prototype;
+        }
+        // Hash collision, don't cache it
+        return new Prototype(null);
+    }
+
+    /**
+     * Invalidate all cached translations and components
+     */
+    public void invalidateAll() {
+        materials.clear();
+        entityTypes.clear();
+        potionEffectTypes.clear();
+        enchantments.clear();
+        plainPrototypes.clear();
+        stackPrototypes.invalidateAll();
+        metaPrototypes.invalidateAll();
+    }
+
+    /**
+     * Gets the item prototype cache stats
+     *
+     * @return The stats
+     */
+    @NotNull
+    public CacheStats getPrototypeStats() {
+        return stackPrototypes.stats();
+    }
+
+    /**
+     * The cached components of an item prototype, lazy filled.
+     * Optional is used to cache the null values, null means not loaded yet.
+     */
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    private static class Prototype {
+        // The item or meta of this prototype, used to verify the hash lookups
+        @Nullable
+        private final Object sample;
+        private volatile Component translation;
+        private volatile Component displayName;
+        private volatile Optional<Component> metaDisplayName;
+        private volatile Optional<List<Component>> lore;
+
+        private Prototype(@Nullable Object sample) {
+            this.sample = sample;
+        }
+    }
+}
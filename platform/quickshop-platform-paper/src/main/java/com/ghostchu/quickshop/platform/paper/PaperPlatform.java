@@ -1,6 +1,7 @@
 package com.ghostchu.quickshop.platform.paper;
 
 import com.ghostchu.quickshop.platform.Platform;
+import com.ghostchu.quickshop.platform.PlatformCache;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.HoverEvent;
 import net.kyori.adventure.text.minimessage.MiniMessage;
@@ -26,6 +27,7 @@ import java.util.*;
 @SuppressWarnings("removal")
 public class PaperPlatform implements Platform {
 
+    private final PlatformCache platformCache = new PlatformCache();
     private Map<String, String> translationMapping;
 
     public PaperPlatform() {
@@ -34,12 +36,12 @@ public class PaperPlatform implements Platform {
 
     @Override
     public @NotNull Component getDisplayName(@NotNull ItemStack stack) {
-        return stack.displayName();
+        return platformCache.displayName(stack, ItemStack::displayName);
     }
 
     @Override
     public @NotNull Component getDisplayName(@NotNull ItemMeta meta) {
-        Component displayName = meta.displayName();
+        Component displayName = platformCache.displayName(meta, ItemMeta::displayName);
         if (displayName == null) {
             return Component.empty();
         }
@@ -58,12 +60,12 @@ public class PaperPlatform implements Platform {
 
     @Override
     public @Nullable List<Component> getLore(@NotNull ItemStack stack) {
-        return stack.lore();
+        return platformCache.lore(stack, ItemStack::lore);
     }
 
     @Override
     public @Nullable List<Component> getLore(@NotNull ItemMeta meta) {
-        return meta.lore();
+        return platformCache.lore(meta, ItemMeta::lore);
     }
 
     @Override
@@ -72,34 +74,14 @@ public class PaperPlatform implements Platform {
     }
 
     @Override
-    public @NotNull Component getTranslation(@NotNull Material material) {
-        return Component.translatable(getTranslationKey(material));
+    public @NotNull PlatformCache getPlatformCache() {
+        return platformCache;
     }
 
     private String postProcessingTranslationKey(String key) {
         return this.translationMapping.getOrDefault(key, key);
     }
 
-    @Override
-    public @NotNull Component getTranslation(@NotNull EntityType entity) {
-        return Component.translatable(getTranslationKey(entity));
-    }
-
-    @Override
-    public @NotNull Component getTranslation(@NotNull PotionEffectType potionEffectType) {
-        return Component.translatable(getTranslationKey(potionEffectType));
-    }
-
-    @Override
-    public @NotNull Component getTranslation(@NotNull Enchantment enchantment) {
-        return Component.translatable(getTranslationKey(enchantment));
-    }
-
-    @Override
-    public @NotNull Component getTranslation(@NotNull ItemStack itemStack) {
-        return Component.translatable(getTranslationKey(itemStack));
-    }
-
     @Override
     public @NotNull String getTranslationKey(@NotNull Material material) {
         String key;
@@ -197,6 +179,7 @@ public class PaperPlatform implements Platform {
     @Override
     public void updateTranslationMappingSection(@NotNull Map<String, String> mapping) {
         this.translationMapping = mapping;
+        this.platformCache.invalidateAll();
     }
 
     @Override
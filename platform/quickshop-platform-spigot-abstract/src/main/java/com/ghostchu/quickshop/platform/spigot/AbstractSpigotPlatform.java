@@ -2,6 +2,7 @@ package com.ghostchu.quickshop.platform.spigot;
 
 import com.ghostchu.quickshop.common.util.QuickSLF4JLogger;
 import com.ghostchu.quickshop.platform.Platform;
+import com.ghostchu.quickshop.platform.PlatformCache;
 import de.tr7zw.nbtapi.NBT;
 import de.tr7zw.nbtapi.iface.ReadWriteNBT;
 import de.tr7zw.nbtapi.iface.ReadWriteNBTList;
@@ -34,6 +35,7 @@ import java.util.stream.Collectors;
 public abstract class AbstractSpigotPlatform implements Platform {
     protected final Logger logger = Logger.getLogger("QuickShop-Hikari");
     private final Plugin plugin;
+    private final PlatformCache platformCache = new PlatformCache();
     protected Map<String, String> translationMapping;
     private BukkitAudiences audience;
 
@@ -54,18 +56,23 @@ public abstract class AbstractSpigotPlatform implements Platform {
 
     @Override
     public @NotNull Component getDisplayName(@NotNull ItemStack stack) {
-        if (stack.getItemMeta() != null) {
-            return LegacyComponentSerializer.legacySection().deserialize(stack.getItemMeta().getDisplayName());
-        }
-        return Component.empty();
+        return platformCache.displayName(stack, s -> {
+            if (s.getItemMeta() != null) {
+                return LegacyComponentSerializer.legacySection().deserialize(s.getItemMeta().getDisplayName());
+            }
+            return Component.empty();
+        });
     }
 
     @Override
     public @NotNull Component getDisplayName(@NotNull ItemMeta meta) {
-        if (meta.hasDisplayName()) {
-            return LegacyComponentSerializer.legacySection().deserialize(meta.getDisplayName());
-        }
-        return Component.empty();
+        Component displayName = platformCache.displayName(meta, m -> {
+            if (m.hasDisplayName()) {
+                return LegacyComponentSerializer.legacySection().deserialize(m.getDisplayName());
+            }
+            return Component.empty();
+        });
+        return displayName == null ? Component.empty() : displayName;
     }
 
     @Override
@@ -78,10 +85,7 @@ public abstract class AbstractSpigotPlatform implements Platform {
         if (!stack.hasItemMeta()) {
             return null;
         }
-        if (!stack.getItemMeta().hasLore()) {
-            return null;
-        }
-        return stack.getItemMeta().getLore().stream().map(LegacyComponentSerializer.legacySection()::deserialize).collect(Collectors.toList());
+        return getLore(stack.getItemMeta());
     }
 
     @Override
@@ -89,32 +93,12 @@ public abstract class AbstractSpigotPlatform implements Platform {
         if (!meta.hasLore()) {
             return null;
         }
-        return meta.getLore().stream().map(LegacyComponentSerializer.legacySection()::deserialize).collect(Collectors.toList());
-    }
-
-    @Override
-    public @NotNull Component getTranslation(@NotNull Material material) {
-        return Component.translatable(getTranslationKey(material));
-    }
-
-    @Override
-    public @NotNull Component getTranslation(@NotNull EntityType entity) {
-        return Component.translatable(getTranslationKey(entity));
-    }
-
-    @Override
-    public @NotNull Component getTranslation(@NotNull PotionEffectType potionEffectType) {
-        return Component.translatable(getTranslationKey(potionEffectType));
-    }
-
-    @Override
-    public @NotNull Component getTranslation(@NotNull Enchantment enchantment) {
-        return Component.translatable(getTranslationKey(enchantment));
+        return platformCache.lore(meta, m -> m.getLore().stream().map(LegacyComponentSerializer.legacySection()::deserialize).collect(Collectors.toList()));
     }
 
     @Override
-    public @NotNull Component getTranslation(@NotNull ItemStack itemStack) {
-        return Component.translatable(getTranslationKey(itemStack));
+    public @NotNull PlatformCache getPlatformCache() {
+        return platformCache;
     }
 
     @Override
@@ -190,6 +174,7 @@ public abstract class AbstractSpigotPlatform implements Platform {
     @Override
     public void updateTranslationMappingSection(@NotNull Map<String, String> mapping) {
         this.translationMapping = mapping;
+        this.platformCache.invalidateAll();
     }
 
     @Override
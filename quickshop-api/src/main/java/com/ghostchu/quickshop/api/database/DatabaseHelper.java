@@ -10,6 +10,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -228,4 +229,13 @@ public interface DatabaseHelper {
      */
     CompletableFuture<Void> updateShop(@NotNull Shop shop);
 
+    /**
+     * Persist the ownership changes of the shops to database in batches, one transaction per batch,
+     * the owner must be already changed on the shop objects.
+     *
+     * @param shops The shops
+     * @return The shops updated
+     */
+    @NotNull CompletableFuture<@NotNull Integer> updateShopOwners(@NotNull Collection<Shop> shops);
+
 }
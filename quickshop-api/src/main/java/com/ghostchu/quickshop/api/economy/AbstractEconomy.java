@@ -4,21 +4,137 @@ import com.ghostchu.quickshop.api.obj.QUser;
 import com.ghostchu.simplereloadlib.ReloadResult;
 import com.ghostchu.simplereloadlib.ReloadStatus;
 import com.ghostchu.simplereloadlib.Reloadable;
+import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.World;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Abstract Economy Core
  */
 public abstract class AbstractEconomy implements EconomyCore, Reloadable {
+    // Every N snapshot hits will be verified with the economy provider
+    private static final int SNAPSHOT_VERIFY_INTERVAL = 100;
+    private final Map<SnapshotKey, Double> balanceSnapshot = new ConcurrentHashMap<>();
+    private final AtomicLong snapshotHits = new AtomicLong();
+    private final AtomicLong snapshotMisses = new AtomicLong();
+    private final AtomicLong snapshotInvalidations = new AtomicLong();
+    private final AtomicLong snapshotVerified = new AtomicLong();
+    private final AtomicLong snapshotMismatches = new AtomicLong();
+    private volatile boolean balanceSnapshotEnabled = false;
 
     protected AbstractEconomy() {
     }
 
+    /**
+     * Gets the per-tick balance snapshot enabled
+     *
+     * @return enabled
+     */
+    public boolean isBalanceSnapshotEnabled() {
+        return balanceSnapshotEnabled;
+    }
+
+    /**
+     * Enable or disable the per-tick balance snapshot.
+     * When enabled, repeated balance reads on the main thread in the same tick will be served from memory,
+     * QuickShop's own deposit/withdraw calls invalidate the snapshot, and the caller must call {@link #clearBalanceSnapshot()} every tick.
+     *
+     * @param enabled enabled
+     */
+    public void setBalanceSnapshotEnabled(boolean enabled) {
+        this.balanceSnapshotEnabled = enabled;
+        this.balanceSnapshot.clear();
+    }
+
+    /**
+     * Clear the balance snapshot, should be called at every tick
+     */
+    public void clearBalanceSnapshot() {
+        if (!balanceSnapshot.isEmpty()) {
+            balanceSnapshot.clear();
+        }
+    }
+
+    /**
+     * Gets the balance snapshot statistics
+     *
+     * @return The statistics
+     */
+    @NotNull
+    public BalanceSnapshotStats getBalanceSnapshotStats() {
+        return new BalanceSnapshotStats(snapshotHits.get(), snapshotMisses.get(), snapshotInvalidations.get(), snapshotVerified.get(), snapshotMismatches.get());
+    }
+
+    private double snapshotBalance(@NotNull Object obj, @NotNull World world, @Nullable String currency) {
+        if (!balanceSnapshotEnabled || !Bukkit.isPrimaryThread()) {
+            return getBalanceDirectly(obj, world, currency);
+        }
+        SnapshotKey key = new SnapshotKey(accountKey(obj), world.getName(), currency);
+        Double cached = balanceSnapshot.get(key);
+        if (cached == null) {
+            snapshotMisses.incrementAndGet();
+            double balance = getBalanceDirectly(obj, world, currency);
+            balanceSnapshot.put(key, balance);
+            return balance;
+        }
+        if (snapshotHits.incrementAndGet() % SNAPSHOT_VERIFY_INTERVAL == 0) {
+            // Sampling the snapshot, let the operators know if their provider changes balance without QuickShop
+            snapshotVerified.incrementAndGet();
+            double balance = getBalanceDirectly(obj, world, currency);
+            if (Double.compare(balance, cached) != 0) {
+                snapshotMismatches.incrementAndGet();
+                balanceSnapshot.put(key, balance);
+                return balance;
+            }
+        }
+        return cached;
+    }
+
+    private void invalidateSnapshot(@NotNull Object obj) {
+        if (!balanceSnapshotEnabled || balanceSnapshot.isEmpty()) {
+            return;
+        }
+        snapshotInvalidations.incrementAndGet();
+        Object account = accountKey(obj);
+        if (account instanceof String) {
+            // Username accounts may also be accessed by uuid, we can't tell, drop everything
+            balanceSnapshot.clear();
+            return;
+        }
+        balanceSnapshot.keySet().removeIf(key -> key.account().equals(account));
+        if (obj instanceof QUser qUser && qUser.getUsernameOptional().isPresent()) {
+            String username = qUser.getUsernameOptional().get();
+            balanceSnapshot.keySet().removeIf(key -> key.account().equals(username));
+        }
+    }
+
+    @NotNull
+    private Object accountKey(@NotNull Object obj) {
+        if (obj instanceof QUser qUser) {
+            UUID uuid = qUser.getUniqueIdIfRealPlayer().orElse(null);
+            if (uuid != null) {
+                return uuid;
+            }
+            if (qUser.getUsernameOptional().isPresent()) {
+                return qUser.getUsernameOptional().get();
+            }
+            if (qUser.getUniqueIdOptional().isPresent()) {
+                return qUser.getUniqueIdOptional().get();
+            }
+        } else if (obj instanceof OfflinePlayer offlinePlayer) {
+            return offlinePlayer.getUniqueId();
+        }
+        return obj;
+    }
+
     @Override
     public @NotNull String getName() {
         return "BuiltIn-Economy Processor";
@@ -26,6 +142,14 @@ public abstract class AbstractEconomy implements EconomyCore, Reloadable {
 
     @Override
     public boolean withdraw(@NotNull Object obj, double amount, @NotNull World world, @Nullable String currency) {
+        try {
+            return withdrawDirectly(obj, amount, world, currency);
+        } finally {
+            invalidateSnapshot(obj);
+        }
+    }
+
+    private boolean withdrawDirectly(@NotNull Object obj, double amount, @NotNull World world, @Nullable String currency) {
         if (obj instanceof QUser qUser) {
             // Handle UUID - Player
             UUID uuid = qUser.getUniqueIdIfRealPlayer().orElse(null);
@@ -59,6 +183,14 @@ public abstract class AbstractEconomy implements EconomyCore, Reloadable {
 
     @Override
     public boolean deposit(@NotNull Object obj, double amount, @NotNull World world, @Nullable String currency) {
+        try {
+            return depositDirectly(obj, amount, world, currency);
+        } finally {
+            invalidateSnapshot(obj);
+        }
+    }
+
+    private boolean depositDirectly(@NotNull Object obj, double amount, @NotNull World world, @Nullable String currency) {
         if (obj instanceof QUser qUser) {
             // Handle UUID - Player
             UUID uuid = qUser.getUniqueIdIfRealPlayer().orElse(null);
@@ -91,6 +223,10 @@ public abstract class AbstractEconomy implements EconomyCore, Reloadable {
 
     @Override
     public double getBalance(@NotNull Object obj, @NotNull World world, @Nullable String currency) {
+        return snapshotBalance(obj, world, currency);
+    }
+
+    private double getBalanceDirectly(@NotNull Object obj, @NotNull World world, @Nullable String currency) {
         if (obj instanceof QUser qUser) {
             // Handle UUID - Player
             UUID uuid = qUser.getUniqueIdIfRealPlayer().orElse(null);
@@ -156,6 +292,8 @@ public abstract class AbstractEconomy implements EconomyCore, Reloadable {
         if (!isValid()) {
             return false;
         }
+        invalidateSnapshot(from);
+        invalidateSnapshot(to);
         if (this.getBalance(from, world, currency) >= amount) {
             if (this.withdraw(from, amount, world, currency)) {
                 if (this.deposit(to, amount, world, currency)) {
@@ -174,6 +312,8 @@ public abstract class AbstractEconomy implements EconomyCore, Reloadable {
         if (!isValid()) {
             return false;
         }
+        invalidateSnapshot(from);
+        invalidateSnapshot(to);
         if (this.getBalance(from, world, currency) >= amount) {
             if (this.withdraw(from, amount, world, currency)) {
                 if (this.deposit(to, amount, world, currency)) {
@@ -201,4 +341,26 @@ public abstract class AbstractEconomy implements EconomyCore, Reloadable {
 
     @Override
     public abstract String toString();
+
+    /**
+     * The statistics of the per-tick balance snapshot
+     *
+     * @param hits          The reads served from the snapshot
+     * @param misses        The reads passed to the economy provider
+     * @param invalidations The invalidations caused by deposit/withdraw
+     * @param verified      The sampled hits which verified with the economy provider
+     * @param mismatches    The sampled hits which economy provider returned a different balance
+     */
+    public record BalanceSnapshotStats(long hits, long misses, long invalidations, long verified, long mismatches) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0d : (double) hits / total;
+        }
+    }
+
+    private record SnapshotKey(@NotNull Object account, @NotNull String world, @Nullable String currency) {
+        private SnapshotKey {
+            Objects.requireNonNull(account);
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package com.ghostchu.quickshop.api.economy;
+
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Batch Transaction
+ * Transfer money for a large amount of payments, the payments are grouped per account:
+ * every payer will be withdrawn once with the total of its payments, every payee will be deposited once,
+ * and all taxes will be deposited to the tax account in one deposit.
+ * <p>
+ * The account groups are committed in tick-budgeted chunks on the main thread, every account group is all-or-nothing:
+ * a failed withdrawal fails all payments of that payer, a failed deposit refunds the payers of that payee.
+ */
+public interface BatchEconomyTransaction {
+    /**
+     * Add a payment into this batch
+     *
+     * @param from   The account that money from
+     * @param to     The account that money to, null to destroy the money
+     * @param amount The amount of money
+     * @param tag    The custom object to identify this payment, e.g. the shop, nullable
+     * @return The added entry
+     * @throws IllegalStateException If this batch already committed
+     */
+    @NotNull
+    Entry addPayment(@NotNull Object from, @Nullable Object to, double amount, @Nullable Object tag);
+
+    /**
+     * Gets all payments in this batch
+     *
+     * @return The payments
+     */
+    @NotNull
+    List<Entry> getEntries();
+
+    /**
+     * Gets the total amount will be withdrawn from every payer
+     *
+     * @return The payer accounts and the totals
+     */
+    @NotNull
+    Map<Object, Double> getWithdrawTotals();
+
+    /**
+     * Commit this batch in tick-budgeted chunks on the main thread.
+     *
+     * @return The future that will be completed with the failed payments after all account groups processed
+     * @throws IllegalStateException If this batch already committed
+     */
+    @NotNull
+    CompletableFuture<List<Entry>> commit();
+
+    @NotNull EconomyCore getCore();
+
+    @NotNull World getWorld();
+
+    @Nullable String getCurrency();
+
+    @Nullable String getLastError();
+
+    /**
+     * A payment in the batch transaction
+     *
+     * @param from   The account that money from
+     * @param to     The account that money to
+     * @param amount The amount of money
+     * @param tag    The custom object to identify this payment
+     */
+    record Entry(@NotNull Object from, @Nullable Object to, double amount, @Nullable Object tag) {
+    }
+}
@@ -8,6 +8,9 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Deque;
 import java.util.List;
 
+/**
+ * Transaction between two accounts, use {@link BatchEconomyTransaction} for a large amount of payments.
+ */
 public interface EconomyTransaction {
 
     /**
@@ -0,0 +1,133 @@
+package com.ghostchu.quickshop.api.event;
+
+import com.ghostchu.quickshop.api.obj.QUser;
+import com.ghostchu.quickshop.api.shop.Shop;
+import net.kyori.adventure.text.Component;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Fire when the shops ownership will be transferred in bulk.
+ * This event fired once for all shops before the {@link ShopOwnershipTransferEvent} of each shop,
+ * listeners can veto the individual shops or cancel the whole transfer.
+ * The shops not vetoed still can be cancelled by their own {@link ShopOwnershipTransferEvent}.
+ */
+public class ShopOwnershipBulkTransferEvent extends AbstractQSEvent implements QSCancellable {
+    private final List<Shop> shops;
+    private final QUser oldOwner;
+    private final QUser newOwner;
+    private final Map<Shop, Component> vetoed = new IdentityHashMap<>();
+    private boolean cancelled;
+    private Component reason;
+
+    /**
+     * Create a new ShopOwnershipBulkTransferEvent.
+     *
+     * @param shops    The shops will be transferred.
+     * @param oldOwner The old owner.
+     * @param newOwner The new owner.
+     */
+    public ShopOwnershipBulkTransferEvent(@NotNull List<Shop> shops, @NotNull QUser oldOwner, @NotNull QUser newOwner) {
+        this.shops = Collections.unmodifiableList(shops);
+        this.oldOwner = oldOwner;
+        this.newOwner = newOwner;
+    }
+
+    @Override
+    public @Nullable Component getCancelReason() {
+        return reason;
+    }
+
+    @Override
+    public void setCancelled(boolean cancel, @Nullable Component reason) {
+        this.cancelled = cancel;
+        this.reason = reason;
+    }
+
+    /**
+     * Gets the new owner will transfer to.
+     *
+     * @return The new owner.
+     */
+    @NotNull
+    public QUser getNewOwner() {
+        return newOwner;
+    }
+
+    /**
+     * Gets the old owner that transfer from.
+     *
+     * @return The old owner.
+     */
+    @NotNull
+    public QUser getOldOwner() {
+        return oldOwner;
+    }
+
+    /**
+     * Gets all shops requested to transfer, including the vetoed shops.
+     *
+     * @return The shops.
+     */
+    @NotNull
+    public List<Shop> getShops() {
+        return shops;
+    }
+
+    /**
+     * Veto the transfer of a shop, the shop will keep its owner.
+     *
+     * @param shop   The shop.
+     * @param reason The reason, or null.
+     */
+    public void veto(@NotNull Shop shop, @Nullable Component reason) {
+        vetoed.put(shop, reason);
+    }
+
+    /**
+     * Gets if the shop transfer was vetoed.
+     *
+     * @param shop The shop.
+     * @return vetoed
+     */
+    public boolean isVetoed(@NotNull Shop shop) {
+        return vetoed.containsKey(shop);
+    }
+
+    /**
+     * Gets the veto reason of the shop.
+     *
+     * @param shop The shop.
+     * @return The reason, or null if not vetoed or no reason given.
+     */
+    @Nullable
+    public Component getVetoReason(@NotNull Shop shop) {
+        return vetoed.get(shop);
+    }
+
+    /**
+     * Gets the shops will be transferred, excluding the vetoed shops.
+     *
+     * @return The shops.
+     */
+    @NotNull
+    public List<Shop> getTransferringShops() {
+        if (vetoed.isEmpty()) {
+            return shops;
+        }
+        List<Shop> transferring = new ArrayList<>(shops.size() - vetoed.size());
+        for (Shop shop : shops) {
+            if (!vetoed.containsKey(shop)) {
+                transferring.add(shop);
+            }
+        }
+        return transferring;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -333,6 +333,18 @@ public interface Shop {
      */
     void setDirty(boolean isDirty);
 
+    /**
+     * Gets the shop revision, it increases on every shop state change (price, item, type, owner, name...)
+     * and never decreases, so the data rendered from the shop can be cached with the revision.
+     * The container contents are not tracked, they can be changed without touching the shop.
+     * The implementations not tracking the revision return 0, the callers shouldn't cache anything then.
+     *
+     * @return The shop revision
+     */
+    default long getRevision() {
+        return 0;
+    }
+
     /**
      * Getting if this shop has been disabled the display
      *
@@ -520,13 +532,25 @@ public interface Shop {
     void remove(@NotNull ItemStack paramItemStack, int paramInt);
 
     /**
-     * Save the plugin extra data to Json format
+     * Save the plugin extra data to the legacy YAML format, the whole extra data as one YAML tree keyed by the namespace
      *
-     * @return The json string
+     * @return The yaml string
+     * @deprecated The extra data is stored per namespace now, use {@link #saveExtra()} for the stored format
      */
     @NotNull
+    @Deprecated
     String saveExtraToYaml();
 
+    /**
+     * Save the plugin extra data to the format stored in database
+     *
+     * @return The serialized extra data
+     */
+    @NotNull
+    default String saveExtra() {
+        return saveExtraToYaml();
+    }
+
     /**
      * Getting ShopInfoStorage that you can use for storage the shop data
      *
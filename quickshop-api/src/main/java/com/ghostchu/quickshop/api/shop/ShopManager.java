@@ -155,6 +155,20 @@ public interface ShopManager {
      */
     @NotNull List<Shop> getAllShops(@NotNull UUID playerUUID);
 
+    /**
+     * Transfer all shops owned by a user to another user in bulk.
+     * <p>
+     * A single {@link com.ghostchu.quickshop.api.event.ShopOwnershipBulkTransferEvent} will be fired for all shops,
+     * then a {@link com.ghostchu.quickshop.api.event.ShopOwnershipTransferEvent} for each shop not vetoed,
+     * the ownership changes are persisted in one database transaction and the shop signs are refreshed lazily.
+     * Must be called on the main thread.
+     *
+     * @param from The current owner.
+     * @param to   The new owner.
+     * @return The shops transferred, completed when the changes were persisted.
+     */
+    @NotNull CompletableFuture<List<Shop>> transferOwnership(@NotNull QUser from, @NotNull QUser to);
+
     /**
      * Getting the Shop Price Limiter
      *
@@ -25,7 +25,6 @@ import com.ghostchu.quickshop.bstats.MetricsManager;
 import com.ghostchu.quickshop.command.QuickShopCommand;
 import com.ghostchu.quickshop.command.SimpleCommandManager;
 import com.ghostchu.quickshop.common.util.CommonUtil;
-import com.ghostchu.quickshop.common.util.JsonUtil;
 import com.ghostchu.quickshop.common.util.QuickExecutor;
 import com.ghostchu.quickshop.common.util.Timer;
 import com.ghostchu.quickshop.database.DatabaseIOUtil;
@@ -51,6 +50,8 @@ import com.ghostchu.quickshop.util.*;
 import com.ghostchu.quickshop.util.config.ConfigUpdateScript;
 import com.ghostchu.quickshop.util.config.ConfigurationUpdater;
 import com.ghostchu.quickshop.util.envcheck.*;
+import com.ghostchu.quickshop.util.inbox.TransactionInbox;
+import com.ghostchu.quickshop.util.journal.ShopJournal;
 import com.ghostchu.quickshop.util.logger.Log;
 import com.ghostchu.quickshop.util.matcher.item.BukkitItemMatcherImpl;
 import com.ghostchu.quickshop.util.matcher.item.QuickShopItemMatcherImpl;
@@ -194,7 +195,19 @@ public class QuickShop implements QuickShopAPI, Reloadable {
     @Getter
     private OngoingFeeWatcher ongoingFeeWatcher;
     @Getter
+    @Nullable
+    private LogRetentionWatcher logRetentionWatcher;
+    @Getter
     private SignUpdateWatcher signUpdateWatcher;
+    @Nullable
+    private BalanceSnapshotWatcher balanceSnapshotWatcher;
+    @Getter
+    private TransactionInbox transactionInbox;
+    @Getter
+    @Nullable
+    private ShopJournal shopJournal;
+    @Getter
+    private InventoryPreviewPool inventoryPreviewPool;
     @Getter
     private Cache shopCache;
     @Getter
@@ -213,7 +226,6 @@ public class QuickShop implements QuickShopAPI, Reloadable {
     private CalendarWatcher calendarWatcher;
     @Getter
     private ShopPurger shopPurger;
-    private int loggingLocation = 0;
     @Getter
     private InteractionController interactionController;
     @Getter
@@ -406,7 +418,6 @@ public class QuickShop implements QuickShopAPI, Reloadable {
         this.displayItemCheckTicks = this.getConfig().getInt("shop.display-items-check-ticks");
         this.allowStack = this.getConfig().getBoolean("shop.allow-stacks");
         this.currency = this.getConfig().getString("currency");
-        this.loggingLocation = this.getConfig().getInt("logging.location");
         this.translationMapping = new HashMap<>();
         getConfig().getStringList("custom-translation-key").forEach(str -> {
             String[] split = str.split("=", 0);
@@ -420,8 +431,16 @@ public class QuickShop implements QuickShopAPI, Reloadable {
         if (StringUtils.isEmpty(this.currency)) {
             this.currency = null;
         }
+        boolean logWatcherStarted = false;
+        if (logWatcher != null) {
+            logWatcherStarted = logWatcher.isStarted();
+            logWatcher.close();
+        }
         if (this.getConfig().getBoolean("logging.enable")) {
             logWatcher = new LogWatcher(this, new File(javaPlugin.getDataFolder(), "qs.log"));
+            if (logWatcherStarted) {
+                logWatcher.start();
+            }
         } else {
             logWatcher = null;
         }
@@ -517,18 +536,8 @@ public class QuickShop implements QuickShopAPI, Reloadable {
         if (this.getLogWatcher() == null) {
             return;
         }
-        if (loggingLocation == 0) {
-            this.getLogWatcher().log(JsonUtil.getGson().toJson(eventObject));
-        } else {
-            getDatabaseHelper().insertHistoryRecord(eventObject)
-                    .thenAccept(result -> {
-                    })
-                    .exceptionally(throwable -> {
-                        Log.debug("Failed to log event: " + throwable.getMessage());
-                        return null;
-                    });
-        }
-
+        // Serialization and writing happen on the log watcher thread, for both file and database location
+        this.getLogWatcher().logEvent(eventObject);
     }
 
     @Override
@@ -604,6 +613,8 @@ public class QuickShop implements QuickShopAPI, Reloadable {
         //shopContainerWatcher = new ShopContainerWatcher();
         shopSaveWatcher = new ShopDataSaveWatcher(this);
         shopSaveWatcher.runTaskTimerAsynchronously(javaPlugin, 0, 20L * 60L * 5L);
+        transactionInbox = new TransactionInbox(this);
+        inventoryPreviewPool = new InventoryPreviewPool(this);
         /* Load all shops. */
         shopLoader = new ShopLoader(this);
         shopLoader.loadShops();
@@ -819,10 +830,16 @@ public class QuickShop implements QuickShopAPI, Reloadable {
         signUpdateWatcher.runTaskTimer(javaPlugin, 0, 10);
         //shopContainerWatcher.runTaskTimer(this, 0, 5); // Nobody use it
         if (logWatcher != null) {
-            logWatcher.runTaskTimerAsynchronously(javaPlugin, 10, 10);
+            logWatcher.start();
             logger.info("Log actions is enabled. Actions will be logged in the qs.log file!");
         }
+        // Short interval, only the changed summaries are written and the unwritten ones are lost on crash
+        transactionInbox.runTaskTimerAsynchronously(javaPlugin, 20, 20L);
+        inventoryPreviewPool.runTaskTimer(javaPlugin, 20L * 10L, 20L * 10L);
         this.registerOngoingFee();
+        this.registerBalanceSnapshot();
+        this.registerLogRetention();
+        this.registerShopJournal();
         calendarWatcher = new CalendarWatcher(this);
         calendarWatcher.start();
         this.shopPurger = new ShopPurger(this);
@@ -932,6 +949,50 @@ public class QuickShop implements QuickShopAPI, Reloadable {
         }
     }
 
+    private void registerBalanceSnapshot() {
+        if (economy == null) {
+            return;
+        }
+        boolean enabled = getConfig().getBoolean("economy-balance-snapshot", false);
+        economy.setBalanceSnapshotEnabled(enabled);
+        if (enabled) {
+            if (balanceSnapshotWatcher == null) {
+                balanceSnapshotWatcher = new BalanceSnapshotWatcher(economy);
+                balanceSnapshotWatcher.runTaskTimer(javaPlugin, 1, 1);
+            }
+            logger.info("Economy balance snapshot is enabled.");
+        } else {
+            if (balanceSnapshotWatcher != null) {
+                balanceSnapshotWatcher.cancel();
+                balanceSnapshotWatcher = null;
+            }
+        }
+    }
+
+    private void registerLogRetention() {
+        int retentionDays = getConfig().getInt("logging.database-retention.days", 0);
+        if (retentionDays > 0 && databaseHelper != null) {
+            logRetentionWatcher = new LogRetentionWatcher(this, databaseHelper, retentionDays, getConfig().getInt("logging.database-retention.chunk-size", 1000));
+            logRetentionWatcher.runTaskTimerAsynchronously(javaPlugin, 20L * 60L, Math.max(1, getConfig().getInt("logging.database-retention.interval", 200)));
+            logger.info("Log retention is enabled, log records older than {} days will be deleted in background.", retentionDays);
+        } else {
+            if (logRetentionWatcher != null) {
+                logRetentionWatcher.cancel();
+                logRetentionWatcher = null;
+            }
+        }
+    }
+
+    private void registerShopJournal() {
+        if (getConfig().getBoolean("backup-policy.journal.enable")) {
+            shopJournal = new ShopJournal(this, new File(getDataFolder(), "journal"),
+                    getConfig().getInt("backup-policy.journal.snapshot-interval", 24),
+                    getConfig().getInt("backup-policy.journal.retention-days", 14),
+                    getConfig().getInt("backup-policy.journal.sync-interval", 1000));
+            shopJournal.start();
+        }
+    }
+
     public final void onDisable() {
         logger.info("QuickShop is finishing remaining work, this may need a while...");
         if (sentryErrorReporter != null) {
@@ -967,6 +1028,10 @@ public class QuickShop implements QuickShopAPI, Reloadable {
                     .join();
         }
         /* Remove all display items, and any dupes we can find */
+        if (shopJournal != null) {
+            logger.info("Flushing shop journal...");
+            shopJournal.close();
+        }
         if (shopManager != null) {
             logger.info("Cleaning up shop manager...");
             shopManager.clear();
@@ -975,6 +1040,13 @@ public class QuickShop implements QuickShopAPI, Reloadable {
             logger.info("Cleaning up display manager...");
             virtualDisplayItemManager.unload();
         }
+        if (inventoryPreviewPool != null) {
+            inventoryPreviewPool.closeAll();
+        }
+        if (transactionInbox != null) {
+            logger.info("Saving offline transaction messages...");
+            transactionInbox.close();
+        }
         if (logWatcher != null) {
             logger.info("Stopping log watcher...");
             logWatcher.close();
@@ -1023,9 +1095,11 @@ public class QuickShop implements QuickShopAPI, Reloadable {
     public ReloadResult reloadModule() throws Exception {
         registerDisplayAutoDespawn();
         registerOngoingFee();
+        registerBalanceSnapshot();
         registerUpdater();
         registerShopLock();
         registerDisplayItem();
+        ContainerShop.invalidateSignCaches();
         return Reloadable.super.reloadModule();
     }
 
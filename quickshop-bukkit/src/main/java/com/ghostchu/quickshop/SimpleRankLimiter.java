@@ -2,23 +2,44 @@ package com.ghostchu.quickshop;
 
 import com.ghostchu.quickshop.api.RankLimiter;
 import com.ghostchu.quickshop.api.obj.QUser;
+import com.ghostchu.quickshop.util.logger.Log;
 import com.ghostchu.quickshop.util.paste.item.SubPasteItem;
 import com.ghostchu.quickshop.util.paste.util.HTMLTable;
 import com.ghostchu.simplereloadlib.ReloadResult;
 import com.ghostchu.simplereloadlib.Reloadable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
-public class SimpleRankLimiter implements Reloadable, RankLimiter, SubPasteItem {
+public class SimpleRankLimiter implements Reloadable, RankLimiter, SubPasteItem, Listener {
     private final QuickShop plugin;
     private final Map<String, Integer> limits = new HashMap<>();
+    /**
+     * The limits sorted by amount descending, so resolving can stop at the first granted permission
+     */
+    private List<Map.Entry<String, Integer>> sortedLimits = Collections.emptyList();
+    /**
+     * Resolved shop limits per player, invalidated on login/logout, world change, permission plugin change and TTL
+     */
+    private Cache<UUID, Integer> resolvedCache = CacheBuilder.newBuilder().build();
     /**
      * Whether or not to limit players shop amounts
      */
@@ -29,23 +50,39 @@ public class SimpleRankLimiter implements Reloadable, RankLimiter, SubPasteItem
         this.plugin = plugin;
         plugin.getReloadManager().register(this);
         plugin.getPasteManager().register(plugin.getJavaPlugin(), this);
+        Bukkit.getPluginManager().registerEvents(this, plugin.getJavaPlugin());
         load();
     }
 
     private void load() {
         YamlConfiguration yamlConfiguration = YamlConfiguration.loadConfiguration(new File(this.plugin.getDataFolder(), "config.yml"));
         ConfigurationSection limitCfg = yamlConfiguration.getConfigurationSection("limits");
+        limits.clear();
+        long cacheTtl = 60;
         if (limitCfg != null) {
             this.limit = limitCfg.getBoolean("use", false);
             def = limitCfg.getInt("default");
+            cacheTtl = limitCfg.getLong("cache-ttl", 60);
             limitCfg = limitCfg.getConfigurationSection("ranks");
             for (String key : Objects.requireNonNull(limitCfg).getKeys(true)) {
+                if (limitCfg.isConfigurationSection(key)) {
+                    continue;
+                }
                 limits.put(key, limitCfg.getInt(key));
             }
         } else {
             this.limit = false;
-            limits.clear();
         }
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(limits.entrySet());
+        sorted.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        this.sortedLimits = List.copyOf(sorted);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (cacheTtl > 0) {
+            builder.expireAfterWrite(cacheTtl, TimeUnit.SECONDS);
+        } else {
+            builder.maximumSize(0);
+        }
+        this.resolvedCache = builder.build();
     }
 
     /**
@@ -56,13 +93,78 @@ public class SimpleRankLimiter implements Reloadable, RankLimiter, SubPasteItem
      */
     @Override
     public int getShopLimit(@NotNull QUser p) {
-        int count = def;
-        for (Map.Entry<String, Integer> entry : limits.entrySet()) {
-            if ((entry.getValue() > count) && plugin.perm().hasPermission(p, entry.getKey())) {
-                count = entry.getValue();
+        UUID uuid = p.getUniqueIdIfRealPlayer().orElse(null);
+        if (uuid == null) {
+            return resolveShopLimit(p);
+        }
+        try {
+            return resolvedCache.get(uuid, () -> resolveShopLimit(p));
+        } catch (ExecutionException e) {
+            plugin.logger().warn("Failed to resolve shop limit for {}, fallback to direct lookup", p.getDisplay(), e);
+            return resolveShopLimit(p);
+        }
+    }
+
+    private int resolveShopLimit(@NotNull QUser p) {
+        for (Map.Entry<String, Integer> entry : sortedLimits) {
+            if (entry.getValue() <= def) {
+                // Sorted descending, nothing below can beat the default limit
+                break;
+            }
+            if (plugin.perm().hasPermission(p, entry.getKey())) {
+                return entry.getValue();
             }
         }
-        return count;
+        return def;
+    }
+
+    /**
+     * Invalidate the resolved shop limit of specific player
+     *
+     * @param uuid The player unique id
+     */
+    public void invalidate(@NotNull UUID uuid) {
+        resolvedCache.invalidate(uuid);
+    }
+
+    /**
+     * Invalidate all resolved shop limits
+     */
+    public void invalidateAll() {
+        resolvedCache.invalidateAll();
+    }
+
+    @NotNull
+    public CacheStats getCacheStats() {
+        return resolvedCache.stats();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        // Per-world permissions may grant different limits
+        invalidate(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(PluginEnableEvent event) {
+        Log.debug("Plugin " + event.getPlugin().getName() + " enabled, invalidating resolved shop limits");
+        invalidateAll();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        Log.debug("Plugin " + event.getPlugin().getName() + " disabled, invalidating resolved shop limits");
+        invalidateAll();
     }
 
     @SuppressWarnings("removal")
@@ -90,9 +192,11 @@ public class SimpleRankLimiter implements Reloadable, RankLimiter, SubPasteItem
     public @NotNull String genBody() {
         HTMLTable table = new HTMLTable(2);
         table.setTableTitle("Permission", "Amount");
-        for (Map.Entry<String, Integer> entry : limits.entrySet()) {
+        for (Map.Entry<String, Integer> entry : sortedLimits) {
             table.insert(entry.getKey(), String.valueOf(entry.getValue()));
         }
+        CacheStats stats = resolvedCache.stats();
+        table.insert("Cache Hit Rate", String.format("%.2f%% (%d/%d)", stats.hitRate() * 100, stats.hitCount(), stats.requestCount()));
         return table.render();
     }
 
@@ -270,6 +270,13 @@ public class SimpleCommandManager implements CommandManager, TabCompleter, Comma
                         .permission("quickshop.recovery")
                         .executor(new SubCommand_Recovery(plugin))
                         .build());
+        registerCmd(
+                CommandContainer.builder()
+                        .prefix("journal")
+                        .hidden(true)
+                        .permission("quickshop.journal")
+                        .executor(new SubCommand_Journal(plugin))
+                        .build());
         registerCmd(
                 CommandContainer.builder()
                         .prefix("export")
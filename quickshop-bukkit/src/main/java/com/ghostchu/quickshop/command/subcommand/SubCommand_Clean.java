@@ -3,16 +3,13 @@ package com.ghostchu.quickshop.command.subcommand;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.command.CommandHandler;
 import com.ghostchu.quickshop.api.command.CommandParser;
-import com.ghostchu.quickshop.api.shop.Shop;
-import com.ghostchu.quickshop.common.util.CommonUtil;
-import com.ghostchu.quickshop.obj.QUserImpl;
 import com.ghostchu.quickshop.util.MsgUtil;
 import com.ghostchu.quickshop.util.Util;
-import com.ghostchu.quickshop.util.logging.container.ShopRemoveLog;
+import com.ghostchu.quickshop.util.performance.ShopMaintenanceScan;
 import org.bukkit.command.CommandSender;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class SubCommand_Clean implements CommandHandler<CommandSender> {
@@ -25,34 +22,33 @@ public class SubCommand_Clean implements CommandHandler<CommandSender> {
 
     @Override
     public void onCommand(@NotNull CommandSender sender, @NotNull String commandLabel, @NotNull CommandParser parser) {
+        boolean dryRun = !parser.getArgs().isEmpty() && "dry-run".equalsIgnoreCase(parser.getArgs().get(0));
         plugin.text().of(sender, "command.cleaning").send();
-
-        final List<Shop> pendingRemoval = new ArrayList<>();
-        int i = 0;
-
-        for (Shop shop : plugin.getShopManager().getAllShops()) {
-            try {
-                if (Util.isLoaded(shop.getLocation())
-                        && shop.isSelling()
-                        && shop.getRemainingStock() == 0) {
-                    pendingRemoval.add(
-                            shop); // Is selling, but has no stock, and is a chest shop, but is not a double shop.
-                    // Can be deleted safely.
-                    i++;
-                }
-            } catch (IllegalStateException e) {
-                pendingRemoval.add(shop); // The shop is not there anymore, remove it
-            }
-        }
-
-        for (Shop shop : pendingRemoval) {
-            plugin.logEvent(new ShopRemoveLog(QUserImpl.createFullFilled(CommonUtil.getNilUniqueId(), "SYSTEM", false), "/quickshop clean", shop.saveToInfoStorage()));
-            plugin.getShopManager().deleteShop(shop);
-        }
-
-        MsgUtil.clean();
-        plugin.text().of(sender, "command.cleaned", i).send();
+        // Is selling, but has no stock. Can be deleted safely.
+        // Only the loaded shops will be checked, the container can't be read without loading the chunk.
+        new ShopMaintenanceScan(plugin, sender, "/quickshop clean", dryRun)
+                .addRule("no stock", true, shop -> shop.isSelling()
+                        && !shop.isUnlimited()
+                        && !Util.hasItems(shop.getInventory(), shop))
+                .start()
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        plugin.logger().warn("Failed to clean the shops", throwable);
+                        return;
+                    }
+                    if (result.dryRun()) {
+                        plugin.text().of(sender, "maintenance-scan.dry-run-result", result.matched(), result.scanned()).send();
+                        return;
+                    }
+                    MsgUtil.clean();
+                    plugin.text().of(sender, "command.cleaned", result.matched()).send();
+                });
     }
 
+    @NotNull
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull String commandLabel, @NotNull CommandParser parser) {
+        return parser.getArgs().size() == 1 ? Collections.singletonList("dry-run") : Collections.emptyList();
+    }
 
 }
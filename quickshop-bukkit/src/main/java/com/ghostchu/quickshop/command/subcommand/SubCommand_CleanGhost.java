@@ -3,17 +3,14 @@ package com.ghostchu.quickshop.command.subcommand;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.command.CommandHandler;
 import com.ghostchu.quickshop.api.command.CommandParser;
-import com.ghostchu.quickshop.api.shop.Shop;
-import com.ghostchu.quickshop.common.util.CommonUtil;
-import com.ghostchu.quickshop.obj.QUserImpl;
 import com.ghostchu.quickshop.util.Util;
-import com.ghostchu.quickshop.util.logging.container.ShopRemoveLog;
-import com.ghostchu.quickshop.util.performance.BatchBukkitExecutor;
+import com.ghostchu.quickshop.util.performance.ShopMaintenanceScan;
 import org.bukkit.Material;
 import org.bukkit.command.CommandSender;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Collections;
+import java.util.List;
 
 public class SubCommand_CleanGhost implements CommandHandler<CommandSender> {
 
@@ -30,52 +27,42 @@ public class SubCommand_CleanGhost implements CommandHandler<CommandSender> {
             return;
         }
 
-        if (!"confirm".equalsIgnoreCase(parser.getArgs().get(0))) {
+        boolean dryRun = "dry-run".equalsIgnoreCase(parser.getArgs().get(0));
+        if (!dryRun && !"confirm".equalsIgnoreCase(parser.getArgs().get(0))) {
             plugin.text().of(sender, "cleanghost-warning").send();
             return;
         }
 
         plugin.text().of(sender, "cleanghost-starting").send();
-        AtomicInteger deletionCounter = new AtomicInteger(0);
-        BatchBukkitExecutor<Shop> updateExecutor = new BatchBukkitExecutor<>();
-        updateExecutor.addTasks(plugin.getShopManager().getAllShops());
-        updateExecutor.startHandle(plugin.getJavaPlugin(), (shop) -> {
-            if (shop == null) {
-                return; // WTF
-            }
-            //noinspection ConstantConditions
-            if (shop.getOwner() == null) {
-                plugin.text().of(sender, "cleanghost-deleting", shop.getShopId(), "invalid owner data").send();
-                plugin.getShopManager().deleteShop(shop);
-                deletionCounter.incrementAndGet();
-                plugin.logEvent(new ShopRemoveLog(QUserImpl.createFullFilled(CommonUtil.getNilUniqueId(), "SYSTEM", false), "/quickshop cleanghost command", shop.saveToInfoStorage()));
-                return;
-            }
-            if (shop.getItem().getType() == Material.AIR) {
-                plugin.text().of(sender, "cleanghost-deleting", shop.getShopId(), "invalid item data").send();
-                plugin.getShopManager().deleteShop(shop);
-                deletionCounter.incrementAndGet();
-                plugin.logEvent(new ShopRemoveLog(QUserImpl.createFullFilled(CommonUtil.getNilUniqueId(), "SYSTEM", false), "/quickshop cleanghost command", shop.saveToInfoStorage()));
-                return;
-            }
-            if (!shop.getLocation().isWorldLoaded()) {
-                plugin.text().of(sender, "cleanghost-deleting", shop.getShopId(), "unloaded world").send();
-                plugin.getShopManager().deleteShop(shop);
-                deletionCounter.incrementAndGet();
-                plugin.logEvent(new ShopRemoveLog(QUserImpl.createFullFilled(CommonUtil.getNilUniqueId(), "SYSTEM", false), "/quickshop cleanghost command", shop.saveToInfoStorage()));
-                return;
-            }
-            if (!Util.canBeShop(shop.getLocation().getBlock())) {
-                plugin.text().of(sender, "cleanghost-deleting", shop.getShopId(), "invalid shop block").send();
-                plugin.getShopManager().deleteShop(shop);
-                deletionCounter.incrementAndGet();
-                plugin.logEvent(new ShopRemoveLog(QUserImpl.createFullFilled(CommonUtil.getNilUniqueId(), "SYSTEM", false), "/quickshop cleanghost command", shop.saveToInfoStorage()));
-            }
-        }).whenComplete((aVoid, throwable) ->
-                plugin.text().of(sender, "cleanghost-deleted", deletionCounter.get()
-                ).send());
-
+        //noinspection ConstantConditions
+        new ShopMaintenanceScan(plugin, sender, "/quickshop cleanghost command", dryRun)
+                .addRule("invalid owner data", false, shop -> shop.getOwner() == null)
+                .addRule("invalid item data", false, shop -> shop.getItem().getType() == Material.AIR)
+                .addRule("unloaded world", false, shop -> !shop.getLocation().isWorldLoaded())
+                // The shop block can only be checked in loaded chunks, the chunks won't be loaded by the scan
+                .addRule("invalid shop block", true, shop -> !Util.canBeShop(shop.getLocation().getBlock()))
+                .onRemove((shop, rule) -> plugin.text().of(sender, "cleanghost-deleting", shop.getShopId(), rule.reason()).send())
+                .start()
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        plugin.logger().warn("Failed to clean the ghost shops", throwable);
+                        return;
+                    }
+                    if (result.unloadedChunks() > 0) {
+                        plugin.text().of(sender, "maintenance-scan.skipped-chunks", result.unloadedChunks()).send();
+                    }
+                    if (result.dryRun()) {
+                        plugin.text().of(sender, "maintenance-scan.dry-run-result", result.matched(), result.scanned()).send();
+                        return;
+                    }
+                    plugin.text().of(sender, "cleanghost-deleted", result.matched()).send();
+                });
     }
 
+    @NotNull
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull String commandLabel, @NotNull CommandParser parser) {
+        return parser.getArgs().size() == 1 ? List.of("confirm", "dry-run") : Collections.emptyList();
+    }
 
 }
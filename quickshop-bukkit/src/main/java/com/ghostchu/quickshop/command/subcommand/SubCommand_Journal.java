@@ -0,0 +1,190 @@
+package com.ghostchu.quickshop.command.subcommand;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.command.CommandHandler;
+import com.ghostchu.quickshop.api.command.CommandParser;
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.database.SimpleDatabaseHelperV2;
+import com.ghostchu.quickshop.util.Util;
+import com.ghostchu.quickshop.util.journal.JournalRecord;
+import com.ghostchu.quickshop.util.journal.ShopJournal;
+import com.ghostchu.quickshop.util.journal.ShopJournalReplayer;
+import com.ghostchu.quickshop.util.logger.Log;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class SubCommand_Journal implements CommandHandler<CommandSender> {
+    private static final Pattern RELATIVE_TIME = Pattern.compile("(\\d+)([smhd])");
+    private final QuickShop plugin;
+
+    public SubCommand_Journal(QuickShop plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void onCommand(@NotNull CommandSender sender, @NotNull String commandLabel, @NotNull CommandParser parser) {
+        ShopJournal journal = plugin.getShopJournal();
+        if (journal == null) {
+            plugin.text().of(sender, "journal.not-enabled").send();
+            return;
+        }
+        if (parser.getArgs().isEmpty()) {
+            plugin.text().of(sender, "journal.usage").send();
+            return;
+        }
+        List<String> subParams = new ArrayList<>(parser.getArgs());
+        subParams.remove(0);
+        switch (parser.getArgs().get(0).toLowerCase(Locale.ROOT)) {
+            case "restore" -> restore(sender, journal, subParams);
+            case "snapshot" -> {
+                journal.requestSnapshot();
+                plugin.text().of(sender, "journal.snapshot-requested").send();
+            }
+            default -> plugin.text().of(sender, "journal.usage").send();
+        }
+    }
+
+    private void restore(@NotNull CommandSender sender, @NotNull ShopJournal journal, @NotNull List<String> subParams) {
+        if (subParams.size() < 6) {
+            plugin.text().of(sender, "journal.usage").send();
+            return;
+        }
+        Long time = parseTime(subParams.get(0));
+        if (time == null) {
+            plugin.text().of(sender, "journal.invalid-time", subParams.get(0)).send();
+            return;
+        }
+        String world = subParams.get(1);
+        int[] corners = new int[4];
+        for (int i = 0; i < corners.length; i++) {
+            try {
+                corners[i] = Integer.parseInt(subParams.get(i + 2));
+            } catch (NumberFormatException e) {
+                plugin.text().of(sender, "not-a-integer", subParams.get(i + 2)).send();
+                return;
+            }
+        }
+        int minX = Math.min(corners[0], corners[2]);
+        int maxX = Math.max(corners[0], corners[2]);
+        int minZ = Math.min(corners[1], corners[3]);
+        int maxZ = Math.max(corners[1], corners[3]);
+        boolean confirm = subParams.size() > 6 && "confirm".equalsIgnoreCase(subParams.get(6));
+        String timeText = new Date(time).toString();
+        SimpleDatabaseHelperV2 databaseHelper = (SimpleDatabaseHelperV2) plugin.getDatabaseHelper();
+        ShopJournalReplayer replayer = new ShopJournalReplayer(journal.getFolder());
+        if (!confirm) {
+            Util.asyncThreadRun(() -> {
+                try {
+                    Map<JournalRecord.ShopPos, Map<String, Object>> states = replayer.replay(time);
+                    if (states == null) {
+                        plugin.text().of(sender, "journal.no-journal", timeText).send();
+                        return;
+                    }
+                    ShopJournalReplayer.RestoreResult result = replayer.restore(databaseHelper.getManager(), states, world, minX, minZ, maxX, maxZ, true);
+                    plugin.text().of(sender, "journal.dry-run-result", timeText, result.created(), result.updated(), result.removed()).send();
+                } catch (Exception e) {
+                    plugin.text().of(sender, "journal.failed").send();
+                    plugin.logger().warn("Failed to replay the shop journal.", e);
+                }
+            });
+            return;
+        }
+        plugin.text().of(sender, "journal.restoring").send();
+        // Only the shops in the region will be replaced, the others keep loaded
+        List<Shop> regionShops = new ArrayList<>();
+        for (Shop shop : plugin.getShopManager().getAllShops()) {
+            Location loc = shop.getLocation();
+            if (loc.getWorld() != null && inRegion(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockZ(), world, minX, minZ, maxX, maxZ)) {
+                regionShops.add(shop);
+            }
+        }
+        // Save the pending changes first, the region shops will be loaded from database again if the restore failed
+        List<CompletableFuture<Void>> saving = regionShops.stream().filter(Shop::isDirty).map(Shop::update).toList();
+        Log.debug("Unloading " + regionShops.size() + " shops in the region...");
+        for (Shop shop : regionShops) {
+            plugin.getShopManager().unloadShop(shop);
+            plugin.getShopManager().unregisterShop(shop, false);
+        }
+        Log.debug("Reset shop cache...");
+        plugin.getShopCache().invalidateAll();
+        Util.asyncThreadRun(() -> {
+            ShopJournalReplayer.RestoreResult result = null;
+            try {
+                CompletableFuture.allOf(saving.toArray(new CompletableFuture[0])).join();
+                Map<JournalRecord.ShopPos, Map<String, Object>> states = replayer.replay(time);
+                if (states == null) {
+                    plugin.text().of(sender, "journal.no-journal", timeText).send();
+                } else {
+                    result = replayer.restore(databaseHelper.getManager(), states, world, minX, minZ, maxX, maxZ, false);
+                }
+            } catch (Exception e) {
+                plugin.text().of(sender, "journal.failed").send();
+                plugin.logger().warn("Failed to restore the shops from the shop journal.", e);
+            }
+            ShopJournalReplayer.RestoreResult finalResult = result;
+            Log.debug("Re-loading the region shops from database...");
+            Util.mainThreadRun(() -> {
+                plugin.getShopLoader().loadShops(world, info -> inRegion(info.getWorld(), info.getX(), info.getZ(), world, minX, minZ, maxX, maxZ));
+                if (finalResult != null) {
+                    // Start a new journal file, so the restored shops are the base of the following changes
+                    journal.requestSnapshot();
+                    plugin.text().of(sender, "journal.restored", timeText, finalResult.created(), finalResult.updated(), finalResult.removed()).send();
+                }
+            });
+        });
+    }
+
+    private boolean inRegion(@NotNull String shopWorld, int x, int z, @NotNull String world, int minX, int minZ, int maxX, int maxZ) {
+        return shopWorld.equals(world) && x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+    }
+
+    @Nullable
+    private Long parseTime(@NotNull String input) {
+        Matcher matcher = RELATIVE_TIME.matcher(input.toLowerCase(Locale.ROOT));
+        if (matcher.matches()) {
+            long amount = Long.parseLong(matcher.group(1));
+            TimeUnit unit = switch (matcher.group(2)) {
+                case "s" -> TimeUnit.SECONDS;
+                case "m" -> TimeUnit.MINUTES;
+                case "h" -> TimeUnit.HOURS;
+                default -> TimeUnit.DAYS;
+            };
+            return System.currentTimeMillis() - unit.toMillis(amount);
+        }
+        try {
+            return LocalDateTime.parse(input).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public @Nullable List<String> onTabComplete(@NotNull CommandSender sender, @NotNull String commandLabel, @NotNull CommandParser parser) {
+        if (parser.getArgs().size() < 2) {
+            return List.of("restore", "snapshot");
+        }
+        if (!"restore".equalsIgnoreCase(parser.getArgs().get(0))) {
+            return Collections.emptyList();
+        }
+        return switch (parser.getArgs().size()) {
+            case 2 -> List.of("30m", "2h", "1d");
+            case 3 -> Bukkit.getWorlds().stream().map(World::getName).toList();
+            case 8 -> List.of("confirm");
+            default -> Collections.emptyList();
+        };
+    }
+
+}
@@ -3,7 +3,6 @@ package com.ghostchu.quickshop.command.subcommand;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.command.CommandHandler;
 import com.ghostchu.quickshop.api.command.CommandParser;
-import com.ghostchu.quickshop.api.event.ShopOwnershipTransferEvent;
 import com.ghostchu.quickshop.api.obj.QUser;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.obj.QUserImpl;
@@ -19,6 +18,7 @@ import org.jetbrains.annotations.Nullable;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 public class SubCommand_Transfer implements CommandHandler<Player> {
@@ -79,8 +79,7 @@ public class SubCommand_Transfer implements CommandHandler<Player> {
                         QUser senderQUser = QUserImpl.createFullFilled(sender);
                         QUser receiverQUser = QUserImpl.createFullFilled(receiver);
 
-                        List<Shop> shopsToTransfer = plugin.getShopManager().getAllShops(senderQUser);
-                        PendingTransferTask task = new PendingTransferTask(senderQUser, receiverQUser, shopsToTransfer);
+                        PendingTransferTask task = new PendingTransferTask(senderQUser, receiverQUser);
                         taskCache.put(uuid, task);
                         plugin.text().of(sender, "transfer-sent", name).send();
                         plugin.text().of(receiver, "transfer-request", sender.getName()).send();
@@ -109,12 +108,9 @@ public class SubCommand_Transfer implements CommandHandler<Player> {
                     plugin.text().of(sender, "unknown-player", "targetPlayer").send();
                     return;
                 }
-                List<Shop> shopList = plugin.getShopManager().getAllShops(fromQUser);
-                PendingTransferTask task = new PendingTransferTask(fromQUser, targetQUser, shopList);
-                Util.mainThreadRun(() -> {
-                    task.commit(false);
-                    plugin.text().of(sender, "command.transfer-success-other", shopList.size(), parser.getArgs().get(0), parser.getArgs().get(1)).send();
-                });
+                PendingTransferTask task = new PendingTransferTask(fromQUser, targetQUser);
+                Util.mainThreadRun(() -> task.commit(false).thenAccept(transferred ->
+                        plugin.text().of(sender, "command.transfer-success-other", transferred.size(), parser.getArgs().get(0), parser.getArgs().get(1)).send()));
             });
 
         }
@@ -132,12 +128,10 @@ public class SubCommand_Transfer implements CommandHandler<Player> {
     static class PendingTransferTask {
         private final QUser from;
         private final QUser to;
-        private final List<Shop> shops;
 
-        public PendingTransferTask(QUser from, QUser to, List<Shop> shops) {
+        public PendingTransferTask(QUser from, QUser to) {
             this.from = from;
             this.to = to;
-            this.shops = shops;
         }
 
         public void cancel(boolean sendMessage) {
@@ -147,18 +141,13 @@ public class SubCommand_Transfer implements CommandHandler<Player> {
             }
         }
 
-        public void commit(boolean sendMessage) {
-            for (Shop shop : shops) {
-                ShopOwnershipTransferEvent event = new ShopOwnershipTransferEvent(shop, shop.getOwner(), to);
-                if (event.callCancellableEvent()) {
-                    continue;
-                }
-                shop.setOwner(to);
-            }
+        public CompletableFuture<List<Shop>> commit(boolean sendMessage) {
+            CompletableFuture<List<Shop>> future = QuickShop.getInstance().getShopManager().transferOwnership(from, to);
             if (sendMessage) {
                 QuickShop.getInstance().text().of(from, "transfer-accepted-fromside", to).send();
                 QuickShop.getInstance().text().of(to, "transfer-accepted-toside", from).send();
             }
+            return future;
         }
     }
 }
@@ -18,6 +18,7 @@ import net.kyori.adventure.text.Component;
 import org.bukkit.configuration.ConfigurationSection;
 import org.h2.Driver;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.net.ConnectException;
@@ -26,11 +27,22 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class HikariDatabaseConverter implements HikariConverterInterface {
-
+    private static final String CHECKPOINT_TABLE = "converter_checkpoint";
+    private static final String CHECKPOINT_TASK = "shops";
+    private static final String[] SHOP_COLUMNS = {"owner", "price", "itemConfig", "x", "y", "z", "world", "unlimited", "type", "extra",
+            "currency", "disableDisplay", "taxAccount", "inventorySymbolLink", "inventoryWrapperName"};
+    private static final int FETCH_SIZE = 1000;
+    private static final int QUEUE_CAPACITY = 5000;
+    private static final int CHUNK_SIZE = 500;
+    private static final int PROGRESS_REPORT_CHUNKS = 20;
+    private static final ShopStorageUnit END_OF_STREAM = ShopStorageUnit.builder().build();
     private final HikariConverter instance;
     private final QuickShop plugin;
     private SQLManager liveDatabase = null;
@@ -77,6 +89,24 @@ public class HikariDatabaseConverter implements HikariConverterInterface {
         Driver.load();
         Class.forName("org.sqlite.JDBC");
         try (Connection liveDatabaseConnection = getLiveDatabase().getConnection()) {
+            Checkpoint checkpoint = loadCheckpoint(config.getPrefix(), liveDatabaseConnection);
+            if (checkpoint != null) {
+                // A previous converting process already replaced the tables, only the source table is required
+                if (!checkpoint.isFinished()) {
+                    if (config.isMysql()) {
+                        if (!hasTable(checkpoint.getSourceTable(), liveDatabaseConnection)) {
+                            throw new IllegalStateException("The migration checkpoint source table " + checkpoint.getSourceTable() + " is missing!");
+                        }
+                    } else {
+                        try (Connection sqliteDatabase = getSQLiteDatabase()) {
+                            if (!hasTable(checkpoint.getSourceTable(), sqliteDatabase)) {
+                                throw new IllegalStateException("The migration checkpoint source table " + checkpoint.getSourceTable() + " is missing! shops.db file data missing!");
+                            }
+                        }
+                    }
+                }
+                return entries;
+            }
             if (!config.isMysql()) {
                 try (Connection sqliteDatabase = getSQLiteDatabase()) {
                     if (hasTable(config.getPrefix() + "shops", liveDatabaseConnection)) {
@@ -191,34 +221,52 @@ public class HikariDatabaseConverter implements HikariConverterInterface {
             throw new IllegalStateException("Not ready!");
         }
         DatabaseConfig config = getDatabaseConfig();
-        instance.getLogger().info("Renaming tables...");
-        String shopsTmpTable = renameTables(actionId, config);
-        instance.getLogger().info("Deleting old tables...");
-        deleteOldTables(actionId, config);
-        instance.getLogger().info("Offline Messages and External Caches won't be migrated because they are have totally different syntax and cache need regenerate after migrated.");
-        instance.getLogger().info("Downloading old data from database connection...");
-        List<ShopStorageUnit> units;
         SQLManager liveDatabaseManager = getLiveDatabase();
+        Checkpoint checkpoint;
         try (Connection liveDatabaseConnection = liveDatabaseManager.getConnection()) {
-            if (config.isMysql()) {
-                units = pullShops(shopsTmpTable, liveDatabaseConnection);
-            } else {
-                try (Connection sqliteDatabase = getSQLiteDatabase()) {
-                    units = pullShops(shopsTmpTable, sqliteDatabase);
-                }
+            checkpoint = loadCheckpoint(config.getPrefix(), liveDatabaseConnection);
+        }
+        if (checkpoint != null && checkpoint.isFinished()) {
+            instance.getLogger().info("Database migration already completed by a previous converting process, skipping...");
+            return;
+        }
+        if (checkpoint == null) {
+            instance.getLogger().info("Renaming tables...");
+            String shopsTmpTable = renameTables(actionId, config);
+            try (Connection liveDatabaseConnection = liveDatabaseManager.getConnection()) {
+                checkpoint = createCheckpoint(config.getPrefix(), shopsTmpTable, liveDatabaseConnection);
+            }
+            instance.getLogger().info("Deleting old tables...");
+            deleteOldTables(actionId, config);
+        } else {
+            instance.getLogger().info("Found an unfinished migration checkpoint, resuming from shop #" + (checkpoint.getPushed() + checkpoint.getFailed()) + " of table " + checkpoint.getSourceTable() + "...");
+        }
+        instance.getLogger().info("Offline Messages and External Caches won't be migrated because they are have totally different syntax and cache need regenerate after migrated.");
+        instance.getLogger().info("Checking and creating for database tables... ");
+        // Database Helper will resolve all we need while starting up.
+        //noinspection deprecation
+        SimpleDatabaseHelperV1 v1 = new SimpleDatabaseHelperV1(plugin, liveDatabaseManager, config.getPrefix());
+        instance.getLogger().info("Streaming old data to new database...");
+        if (config.isMysql()) {
+            try (Connection source = liveDatabaseManager.getConnection()) {
+                transferShops(source, true, config.getPrefix(), checkpoint, liveDatabaseManager);
+            }
+        } else {
+            try (Connection source = getSQLiteDatabase()) {
+                transferShops(source, false, config.getPrefix(), checkpoint, liveDatabaseManager);
             }
-            instance.getLogger().info("Checking and creating for database tables... ");
-            // Database Helper will resolve all we need while starting up.
-            //noinspection deprecation
-            SimpleDatabaseHelperV1 v1 = new SimpleDatabaseHelperV1(plugin, liveDatabaseManager, config.getPrefix());
-            instance.getLogger().info("Migrating old data to new database...");
-            pushShops(units, config.getPrefix(), liveDatabaseManager);
-            instance.getLogger().info("#1 Before Database Version: " + v1.getDatabaseVersion());
-            instance.getLogger().info("Hard relocate version to 3...");
-            v1.setDatabaseVersion(3);
-            instance.getLogger().info("#2 Before Database Version: " + v1.getDatabaseVersion());
-            new SimpleDatabaseHelperV2(plugin, liveDatabaseManager, config.getPrefix());
-            instance.getLogger().info("After Database Version: " + v1.getDatabaseVersion());
+        }
+        instance.getLogger().info("#1 Before Database Version: " + v1.getDatabaseVersion());
+        instance.getLogger().info("Hard relocate version to 3...");
+        v1.setDatabaseVersion(3);
+        instance.getLogger().info("#2 Before Database Version: " + v1.getDatabaseVersion());
+        new SimpleDatabaseHelperV2(plugin, liveDatabaseManager, config.getPrefix());
+        instance.getLogger().info("After Database Version: " + v1.getDatabaseVersion());
+        checkpoint.setFinished(true);
+        try (Connection liveDatabaseConnection = liveDatabaseManager.getConnection();
+             PreparedStatement update = liveDatabaseConnection.prepareStatement(checkpointUpdateSQL(config.getPrefix()))) {
+            bindCheckpoint(update, checkpoint);
+            update.executeUpdate();
         }
         instance.getLogger().info("Database migration completed!");
     }
@@ -401,64 +449,198 @@ public class HikariDatabaseConverter implements HikariConverterInterface {
         return match;
     }
 
-    @NotNull
-    private List<ShopStorageUnit> pullShops(@NotNull String shopsTable, @NotNull Connection connection) throws SQLException {
-        instance.getLogger().info("Preparing for pulling shops from database...");
-        ResultSet resultSet = connection.createStatement().executeQuery("SELECT * FROM " + shopsTable);
-        List<ShopStorageUnit> units = new ArrayList<>();
-        int count = 0;
+    /**
+     * Stream the shops from the source connection into the live database.
+     * A reader thread pulls the rows with a fetch-size cursor into a bounded queue, and this thread pushes them
+     * with JDBC batch inserts, every chunk is committed with the checkpoint in the same transaction, so a crashed
+     * migration can continue after the last committed chunk.
+     *
+     * @param source     The connection to read the legacy shops
+     * @param mysql      Is the source a MySQL database
+     * @param prefix     The live database prefix
+     * @param checkpoint The checkpoint to continue from
+     * @param manager    The live database
+     * @throws Exception Failed to read or push the shops, the committed chunks are kept
+     */
+    private void transferShops(@NotNull Connection source, boolean mysql, @NotNull String prefix, @NotNull Checkpoint checkpoint, @NotNull SQLManager manager) throws Exception {
+        instance.getLogger().info("Preparing for streaming shops from database...");
+        long total = countShops(checkpoint.getSourceTable(), source);
+        instance.getLogger().info("Statistics: Total " + total + " shops in source table, " + checkpoint.getPushed() + " shops already pushed.");
+        BlockingQueue<ShopStorageUnit> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ShopReader reader = new ShopReader(source, mysql, checkpoint, queue);
+        Thread readerThread = new Thread(reader, "QuickShop-Hikari-Converter-Reader");
+        readerThread.start();
+        try {
+            pushShops(queue, prefix, checkpoint, manager, total);
+        } catch (Exception e) {
+            reader.abort();
+            throw e;
+        } finally {
+            readerThread.join();
+        }
+        if (reader.getError() != null) {
+            throw new SQLException("Failed to pull shops from " + checkpoint.getSourceTable() + ", restart the server to continue the migration.", reader.getError());
+        }
+        instance.getLogger().info("Completed! Pushed " + checkpoint.getPushed() + " shops into database! Total " + (checkpoint.getFailed() + reader.getFails()) + " fails.");
+    }
+
+    private long countShops(@NotNull String shopsTable, @NotNull Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + shopsTable)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private void pushShops(@NotNull BlockingQueue<ShopStorageUnit> queue, @NotNull String prefix, @NotNull Checkpoint checkpoint, @NotNull SQLManager manager, long total) throws SQLException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        int chunks = 0;
+        try (Connection conn = manager.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO " + prefix + "shops (" + String.join(", ", SHOP_COLUMNS) + ") VALUES (" + ", ?".repeat(SHOP_COLUMNS.length).substring(2) + ")");
+                 PreparedStatement update = conn.prepareStatement(checkpointUpdateSQL(prefix))) {
+                List<ShopStorageUnit> chunk = new ArrayList<>(CHUNK_SIZE);
+                boolean end = false;
+                while (!end) {
+                    ShopStorageUnit unit = queue.take();
+                    if (unit == END_OF_STREAM) {
+                        end = true;
+                    } else {
+                        chunk.add(unit);
+                    }
+                    if (chunk.size() >= CHUNK_SIZE || (end && !chunk.isEmpty())) {
+                        commitChunk(conn, insert, update, chunk, checkpoint);
+                        chunk.clear();
+                        if (++chunks % PROGRESS_REPORT_CHUNKS == 0) {
+                            instance.getLogger().info("Pushing shops to target database, " + (checkpoint.getPushed() + checkpoint.getFailed()) + " of " + total + " shops processed (" + (System.currentTimeMillis() - startTime) + "ms)...");
+                        }
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void commitChunk(@NotNull Connection conn, @NotNull PreparedStatement insert, @NotNull PreparedStatement update, @NotNull List<ShopStorageUnit> chunk, @NotNull Checkpoint checkpoint) throws SQLException {
         int fails = 0;
-        while (resultSet.next()) {
-            ++count;
-            instance.getLogger().info("Pulling and converting shops from database, downloading: #" + count + "...");
-            ShopStorageUnit.ShopStorageUnitBuilder builder = ShopStorageUnit.builder();
+        try {
             try {
-                builder.owner(resultSet.getString("owner"));
-                builder.price(resultSet.getDouble("price"));
-                builder.itemConfig(resultSet.getString("itemConfig"));
-                builder.x(resultSet.getInt("x"));
-                builder.y(resultSet.getInt("y"));
-                builder.z(resultSet.getInt("z"));
-                builder.world(resultSet.getString("world"));
-                builder.unlimited(resultSet.getInt("unlimited"));
-                builder.type(resultSet.getInt("type"));
-                builder.currency(resultSet.getString("currency"));
-                builder.extra(resultSet.getString("extra"));
-                builder.disableDisplay(resultSet.getInt("disableDisplay"));
-                builder.taxAccount(resultSet.getString("taxAccount"));
-                units.add(builder.build());
-            } catch (SQLException exception) {
-                instance.getLogger().log(Level.WARNING, "Error while pulling shop from database: " + exception.getMessage() + ", skipping...", exception);
-                ++fails;
+                for (ShopStorageUnit unit : chunk) {
+                    bindShop(insert, unit);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            } catch (SQLException batchException) {
+                // One broken shop fails the whole batch, retry this chunk one by one to skip the broken shops only
+                conn.rollback();
+                insert.clearBatch();
+                for (ShopStorageUnit unit : chunk) {
+                    bindShop(insert, unit);
+                    try {
+                        insert.executeUpdate();
+                    } catch (SQLException exception) {
+                        ++fails;
+                        instance.getLogger().log(Level.WARNING, "Failed to push shop " + unit + " into database! " + exception.getMessage() + ", skipping...", exception);
+                    }
+                }
             }
+            checkpoint.advance(chunk.get(chunk.size() - 1), chunk.size() - fails, fails);
+            bindCheckpoint(update, checkpoint);
+            update.executeUpdate();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
         }
-        instance.getLogger().info("Completed! Pulled " + (count - fails) + " shops from database! Total " + fails + " fails.");
-        return units;
+    }
 
+    private void bindShop(@NotNull PreparedStatement insert, @NotNull ShopStorageUnit unit) throws SQLException {
+        insert.setString(1, unit.getOwner());
+        insert.setDouble(2, unit.getPrice());
+        insert.setString(3, unit.getItemConfig());
+        insert.setInt(4, unit.getX());
+        insert.setInt(5, unit.getY());
+        insert.setInt(6, unit.getZ());
+        insert.setString(7, unit.getWorld());
+        insert.setInt(8, unit.getUnlimited());
+        insert.setInt(9, unit.getType());
+        insert.setString(10, unit.getExtra());
+        insert.setString(11, unit.getCurrency());
+        insert.setInt(12, unit.getDisableDisplay());
+        insert.setString(13, unit.getTaxAccount());
+        insert.setString(14, unit.getInventorySymbolLink());
+        insert.setString(15, unit.getInventoryWrapperName());
     }
 
-    private void pushShops(@NotNull List<ShopStorageUnit> units, @NotNull String prefix, @NotNull SQLManager manager) {
-        instance.getLogger().info("Preparing to pushing shops into database...");
-        instance.getLogger().info("Statistics: Total " + units.size() + " shops waiting for pushing.");
-        instance.getLogger().info("Initializing target database...");
-        int count = 0;
-        int fails = 0;
-        for (ShopStorageUnit unit : units) {
-            ++count;
-            instance.getLogger().info("Pushing shop " + count + " of " + units.size() + " to target database...");
-            try {
-                manager.createInsert(prefix + "shops")
-                        .setColumnNames("owner", "price", "itemConfig", "x", "y", "z", "world", "unlimited", "type", "extra",
-                                "currency", "disableDisplay", "taxAccount", "inventorySymbolLink", "inventoryWrapperName")
-                        .setParams(unit.getOwner(), unit.getPrice(), unit.getItemConfig(), unit.getX(), unit.getY(), unit.getZ(), unit.getWorld(), unit.getUnlimited(), unit.getType(), unit.getExtra(),
-                                unit.getCurrency(), unit.getDisableDisplay(), unit.getTaxAccount(), unit.getInventorySymbolLink(), unit.getInventoryWrapperName())
-                        .execute();
-            } catch (Exception e) {
-                ++fails;
-                instance.getLogger().log(Level.WARNING, "Failed to push shop " + unit + " into database! " + e.getMessage() + ", skipping...", e);
+    /**
+     * Gets the unfinished or finished migration checkpoint from the live database
+     *
+     * @param prefix     The live database prefix
+     * @param connection The live database connection
+     * @return The checkpoint, null if no migration started before
+     * @throws SQLException Failed to read the checkpoint
+     */
+    @Nullable
+    private Checkpoint loadCheckpoint(@NotNull String prefix, @NotNull Connection connection) throws SQLException {
+        if (!hasTable(prefix + CHECKPOINT_TABLE, connection)) {
+            return null;
+        }
+        try (PreparedStatement ps = connection.prepareStatement("SELECT * FROM " + prefix + CHECKPOINT_TABLE + " WHERE task = ?")) {
+            ps.setString(1, CHECKPOINT_TASK);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Checkpoint checkpoint = new Checkpoint(rs.getString("source_table"));
+                checkpoint.setLastWorld(rs.getString("last_world"));
+                checkpoint.setLastX(rs.getInt("last_x"));
+                checkpoint.setLastY(rs.getInt("last_y"));
+                checkpoint.setLastZ(rs.getInt("last_z"));
+                checkpoint.setPushed(rs.getLong("pushed"));
+                checkpoint.setFailed(rs.getLong("failed"));
+                checkpoint.setFinished(rs.getInt("finished") != 0);
+                return checkpoint;
             }
         }
-        instance.getLogger().info("Pushed " + count + " shops into database. " + fails + " shops failed to push.");
+    }
+
+    @NotNull
+    private Checkpoint createCheckpoint(@NotNull String prefix, @NotNull String sourceTable, @NotNull Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + prefix + CHECKPOINT_TABLE + " ("
+                    + "task VARCHAR(64) NOT NULL PRIMARY KEY, "
+                    + "source_table VARCHAR(255) NOT NULL, "
+                    + "last_world VARCHAR(255) NULL, "
+                    + "last_x INT NOT NULL, "
+                    + "last_y INT NOT NULL, "
+                    + "last_z INT NOT NULL, "
+                    + "pushed BIGINT NOT NULL, "
+                    + "failed BIGINT NOT NULL, "
+                    + "finished INT NOT NULL)");
+        }
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + prefix + CHECKPOINT_TABLE
+                + " (task, source_table, last_world, last_x, last_y, last_z, pushed, failed, finished) VALUES (?, ?, NULL, 0, 0, 0, 0, 0, 0)")) {
+            ps.setString(1, CHECKPOINT_TASK);
+            ps.setString(2, sourceTable);
+            ps.executeUpdate();
+        }
+        return new Checkpoint(sourceTable);
+    }
+
+    @NotNull
+    private String checkpointUpdateSQL(@NotNull String prefix) {
+        return "UPDATE " + prefix + CHECKPOINT_TABLE + " SET last_world = ?, last_x = ?, last_y = ?, last_z = ?, pushed = ?, failed = ?, finished = ? WHERE task = ?";
+    }
+
+    private void bindCheckpoint(@NotNull PreparedStatement update, @NotNull Checkpoint checkpoint) throws SQLException {
+        update.setString(1, checkpoint.getLastWorld());
+        update.setInt(2, checkpoint.getLastX());
+        update.setInt(3, checkpoint.getLastY());
+        update.setInt(4, checkpoint.getLastZ());
+        update.setLong(5, checkpoint.getPushed());
+        update.setLong(6, checkpoint.getFailed());
+        update.setInt(7, checkpoint.isFinished() ? 1 : 0);
+        update.setString(8, CHECKPOINT_TASK);
     }
 
     /**
@@ -473,10 +655,10 @@ public class HikariDatabaseConverter implements HikariConverterInterface {
     private String renameTables(@NotNull UUID actionId, @NotNull DatabaseConfig config) throws Exception {
         if (config.isMysql()) {
             SQLManager manager = getLiveDatabase();
-            silentTableCopy(manager, config.getPrefix() + "shops", config.getPrefix() + "shops_" + actionId.toString().replace("-", ""));
-            silentTableCopy(manager, config.getPrefix() + "messages", config.getPrefix() + "messages_" + actionId.toString().replace("-", ""));
-            silentTableCopy(manager, config.getPrefix() + "logs", config.getPrefix() + "logs_" + actionId.toString().replace("-", ""));
-            silentTableCopy(manager, config.getPrefix() + "external_cache", config.getPrefix() + "external_cache_" + actionId.toString().replace("-", ""));
+            silentTableRename(manager, config.getPrefix() + "shops", config.getPrefix() + "shops_" + actionId.toString().replace("-", ""));
+            silentTableRename(manager, config.getPrefix() + "messages", config.getPrefix() + "messages_" + actionId.toString().replace("-", ""));
+            silentTableRename(manager, config.getPrefix() + "logs", config.getPrefix() + "logs_" + actionId.toString().replace("-", ""));
+            silentTableRename(manager, config.getPrefix() + "external_cache", config.getPrefix() + "external_cache_" + actionId.toString().replace("-", ""));
             try (Connection connection = manager.getConnection()) {
                 if (!hasTable(config.getPrefix() + "shops_" + actionId.toString().replace("-", ""), connection)) {
                     throw new IllegalStateException("Failed to rename tables!");
@@ -488,17 +670,15 @@ public class HikariDatabaseConverter implements HikariConverterInterface {
         }
     }
 
-    private boolean silentTableCopy(@NotNull SQLManager manager, @NotNull String originTableName, @NotNull String newTableName) {
+    private boolean silentTableRename(@NotNull SQLManager manager, @NotNull String originTableName, @NotNull String newTableName) {
         try (Connection conn = manager.getConnection()) {
-            if (hasTable(originTableName, conn)) {
-                if (getDatabaseConfig().isMysql()) {
-                    manager.executeSQL("CREATE TABLE " + newTableName + " SELECT * FROM " + originTableName);
-                } else {
-                    manager.executeSQL("CREATE TABLE " + newTableName + " AS SELECT * FROM " + originTableName);
-                }
-            } else {
+            if (!hasTable(originTableName, conn)) {
                 return false;
             }
+            // The old tables will be dropped anyway, renaming only changes the metadata instead of copying every row
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("RENAME TABLE " + originTableName + " TO " + newTableName);
+            }
         } catch (SQLException e) {
             return false;
         }
@@ -528,6 +708,144 @@ public class HikariDatabaseConverter implements HikariConverterInterface {
         }
     }
 
+    /**
+     * The migration progress, the shops are pulled in (world, x, y, z) order, so the last pushed shop location is
+     * enough to continue the migration.
+     */
+    @Data
+    static class Checkpoint {
+        private final String sourceTable;
+        @Nullable
+        private String lastWorld;
+        private int lastX;
+        private int lastY;
+        private int lastZ;
+        private long pushed;
+        private long failed;
+        private boolean finished;
+
+        void advance(@NotNull ShopStorageUnit last, int pushed, int failed) {
+            this.lastWorld = last.getWorld();
+            this.lastX = last.getX();
+            this.lastY = last.getY();
+            this.lastZ = last.getZ();
+            this.pushed += pushed;
+            this.failed += failed;
+        }
+    }
+
+    /**
+     * Pulls the legacy shops after the checkpoint with a fetch-size cursor, and puts them into the bounded queue.
+     * The {@link #END_OF_STREAM} will be put after all shops pulled or the reader failed.
+     */
+    private class ShopReader implements Runnable {
+        private final Connection connection;
+        private final boolean mysql;
+        private final String shopsTable;
+        @Nullable
+        private final String lastWorld;
+        private final int lastX;
+        private final int lastY;
+        private final int lastZ;
+        private final BlockingQueue<ShopStorageUnit> queue;
+        private volatile boolean aborted = false;
+        @Getter
+        @Nullable
+        private volatile Throwable error;
+        @Getter
+        private volatile int fails = 0;
+
+        private ShopReader(@NotNull Connection connection, boolean mysql, @NotNull Checkpoint checkpoint, @NotNull BlockingQueue<ShopStorageUnit> queue) {
+            this.connection = connection;
+            this.mysql = mysql;
+            this.shopsTable = checkpoint.getSourceTable();
+            this.lastWorld = checkpoint.getLastWorld();
+            this.lastX = checkpoint.getLastX();
+            this.lastY = checkpoint.getLastY();
+            this.lastZ = checkpoint.getLastZ();
+            this.queue = queue;
+        }
+
+        private void abort() {
+            this.aborted = true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                pull();
+            } catch (Throwable throwable) {
+                error = throwable;
+            } finally {
+                if (!aborted) {
+                    offer(END_OF_STREAM);
+                }
+            }
+        }
+
+        private void pull() throws SQLException {
+            String sql = "SELECT * FROM " + shopsTable;
+            if (lastWorld != null) {
+                sql += " WHERE world > ? OR (world = ? AND (x > ? OR (x = ? AND (y > ? OR (y = ? AND z > ?)))))";
+            }
+            sql += " ORDER BY world, x, y, z";
+            try (PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                // MySQL Connector/J only streams the rows with Integer.MIN_VALUE, otherwise the whole result will be loaded
+                ps.setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE);
+                if (lastWorld != null) {
+                    ps.setString(1, lastWorld);
+                    ps.setString(2, lastWorld);
+                    ps.setInt(3, lastX);
+                    ps.setInt(4, lastX);
+                    ps.setInt(5, lastY);
+                    ps.setInt(6, lastY);
+                    ps.setInt(7, lastZ);
+                }
+                try (ResultSet resultSet = ps.executeQuery()) {
+                    while (resultSet.next()) {
+                        ShopStorageUnit.ShopStorageUnitBuilder builder = ShopStorageUnit.builder();
+                        try {
+                            builder.owner(resultSet.getString("owner"));
+                            builder.price(resultSet.getDouble("price"));
+                            builder.itemConfig(resultSet.getString("itemConfig"));
+                            builder.x(resultSet.getInt("x"));
+                            builder.y(resultSet.getInt("y"));
+                            builder.z(resultSet.getInt("z"));
+                            builder.world(resultSet.getString("world"));
+                            builder.unlimited(resultSet.getInt("unlimited"));
+                            builder.type(resultSet.getInt("type"));
+                            builder.currency(resultSet.getString("currency"));
+                            builder.extra(resultSet.getString("extra"));
+                            builder.disableDisplay(resultSet.getInt("disableDisplay"));
+                            builder.taxAccount(resultSet.getString("taxAccount"));
+                        } catch (SQLException exception) {
+                            instance.getLogger().log(Level.WARNING, "Error while pulling shop from database: " + exception.getMessage() + ", skipping...", exception);
+                            ++fails;
+                            continue;
+                        }
+                        if (!offer(builder.build())) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        private boolean offer(@NotNull ShopStorageUnit unit) {
+            try {
+                while (!queue.offer(unit, 1, TimeUnit.SECONDS)) {
+                    if (aborted) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
     @Builder
     @Getter
     @ToString
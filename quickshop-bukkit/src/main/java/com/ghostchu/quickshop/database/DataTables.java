@@ -106,6 +106,10 @@ public enum DataTables {
 
         table.addColumn("money", "DECIMAL(32,2) NOT NULL"); // TOTAL MONEY
         table.addColumn("tax", "DECIMAL(32,2) NOT NULL DEFAULT 0"); // TAX
+
+        table.setIndex(IndexType.INDEX, "idx_qs_purchase_time", "time");
+        table.setIndex(IndexType.INDEX, "idx_qs_purchase_buyer", "buyer", "time");
+        table.setIndex(IndexType.INDEX, "idx_qs_purchase_data", "data");
     }),
 
     LOG_TRANSACTION("log_transaction", (table) -> {
@@ -123,6 +127,8 @@ public enum DataTables {
 
         // TRANSACTION ERROR MESSAGES (NULL means successfully transacted)
         table.addColumn("error", "MEDIUMTEXT");
+
+        table.setIndex(IndexType.INDEX, "idx_qs_transaction_time", "time");
     }),
 
     TAGS("tags", (table) -> {
@@ -154,6 +160,7 @@ public enum DataTables {
         table.addColumn("after", "INT UNSIGNED NOT NULL"); // AFTER DATA
 
         // table.setIndex(IndexType.INDEX, "idx_qs_changed_shop", "shop");
+        table.setIndex(IndexType.INDEX, "idx_qs_changes_time", "time");
     }),
 
     LOG_OTHERS("log_others", (table) -> {
@@ -164,6 +171,8 @@ public enum DataTables {
         table.addColumn("type", "VARCHAR(255) NOT NULL");
         // LOG DATA (generally is JSON)
         table.addColumn("data", "MEDIUMTEXT NOT NULL");
+
+        table.setIndex(IndexType.INDEX, "idx_qs_others_time", "time");
     });
 
     private final @NotNull String name;
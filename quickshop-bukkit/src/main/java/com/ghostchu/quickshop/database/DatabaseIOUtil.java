@@ -1,27 +1,22 @@
 package com.ghostchu.quickshop.database;
 
-import cc.carm.lib.easysql.api.SQLQuery;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.common.util.CommonUtil;
-import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logger.Log;
 import lombok.Data;
-import me.xanium.gemseconomy.file.F;
 import org.jetbrains.annotations.NotNull;
 import org.relique.jdbc.csv.CsvDriver;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.PrintStream;
-import java.nio.file.Files;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
-import java.util.Arrays;
+import java.util.StringJoiner;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 @Data
 public class DatabaseIOUtil {
+    private static final int PROGRESS_REPORT_INTERVAL = 50000;
     private final SimpleDatabaseHelperV2 helper;
 
     public DatabaseIOUtil(SimpleDatabaseHelperV2 helper) {
@@ -66,62 +61,119 @@ public class DatabaseIOUtil {
     public void exportTables(@NotNull File zipFile) throws SQLException, IOException {
         // zipFile.getParentFile().mkdirs();
         zipFile.createNewFile();
-        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile))) {
+        int fetchSize = QuickShop.getInstance().getConfig().getInt("backup-policy.fetch-size", 1000);
+        if (QuickShop.getInstance().getDatabaseDriverType() == QuickShop.DatabaseDriverType.MYSQL) {
+            // MySQL Connector/J only streams the rows with Integer.MIN_VALUE, otherwise the whole result will be loaded
+            fetchSize = Integer.MIN_VALUE;
+        }
+        long startTime = System.currentTimeMillis();
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
+             Connection conn = helper.getManager().getConnection()) {
+            // Streaming the ResultSet directly into zip entry, no temporary csv file in cache folder required
+            PrintStream entryStream = new PrintStream(out, false, StandardCharsets.UTF_8);
             for (DataTables table : DataTables.values()) {
                 Log.debug("Exporting table " + table.name());
-                File tableCsv = new File(Util.getCacheFolder(), table.getName() + ".csv");
-                tableCsv.deleteOnExit();
-                try (SQLQuery query = table.createQuery().build().execute()) {
-                    ResultSet result = query.getResultSet();
-                    writeToCSV(result, tableCsv);
-                    Log.debug("Exported table " + table.name() + " to " + tableCsv.getAbsolutePath());
-                }
-                Log.debug("Adding table " + table.name() + " to zip file");
+                long tableStart = System.currentTimeMillis();
                 out.putNextEntry(new ZipEntry(table.getName() + ".csv"));
-                Files.copy(tableCsv.toPath(), out);
+                try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(fetchSize);
+                    try (ResultSet result = stmt.executeQuery("SELECT * FROM `" + table.getName() + "`")) {
+                        CsvDriver.writeToCsv(result, entryStream, true);
+                    }
+                }
+                entryStream.flush();
                 out.closeEntry();
-                Log.debug("Added table " + table.name() + " to zip file");
+                QuickShop.getInstance().logger().info("[DB Backup] Exported table {} in {}ms", table.getName(), System.currentTimeMillis() - tableStart);
             }
         }
+        QuickShop.getInstance().logger().info("[DB Backup] Exported all tables to {} ({} KB) in {}ms", zipFile.getName(), zipFile.length() / 1024, System.currentTimeMillis() - startTime);
     }
 
     public void importTables(@NotNull File zipFile) throws SQLException, ClassNotFoundException {
         // Import from CSV
         for (DataTables table : DataTables.values()) {
-            Log.debug("Purging table " + table.getName());
-            table.purgeTable();
             Log.debug("Importing table " + table.getName() + " from " + zipFile.getAbsolutePath());
             importFromCSV(zipFile, table);
             Log.debug("Imported table " + table.getName() + " from " + zipFile.getAbsolutePath());
         }
     }
 
-    public void importFromCSV(@NotNull File zipFile, @NotNull DataTables table) throws SQLException, ClassNotFoundException {
+    /**
+     * Import the table from csv zip file, the table will be purged and imported in one transaction with JDBC batch inserts.
+     *
+     * @param zipFile The zip file
+     * @param table   The table to import
+     * @return The rows imported
+     * @throws SQLException           Failed to import, the table changes have been rolled back
+     * @throws ClassNotFoundException CsvDriver not found
+     */
+    public long importFromCSV(@NotNull File zipFile, @NotNull DataTables table) throws SQLException, ClassNotFoundException {
         Log.debug("Loading CsvDriver...");
         Class.forName("org.relique.jdbc.csv.CsvDriver");
-        try (Connection conn = DriverManager.getConnection("jdbc:relique:csv:zip:" + zipFile);
-             Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_SENSITIVE,
+        int batchSize = Math.max(1, QuickShop.getInstance().getConfig().getInt("backup-policy.import-batch-size", 500));
+        long startTime = System.currentTimeMillis();
+        long rows = 0;
+        try (Connection csvConn = DriverManager.getConnection("jdbc:relique:csv:zip:" + zipFile);
+             Statement stmt = csvConn.createStatement(ResultSet.TYPE_FORWARD_ONLY,
                      ResultSet.CONCUR_READ_ONLY);
-             ResultSet results = stmt.executeQuery("SELECT * FROM " + table.getName())) {
+             ResultSet results = stmt.executeQuery("SELECT * FROM " + table.getName());
+             Connection conn = helper.getManager().getConnection()) {
             ResultSetMetaData metaData = results.getMetaData();
             String[] columns = new String[metaData.getColumnCount()];
             for (int i = 0; i < columns.length; i++) {
                 columns[i] = metaData.getColumnName(i + 1);
             }
             Log.debug("Parsed " + columns.length + " columns: " + CommonUtil.array2String(columns));
-            while (results.next()) {
-                Object[] values = new String[columns.length];
-                for (int i = 0; i < values.length; i++) {
-                    Log.debug("Copying column: " + columns[i]);
-                    values[i] = results.getObject(columns[i]);
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement purge = conn.createStatement();
+                 PreparedStatement insert = conn.prepareStatement(buildInsertSQL(table, columns))) {
+                Log.debug("Purging table " + table.getName());
+                purge.executeUpdate("DELETE FROM `" + table.getName() + "`");
+                int pending = 0;
+                while (results.next()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        insert.setObject(i + 1, results.getObject(i + 1));
+                    }
+                    insert.addBatch();
+                    rows++;
+                    if (++pending >= batchSize) {
+                        insert.executeBatch();
+                        pending = 0;
+                    }
+                    if (rows % PROGRESS_REPORT_INTERVAL == 0) {
+                        reportProgress(table, rows, startTime);
+                    }
                 }
-                Log.debug("Inserting row: " + CommonUtil.array2String(Arrays.stream(values).map(Object::toString).toArray(String[]::new)));
-                table.createInsert()
-                        .setColumnNames(columns)
-                        .setParams(values)
-                        .execute();
+                if (pending > 0) {
+                    insert.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
         }
+        reportProgress(table, rows, startTime);
+        return rows;
+    }
+
+    @NotNull
+    private String buildInsertSQL(@NotNull DataTables table, @NotNull String[] columns) {
+        StringJoiner columnJoiner = new StringJoiner(", ");
+        StringJoiner valueJoiner = new StringJoiner(", ");
+        for (String column : columns) {
+            columnJoiner.add("`" + column + "`");
+            valueJoiner.add("?");
+        }
+        return "INSERT INTO `" + table.getName() + "` (" + columnJoiner + ") VALUES (" + valueJoiner + ")";
+    }
+
+    private void reportProgress(@NotNull DataTables table, long rows, long startTime) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        QuickShop.getInstance().logger().info("[DB Import] {}: {} rows imported in {}ms ({} rows/s)", table.getName(), rows, elapsed, rows * 1000 / elapsed);
     }
 
     public void writeToCSV(@NotNull ResultSet set, @NotNull File csvFile) throws SQLException, IOException {
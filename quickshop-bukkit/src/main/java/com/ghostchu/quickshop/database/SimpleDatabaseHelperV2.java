@@ -20,6 +20,7 @@ import com.ghostchu.quickshop.database.bean.SimpleDataRecord;
 import com.ghostchu.quickshop.shop.ContainerShop;
 import com.ghostchu.quickshop.shop.SimpleShopModerator;
 import com.ghostchu.quickshop.util.PackageUtil;
+import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logger.Log;
 import com.ghostchu.quickshop.util.performance.PerfMonitor;
 import com.google.common.reflect.TypeToken;
@@ -40,8 +41,10 @@ import java.sql.*;
 import java.util.Date;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 
 /**
  * A Util to execute all SQLs.
@@ -56,7 +59,13 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
     @NotNull
     private final String prefix;
 
-    private final int LATEST_DATABASE_VERSION = 13;
+    private final int LATEST_DATABASE_VERSION = 16;
+
+    /**
+     * The log tables that have id and time columns and can be purged by time
+     */
+    public static final List<DataTables> LOG_TABLES = List.of(DataTables.LOG_TRANSACTION, DataTables.LOG_CHANGES, DataTables.LOG_PURCHASE, DataTables.LOG_OTHERS);
+    private static final int LOG_PURGE_CHUNK_SIZE = 5000;
 
     public SimpleDatabaseHelperV2(@NotNull QuickShop plugin, @NotNull SQLManager manager, @NotNull String prefix) throws Exception {
         this.plugin = plugin;
@@ -240,6 +249,30 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
         }
     }
 
+    private void upgradeLogTimeIndexes() {
+        fastBackup();
+        createIndex(DataTables.LOG_PURCHASE, "idx_qs_purchase_time", "time");
+        createIndex(DataTables.LOG_TRANSACTION, "idx_qs_transaction_time", "time");
+        createIndex(DataTables.LOG_CHANGES, "idx_qs_changes_time", "time");
+        createIndex(DataTables.LOG_OTHERS, "idx_qs_others_time", "time");
+    }
+
+    private void upgradePurchasePlayerIndexes() {
+        fastBackup();
+        createIndex(DataTables.LOG_PURCHASE, "idx_qs_purchase_buyer", "buyer", "time");
+        createIndex(DataTables.LOG_PURCHASE, "idx_qs_purchase_data", "data");
+    }
+
+    private void createIndex(@NotNull DataTables table, @NotNull String indexName, @NotNull String... columns) {
+        String columnList = Arrays.stream(columns).map(column -> "`" + column + "`").collect(Collectors.joining(", "));
+        try (Connection connection = manager.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE INDEX " + indexName + " ON `" + table.getName() + "` (" + columnList + ")");
+            Log.debug("Created index " + indexName + " on " + table.getName());
+        } catch (SQLException e) {
+            Log.debug("Failed to create index " + indexName + " on " + table.getName() + ", it may already exists. Err: " + e.getMessage());
+        }
+    }
+
     public @NotNull String getPrefix() {
         return prefix;
     }
@@ -384,6 +417,27 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
                 .executeFuture(lines -> lines);
     }
 
+    /**
+     * Insert multiple history records in one JDBC batch, the records will be serialized on the caller thread.
+     *
+     * @param records The records to insert
+     * @return The records inserted
+     * @throws SQLException Failed to insert
+     */
+    public int insertHistoryRecords(@NotNull List<Object> records) throws SQLException {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> params = new ArrayList<>(records.size());
+        for (Object rec : records) {
+            params.add(new Object[]{rec.getClass().getName(), JsonUtil.getGson().toJson(rec)});
+        }
+        return DataTables.LOG_OTHERS.createInsertBatch()
+                .setColumnNames("type", "data")
+                .setAllParams(params)
+                .execute().size();
+    }
+
     @Override
     public @NotNull CompletableFuture<@NotNull Integer> insertMetricRecord(@NotNull ShopMetricRecord metricRecord) {
         CompletableFuture<Integer> future = new CompletableFuture<>();
@@ -579,6 +633,65 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
                 .executeFuture(lines -> lines);
     }
 
+    /**
+     * Refresh an offline message row in place, the transaction inbox uses it to update the coalesced summaries.
+     *
+     * @param rowId   The existing row id
+     * @param message The message content
+     * @param time    The message time
+     * @return true if updated, false if the row was cleaned (the player already received it)
+     * @throws SQLException Failed to update the message
+     */
+    public boolean updateOfflineMessage(long rowId, @NotNull String message, long time) throws SQLException {
+        return DataTables.MESSAGES.createUpdate()
+                .addCondition("id", rowId)
+                .addColumnValue("time", new Date(time))
+                .addColumnValue("content", message)
+                .build()
+                .execute() > 0;
+    }
+
+    /**
+     * Insert an offline message row.
+     *
+     * @param player  The receiver
+     * @param message The message content
+     * @param time    The message time
+     * @return The row id of the message
+     * @throws SQLException Failed to save the message
+     */
+    public long insertOfflineMessage(@NotNull UUID player, @NotNull String message, long time) throws SQLException {
+        Long id = DataTables.MESSAGES.createInsert()
+                .setColumnNames("receiver", "time", "content")
+                .setParams(player.toString(), new Date(time), message)
+                .returnGeneratedKey(Long.class)
+                .execute();
+        return id == null ? -1L : id;
+    }
+
+    /**
+     * Select all offline messages of the player with their row ids, in insertion order.
+     *
+     * @param player The receiver
+     * @return The messages, key is the row id
+     * @throws SQLException Failed to query the messages
+     */
+    @NotNull
+    public Map<Long, String> selectPlayerMessageRows(@NotNull UUID player) throws SQLException {
+        Map<Long, String> messages = new LinkedHashMap<>();
+        try (SQLQuery query = DataTables.MESSAGES.createQuery()
+                .addCondition("receiver", player.toString())
+                .selectColumns("id", "content")
+                .orderBy("id", true)
+                .build().execute()) {
+            ResultSet set = query.getResultSet();
+            while (set.next()) {
+                messages.put(set.getLong("id"), set.getString("content"));
+            }
+        }
+        return messages;
+    }
+
     @Override
     public @NotNull SQLQuery selectAllMessages() throws SQLException {
         return DataTables.MESSAGES.createQuery().build().execute();
@@ -654,6 +767,103 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
         });
     }
 
+    /**
+     * Persist the ownership changes of the shops in batches (backup-policy.import-batch-size), one transaction per batch.
+     * The data records are referenced by the purchase logs, so they can't be updated in place, a new data record is
+     * inserted for each shop and the shops are pointed to the new records.
+     * <p>
+     * The data rows are built from the live shops, so they are built on the main thread, one batch per tick,
+     * instead of all of them at once.
+     *
+     * @param shops The shops, the owner must be already changed
+     * @return The shops updated
+     */
+    @Override
+    public @NotNull CompletableFuture<@NotNull Integer> updateShopOwners(@NotNull Collection<Shop> shops) {
+        List<Shop> created = new ArrayList<>(shops.size());
+        for (Shop shop : shops) {
+            if (shop.getShopId() < 1) {
+                Log.debug("Skipping the owner update for shop " + shop + " because it has not been created in database yet");
+                continue;
+            }
+            created.add(shop);
+        }
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        if (created.isEmpty()) {
+            future.complete(0);
+            return future;
+        }
+        int batchSize = Math.max(1, plugin.getConfig().getInt("backup-policy.import-batch-size", 500));
+        Util.mainThreadRun(() -> updateShopOwnersBatch(created, 0, batchSize, future));
+        return future;
+    }
+
+    private void updateShopOwnersBatch(@NotNull List<Shop> shops, int from, int batchSize, @NotNull CompletableFuture<Integer> future) {
+        int to = Math.min(shops.size(), from + batchSize);
+        // Snapshot on the main thread, the shops may be changed later
+        Map<Long, Map<String, Object>> records = new LinkedHashMap<>();
+        try {
+            for (Shop shop : shops.subList(from, to)) {
+                records.put(shop.getShopId(), ((ContainerShop) shop).createDataRecord().generateParams());
+            }
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            return;
+        }
+        CompletableFuture.runAsync(() -> writeShopOwners(records), QuickExecutor.getDatabaseExecutor()).whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+            } else if (to < shops.size()) {
+                Util.mainThreadRun(() -> updateShopOwnersBatch(shops, to, batchSize, future));
+            } else {
+                future.complete(shops.size());
+            }
+        });
+    }
+
+    private void writeShopOwners(@NotNull Map<Long, Map<String, Object>> records) {
+        List<String> columns = new ArrayList<>(records.values().iterator().next().keySet());
+        String insertSql = "INSERT INTO `" + DataTables.DATA.getName() + "` (" + columns.stream().map(c -> "`" + c + "`").collect(Collectors.joining(", "))
+                + ") VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        String updateSql = "UPDATE `" + DataTables.SHOPS.getName() + "` SET `data` = ? WHERE `id` = ?";
+        try (Connection connection = manager.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
+                 PreparedStatement update = connection.prepareStatement(updateSql)) {
+                for (Map<String, Object> record : records.values()) {
+                    int index = 1;
+                    for (String column : columns) {
+                        Object value = record.get(column);
+                        insert.setObject(index++, value instanceof Date date ? new Timestamp(date.getTime()) : value);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                // The generated keys are in the same order as the batch
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    for (Long shopId : records.keySet()) {
+                        if (!keys.next()) {
+                            throw new SQLException("No generated key returned for the data record of shop " + shopId);
+                        }
+                        update.setLong(1, keys.getLong(1));
+                        update.setLong(2, shopId);
+                        update.addBatch();
+                    }
+                }
+                update.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+
     @NotNull
     public CompletableFuture<@Nullable Long> queryDataId(@NotNull SimpleDataRecord simpleDataRecord) {
         // Check if dataRecord exists in database with same values
@@ -681,25 +891,60 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
     public CompletableFuture<Integer> purgeLogsRecords(@Nullable Date endDate) {
         return CompletableFuture.supplyAsync(() -> {
             int linesAffected = 0;
+            Date cutoff = endDate == null ? new Date() : endDate;
             try {
-                linesAffected += DataTables.LOG_TRANSACTION.createDelete()
-                        .addTimeCondition("time", null, endDate)
-                        .build().execute();
-                linesAffected += DataTables.LOG_CHANGES.createDelete()
-                        .addTimeCondition("time", null, endDate)
-                        .build().execute();
-                linesAffected += DataTables.LOG_PURCHASE.createDelete()
-                        .addTimeCondition("time", null, endDate)
-                        .build().execute();
-                linesAffected += DataTables.LOG_OTHERS.createDelete()
-                        .addTimeCondition("time", null, endDate)
-                        .build().execute();
+                for (DataTables table : LOG_TABLES) {
+                    int deleted;
+                    do {
+                        deleted = purgeLogsChunk(table, cutoff, LOG_PURGE_CHUNK_SIZE);
+                        linesAffected += deleted;
+                    } while (deleted > 0);
+                }
                 return linesAffected;
             } catch (SQLException e) {
                 plugin.logger().warn("Failed to purge logs records", e);
                 return -1;
             }
-        });
+        }, QuickExecutor.getDatabaseExecutor());
+    }
+
+    /**
+     * Deletes one chunk of log records that older than given date.
+     * The chunk located by the time index and deleted by primary key range (keyset pagination),
+     * so a single statement never scans or locks the whole table.
+     *
+     * @param table     The log table, must have id and time columns
+     * @param endDate   The records before this date will be deleted
+     * @param chunkSize The max records to delete in this chunk
+     * @return The lines deleted, 0 if nothing left to delete
+     * @throws SQLException Failed to delete
+     */
+    public int purgeLogsChunk(@NotNull DataTables table, @NotNull Date endDate, int chunkSize) throws SQLException {
+        long firstId = -1;
+        long lastId = -1;
+        try (Connection connection = manager.getConnection()) {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT `id` FROM `" + table.getName() + "` WHERE `time` < ? ORDER BY `id` ASC LIMIT " + chunkSize)) {
+                ps.setTimestamp(1, new Timestamp(endDate.getTime()));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong("id");
+                        if (firstId == -1) {
+                            firstId = id;
+                        }
+                        lastId = id;
+                    }
+                }
+            }
+            if (firstId == -1) {
+                return 0;
+            }
+            try (PreparedStatement ps = connection.prepareStatement("DELETE FROM `" + table.getName() + "` WHERE `id` >= ? AND `id` <= ? AND `time` < ?")) {
+                ps.setLong(1, firstId);
+                ps.setLong(2, lastId);
+                ps.setTimestamp(3, new Timestamp(endDate.getTime()));
+                return ps.executeUpdate();
+            }
+        }
     }
 
     /**
@@ -836,6 +1081,24 @@ public class SimpleDatabaseHelperV2 implements DatabaseHelper {
                 parent.upgradeTablesEncoding();
                 currentDatabaseVersion = 13;
             }
+            if (currentDatabaseVersion == 13) {
+                logger.info("Data upgrading: Creating time indexes for log tables, it may take a while on large databases...");
+                parent.upgradeLogTimeIndexes();
+                currentDatabaseVersion = 14;
+            }
+            if (currentDatabaseVersion == 14) {
+                logger.info("Data upgrading: Creating player indexes for purchase logs, it may take a while on large databases...");
+                parent.upgradePurchasePlayerIndexes();
+                currentDatabaseVersion = 15;
+            }
+            if (currentDatabaseVersion == 15) {
+                // The shop extra data is stored as the per-namespace JSON envelope since this version (ShopExtraStore),
+                // the legacy YAML rows are still readable and converted when the shop saved next time.
+                // No rows changed here, the version bump stops the older builds from loading (and dropping) the new format.
+                logger.info("Data upgrading: Shop extra data will be stored in the per-namespace format, downgrading requires restoring the backup.");
+                parent.fastBackup();
+                currentDatabaseVersion = 16;
+            }
             parent.setDatabaseVersion(currentDatabaseVersion).join();
         }
 
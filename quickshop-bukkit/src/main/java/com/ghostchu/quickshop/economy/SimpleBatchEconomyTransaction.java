@@ -0,0 +1,285 @@
+package com.ghostchu.quickshop.economy;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.economy.BatchEconomyTransaction;
+import com.ghostchu.quickshop.api.economy.EconomyCore;
+import com.ghostchu.quickshop.api.economy.operation.DepositEconomyOperation;
+import com.ghostchu.quickshop.api.economy.operation.WithdrawEconomyOperation;
+import com.ghostchu.quickshop.api.obj.QUser;
+import com.ghostchu.quickshop.api.operation.Operation;
+import com.ghostchu.quickshop.common.util.CalculateUtil;
+import com.ghostchu.quickshop.util.logger.Log;
+import lombok.Builder;
+import lombok.ToString;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Batch Transaction
+ * Groups the payments per account, and commit the account groups in tick-budgeted chunks.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class SimpleBatchEconomyTransaction implements BatchEconomyTransaction {
+    private static final long DEFAULT_TICK_BUDGET_MILLIS = 5;
+    private final QuickShop plugin = QuickShop.getInstance();
+    private final List<Entry> entries = new ArrayList<>();
+    // The account object don't have a stable hashCode (QUser), so we're using the normalized key
+    private final Map<String, AccountGroup> payers = new LinkedHashMap<>();
+    @NotNull
+    private final EconomyCore core;
+    @NotNull
+    @ToString.Include
+    private final World world;
+    @Nullable
+    @ToString.Include
+    private final String currency;
+    private final boolean allowLoan;
+    @ToString.Include
+    private final double taxModifier;
+    @Nullable
+    @ToString.Include
+    private final Object taxAccount;
+    private final long tickBudgetNanos;
+    private volatile boolean committed = false;
+    @Nullable
+    private String lastError = null;
+
+    /**
+     * Create a batch transaction
+     *
+     * @param core             economy core
+     * @param world            The transaction world
+     * @param currency         The currency name
+     * @param allowLoan        allow loan?
+     * @param taxModifier      tax modifier
+     * @param taxAccount       tax account
+     * @param tickBudgetMillis The max time can be used in one tick
+     */
+    @Builder
+    public SimpleBatchEconomyTransaction(@Nullable EconomyCore core, @NotNull World world, @Nullable String currency, @Nullable Boolean allowLoan, double taxModifier, @Nullable Object taxAccount, long tickBudgetMillis) {
+        this.core = core == null ? QuickShop.getInstance().getEconomy() : core;
+        this.world = world;
+        this.currency = currency;
+        this.allowLoan = Objects.requireNonNullElseGet(allowLoan, () -> plugin.getConfig().getBoolean("shop.allow-economy-loan", false));
+        this.taxModifier = taxModifier;
+        this.taxAccount = taxAccount;
+        this.tickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(tickBudgetMillis > 0 ? tickBudgetMillis : DEFAULT_TICK_BUDGET_MILLIS);
+    }
+
+    @NotNull
+    private static String accountKey(@NotNull Object account) {
+        if (account instanceof QUser qUser) {
+            return qUser.serialize();
+        }
+        if (account instanceof OfflinePlayer offlinePlayer) {
+            return offlinePlayer.getUniqueId().toString();
+        }
+        return String.valueOf(account);
+    }
+
+    @Override
+    public synchronized @NotNull Entry addPayment(@NotNull Object from, @Nullable Object to, double amount, @Nullable Object tag) {
+        if (committed) {
+            throw new IllegalStateException("Batch transaction already committed");
+        }
+        Entry entry = new Entry(from, to, amount, tag);
+        entries.add(entry);
+        AccountGroup group = payers.computeIfAbsent(accountKey(from), k -> new AccountGroup(from));
+        group.add(entry, amount);
+        return entry;
+    }
+
+    @Override
+    public synchronized @NotNull List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    @Override
+    public synchronized @NotNull Map<Object, Double> getWithdrawTotals() {
+        Map<Object, Double> map = new LinkedHashMap<>();
+        payers.values().forEach(group -> map.put(group.account, group.total));
+        return map;
+    }
+
+    @Override
+    public @NotNull CompletableFuture<List<Entry>> commit() {
+        synchronized (this) {
+            if (committed) {
+                throw new IllegalStateException("Batch transaction already committed");
+            }
+            committed = true;
+        }
+        Log.transaction("Batch transaction begin: " + entries.size() + " payments from " + payers.size() + " accounts, " + this + ", EconomyCore: " + core.getName());
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        new BatchRunner(future).runTaskTimer(plugin.getJavaPlugin(), 0, 1);
+        return future;
+    }
+
+    @Override
+    public @NotNull EconomyCore getCore() {
+        return core;
+    }
+
+    @Override
+    public @NotNull World getWorld() {
+        return world;
+    }
+
+    @Override
+    public @Nullable String getCurrency() {
+        return currency;
+    }
+
+    @Override
+    public @Nullable String getLastError() {
+        return lastError;
+    }
+
+    private boolean executeOperation(@NotNull Operation operation) {
+        try {
+            return operation.commit();
+        } catch (Exception exception) {
+            plugin.logger().warn("Failed to execute operation: {}; Operation: {}; Transaction: {}", core.getLastError(), operation, this);
+            return false;
+        }
+    }
+
+    /**
+     * The payments of one account
+     */
+    private static class AccountGroup {
+        private final Object account;
+        private final List<Entry> entries = new ArrayList<>();
+        private double total;
+
+        private AccountGroup(@NotNull Object account) {
+            this.account = account;
+        }
+
+        private void add(@NotNull Entry entry, double amount) {
+            entries.add(entry);
+            total = CalculateUtil.add(total, amount);
+        }
+    }
+
+    private class BatchRunner extends BukkitRunnable {
+        private final CompletableFuture<List<Entry>> future;
+        private final Iterator<AccountGroup> withdrawIterator;
+        private final Map<String, AccountGroup> payees = new LinkedHashMap<>();
+        private final List<Entry> failed = new ArrayList<>();
+        @Nullable
+        private Iterator<AccountGroup> depositIterator;
+        @Nullable
+        private AccountGroup taxGroup;
+
+        private BatchRunner(@NotNull CompletableFuture<List<Entry>> future) {
+            this.future = future;
+            this.withdrawIterator = new ArrayList<>(payers.values()).iterator();
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.nanoTime() + tickBudgetNanos;
+            try {
+                while (System.nanoTime() < deadline) {
+                    if (withdrawIterator.hasNext()) {
+                        withdraw(withdrawIterator.next());
+                        continue;
+                    }
+                    if (depositIterator == null) {
+                        List<AccountGroup> groups = new ArrayList<>(payees.values());
+                        if (taxGroup != null) {
+                            groups.add(taxGroup);
+                        }
+                        depositIterator = groups.iterator();
+                    }
+                    if (depositIterator.hasNext()) {
+                        deposit(depositIterator.next());
+                        continue;
+                    }
+                    finish();
+                    return;
+                }
+            } catch (Exception e) {
+                lastError = "Unexpected error while processing batch transaction: " + e.getMessage();
+                plugin.logger().warn("Failed to process batch transaction {}", SimpleBatchEconomyTransaction.this, e);
+                cancel();
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void finish() {
+            cancel();
+            if (failed.isEmpty()) {
+                Log.transaction("Batch transaction succeed: " + SimpleBatchEconomyTransaction.this);
+            } else {
+                Log.transaction(Level.WARNING, "Batch transaction finished with " + failed.size() + " failed payments: " + lastError + ", transaction: " + SimpleBatchEconomyTransaction.this);
+            }
+            future.complete(failed);
+        }
+
+        private void withdraw(@NotNull AccountGroup payer) {
+            if (payer.total > 0) {
+                if (!allowLoan && core.getBalance(payer.account, world, currency) < payer.total) {
+                    lastError = "Account " + payer.account + " hadn't enough money, required " + payer.total;
+                    failed.addAll(payer.entries);
+                    return;
+                }
+                if (!executeOperation(new WithdrawEconomyOperation(payer.account, payer.total, world, currency, core))) {
+                    lastError = "Failed to withdraw " + payer.total + " from account " + payer.account + ". LastError: " + core.getLastError();
+                    failed.addAll(payer.entries);
+                    return;
+                }
+            }
+            // Withdrawn, the money now belongs to the payees and tax account
+            for (Entry entry : payer.entries) {
+                double amountAfterTax = taxModifier > 0 ? CalculateUtil.multiply(CalculateUtil.subtract(1, taxModifier), entry.amount()) : entry.amount();
+                double tax = CalculateUtil.subtract(entry.amount(), amountAfterTax);
+                if (entry.to() != null) {
+                    payees.computeIfAbsent(accountKey(entry.to()), k -> new AccountGroup(entry.to())).add(entry, amountAfterTax);
+                }
+                if (tax > 0 && taxAccount != null) {
+                    if (taxGroup == null) {
+                        taxGroup = new AccountGroup(taxAccount);
+                    }
+                    taxGroup.add(entry, tax);
+                }
+            }
+        }
+
+        private void deposit(@NotNull AccountGroup payee) {
+            if (payee.total <= 0) {
+                return;
+            }
+            if (executeOperation(new DepositEconomyOperation(payee.account, payee.total, world, currency, core))) {
+                return;
+            }
+            lastError = "Failed to deposit " + payee.total + " to account " + payee.account + ". LastError: " + core.getLastError();
+            if (payee == taxGroup) {
+                //Tax never should failed.
+                Log.transaction(Level.WARNING, "Batch tax deposit failed: " + lastError + ", transaction: " + SimpleBatchEconomyTransaction.this);
+                return;
+            }
+            // Rollback this payee group, refund every payer once
+            Map<String, AccountGroup> refunds = new LinkedHashMap<>();
+            for (Entry entry : payee.entries) {
+                double amountAfterTax = taxModifier > 0 ? CalculateUtil.multiply(CalculateUtil.subtract(1, taxModifier), entry.amount()) : entry.amount();
+                refunds.computeIfAbsent(accountKey(entry.from()), k -> new AccountGroup(entry.from())).add(entry, amountAfterTax);
+            }
+            for (AccountGroup refund : refunds.values()) {
+                if (!executeOperation(new DepositEconomyOperation(refund.account, refund.total, world, currency, core))) {
+                    plugin.logger().warn("Failed to rollback batch transaction: {}; Refund {} to {}; Transaction: {}", core.getLastError(), refund.total, refund.account, SimpleBatchEconomyTransaction.this);
+                }
+                failed.addAll(refund.entries);
+            }
+        }
+    }
+}
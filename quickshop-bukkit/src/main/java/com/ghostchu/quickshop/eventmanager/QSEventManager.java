@@ -19,12 +19,19 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class QSEventManager implements QuickEventManager, Listener, Reloadable {
     private final QuickShop plugin;
-    private final List<ListenerContainer> ignoredListener = new ArrayList<>();
+    // HandlerList didn't override equals and hashCode, so it is keyed by identity
+    private final Map<HandlerList, DispatchTable> dispatchTables = new ConcurrentHashMap<>();
+    private volatile List<ListenerContainer> ignoredListener = Collections.emptyList();
 
     public QSEventManager(QuickShop plugin) {
         this.plugin = plugin;
@@ -33,7 +40,7 @@ public class QSEventManager implements QuickEventManager, Listener, Reloadable {
     }
 
     private synchronized void rescan() {
-        this.ignoredListener.clear();
+        List<ListenerContainer> ignoredListener = new ArrayList<>();
         plugin
                 .getConfig()
                 .getStringList("shop.protection-checking-listener-blacklist")
@@ -44,13 +51,15 @@ public class QSEventManager implements QuickEventManager, Listener, Reloadable {
                             }
                             try {
                                 Class<?> clazz = Class.forName(input);
-                                this.ignoredListener.add(new ListenerContainer(clazz, input));
+                                ignoredListener.add(new ListenerContainer(clazz, input));
                                 Log.debug("Successfully added blacklist: [BINDING] " + clazz.getName());
                             } catch (Exception ignored) {
-                                this.ignoredListener.add(new ListenerContainer(null, input));
+                                ignoredListener.add(new ListenerContainer(null, input));
                                 Log.debug("Successfully added blacklist: [DYNAMIC] " + input);
                             }
                         });
+        this.ignoredListener = ignoredListener;
+        this.dispatchTables.clear();
     }
 
     @Override
@@ -77,23 +86,7 @@ public class QSEventManager implements QuickEventManager, Listener, Reloadable {
     }
 
     private void fireEvent(Event event) {
-        HandlerList handlers = event.getHandlers();
-        RegisteredListener[] listeners = handlers.getRegisteredListeners();
-        for (RegisteredListener registration : listeners) {
-            if (!registration.getPlugin().isEnabled()) {
-                continue;
-            }
-            Class<?> regClass = registration.getListener().getClass();
-            boolean skip = false;
-            for (ListenerContainer container : this.ignoredListener) {
-                if (container.matches(regClass, registration.getPlugin())) {
-                    skip = true;
-                    break;
-                }
-            }
-            if (skip) {
-                continue;
-            }
+        for (RegisteredListener registration : getDispatchListeners(event.getHandlers())) {
             try {
                 registration.callEvent(event);
             } catch (AuthorNagException ex) {
@@ -124,6 +117,43 @@ public class QSEventManager implements QuickEventManager, Listener, Reloadable {
         }
     }
 
+    /**
+     * Gets the listeners that not in blacklist, the filtered array will be cached until the HandlerList re-baked
+     * (the baked array identity changed) or the blacklist rescanned.
+     *
+     * @param handlers The HandlerList
+     * @return The filtered listeners
+     */
+    @NotNull
+    private RegisteredListener[] getDispatchListeners(@NotNull HandlerList handlers) {
+        RegisteredListener[] listeners = handlers.getRegisteredListeners();
+        DispatchTable table = dispatchTables.get(handlers);
+        if (table != null && table.source() == listeners) {
+            return table.listeners();
+        }
+        List<ListenerContainer> ignoredListener = this.ignoredListener;
+        List<RegisteredListener> filtered = new ArrayList<>(listeners.length);
+        for (RegisteredListener registration : listeners) {
+            if (!registration.getPlugin().isEnabled()) {
+                continue;
+            }
+            Class<?> regClass = registration.getListener().getClass();
+            boolean skip = false;
+            for (ListenerContainer container : ignoredListener) {
+                if (container.matches(regClass, registration.getPlugin())) {
+                    skip = true;
+                    break;
+                }
+            }
+            if (!skip) {
+                filtered.add(registration);
+            }
+        }
+        table = new DispatchTable(listeners, filtered.toArray(new RegisteredListener[0]));
+        dispatchTables.put(handlers, table);
+        return table.listeners();
+    }
+
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void pluginDisable(PluginDisableEvent event) {
         this.rescan();
@@ -146,15 +176,37 @@ public class QSEventManager implements QuickEventManager, Listener, Reloadable {
     }
 }
 
+/**
+ * The cached dispatch listeners of a HandlerList
+ *
+ * @param source    The baked listeners array of HandlerList when the table built
+ * @param listeners The listeners that not in blacklist
+ */
+record DispatchTable(@NotNull RegisteredListener[] source, @NotNull RegisteredListener[] listeners) {
+}
+
 class ListenerContainer {
     @Nullable
     private final Class<?> clazz;
     @NotNull
     private final String clazzName;
+    @Nullable
+    private final Pattern pattern;
 
     public ListenerContainer(@Nullable Class<?> clazz, @NotNull String clazzName) {
         this.clazz = clazz;
         this.clazzName = clazzName;
+        this.pattern = clazz == null && !clazzName.startsWith("@") ? compile(clazzName) : null;
+    }
+
+    @Nullable
+    private static Pattern compile(@NotNull String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            Log.debug("Listener blacklist rule " + regex + " is not a valid regex, only prefix matching will be used.");
+            return null;
+        }
     }
 
     public boolean matches(@NotNull Class<?> matching, @NotNull Plugin plugin) {
@@ -171,6 +223,6 @@ class ListenerContainer {
         if (name.startsWith(clazzName)) {
             return true;
         }
-        return name.matches(clazzName);
+        return pattern != null && pattern.matcher(name).matches();
     }
 }
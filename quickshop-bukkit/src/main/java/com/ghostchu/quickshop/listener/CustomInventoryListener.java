@@ -6,6 +6,7 @@ import com.ghostchu.simplereloadlib.ReloadResult;
 import com.ghostchu.simplereloadlib.ReloadStatus;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.inventory.InventoryInteractEvent;
 
@@ -36,6 +37,13 @@ public class CustomInventoryListener extends AbstractQSListener {
         }
     }
 
+    @EventHandler
+    public void invClose(InventoryCloseEvent e) {
+        if (e.getInventory().getHolder() instanceof QuickShopPreviewGUIHolder holder) {
+            plugin.getInventoryPreviewPool().onClose(holder);
+        }
+    }
+
     /**
      * Callback for reloading
      *
@@ -39,7 +39,6 @@ import org.bukkit.block.BlockFace;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Sign;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
@@ -53,6 +52,7 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * ChestShop core
@@ -63,9 +63,13 @@ public class ContainerShop implements Shop, Reloadable {
     @SuppressWarnings({"AliDeprecation", "deprecation"})
     private static final NamespacedKey LEGACY_SHOP_NAMESPACED_KEY = new NamespacedKey("quickshop", "shopsign");
     private static final String LEGACY_SHOP_SIGN_RECOGNIZE_PATTERN = "§d§o ";
+    private static final LongAdder SIGN_CACHE_HITS = new LongAdder();
+    private static final LongAdder SIGN_CACHE_MISSES = new LongAdder();
+    // Increased on reload, the cached lines rendered with the old configuration and languages will be dropped
+    private static volatile long signCacheEpoch = 0;
     @NotNull
     private final Location location;
-    private final YamlConfiguration extra;
+    private final ShopExtraStore extra;
     @EqualsAndHashCode.Exclude
     private final QuickShop plugin;
     @EqualsAndHashCode.Exclude
@@ -91,11 +95,13 @@ public class ContainerShop implements Shop, Reloadable {
     @EqualsAndHashCode.Exclude
     private volatile boolean createBackup = false;
     @EqualsAndHashCode.Exclude
-    private InventoryPreview inventoryPreview = null;
-    @EqualsAndHashCode.Exclude
     private boolean dirty;
     @EqualsAndHashCode.Exclude
     private boolean updating = false;
+    @EqualsAndHashCode.Exclude
+    private long revision = 0;
+    @EqualsAndHashCode.Exclude
+    private final Map<String, SignLines> signLinesCache = new HashMap<>();
     @Nullable
     private String currency;
     private boolean disableDisplay;
@@ -164,7 +170,7 @@ public class ContainerShop implements Shop, Reloadable {
             @NotNull QUser owner,
             boolean unlimited,
             @NotNull ShopType type,
-            @NotNull YamlConfiguration extra,
+            @NotNull ShopExtraStore extra,
             @Nullable String currency,
             boolean disableDisplay,
             @Nullable QUser taxAccount,
@@ -222,10 +228,11 @@ public class ContainerShop implements Shop, Reloadable {
     }
 
     private void updateShopData() {
-        ConfigurationSection section = getExtra(plugin.getJavaPlugin());
-        if (section.getString("currency") != null) {
-            this.currency = section.getString("currency");
-            section.set("currency", null);
+        ConfigurationSection legacy = extra.peek(plugin.getJavaPlugin().getName());
+        if (legacy != null && legacy.getString("currency") != null) {
+            this.currency = legacy.getString("currency");
+            legacy.set("currency", null);
+            extra.set(plugin.getJavaPlugin().getName(), legacy);
             Log.debug("Shop " + this + " currency data upgrade successful.");
         }
         setDirty();
@@ -415,11 +422,7 @@ public class ContainerShop implements Shop, Reloadable {
      */
     @Override
     public @NotNull ConfigurationSection getExtra(@NotNull Plugin plugin) {
-        ConfigurationSection section = extra.getConfigurationSection(plugin.getName());
-        if (section == null) {
-            section = extra.createSection(plugin.getName());
-        }
-        return section;
+        return extra.get(plugin.getName());
     }
 
     /**
@@ -511,11 +514,27 @@ public class ContainerShop implements Shop, Reloadable {
         if (this.owner.equals(owner)) {
             return;
         }
+        QUser oldOwner = this.owner;
         this.owner = owner;
+        if (plugin.getShopManager() instanceof SimpleShopManager shopManager) {
+            shopManager.reindexOwner(this, oldOwner);
+        }
         setDirty();
         setSignText(plugin.getTextManager().findRelativeLanguages(owner, false));
     }
 
+    /**
+     * Change the owner for the bulk ownership transfer, the shop won't be marked dirty since the
+     * transfer persists all shops in one transaction, and the caller should schedule the sign update.
+     *
+     * @param owner The new owner
+     */
+    void applyOwnerTransfer(@NotNull QUser owner) {
+        Util.ensureThread(false);
+        this.owner = owner;
+        this.revision++;
+    }
+
     /**
      * Gets registered to this shop's permission audiences.
      *
@@ -705,28 +724,49 @@ public class ContainerShop implements Shop, Reloadable {
     @Override
     public List<Component> getSignText(@NotNull ProxiedLocale locale) {
         Util.ensureThread(false);
+        // Stamp with the revision before counting, the stock calculate event may change the shop
+        long renderRevision = revision;
+        long renderEpoch = signCacheEpoch;
+        // The container can be changed without touching the shop (hoppers, other plugins),
+        // so the stock/space is always counted and the cached lines must be rendered with the same value
+        int shopRemaining = switch (shopType) {
+            case BUYING -> getRemainingSpace();
+            case SELLING -> getRemainingStock();
+            default -> 0;
+        };
+        SignLines cached = signLinesCache.get(locale.getLocale());
+        if (cached != null && cached.revision() == renderRevision && cached.epoch() == renderEpoch && cached.remaining() == shopRemaining) {
+            SIGN_CACHE_HITS.increment();
+            return new ArrayList<>(cached.lines());
+        }
+        SIGN_CACHE_MISSES.increment();
+        List<Component> lines = renderSignText(locale, shopRemaining);
+        signLinesCache.put(locale.getLocale(), new SignLines(renderRevision, renderEpoch, shopRemaining, List.copyOf(lines)));
+        return lines;
+    }
+
+    @NotNull
+    private List<Component> renderSignText(@NotNull ProxiedLocale locale, int shopRemaining) {
         List<Component> lines = new ArrayList<>();
         //Line 1
-        String headerKey = inventoryAvailable() ? "signs.header-available" : "signs.header-unavailable";
+        // Same as inventoryAvailable(), without counting the inventory again
+        boolean available = (shopType != ShopType.BUYING && shopType != ShopType.SELLING) || shopRemaining != 0;
+        String headerKey = available ? "signs.header-available" : "signs.header-unavailable";
         lines.add(plugin.text().of(headerKey, this.ownerName(false, locale)).forLocale(locale.getLocale()));
         //Line 2
         String tradingStringKey;
         String noRemainingStringKey;
-        int shopRemaining;
 
         switch (shopType) {
             case BUYING -> {
-                shopRemaining = getRemainingSpace();
                 tradingStringKey = isStackingShop() ? "signs.stack-buying" : "signs.buying";
                 noRemainingStringKey = "signs.out-of-space";
             }
             case SELLING -> {
-                shopRemaining = getRemainingStock();
                 tradingStringKey = isStackingShop() ? "signs.stack-selling" : "signs.selling";
                 noRemainingStringKey = "signs.out-of-stock";
             }
             default -> {
-                shopRemaining = 0;
                 tradingStringKey = "MissingKey for shop type:" + shopType;
                 noRemainingStringKey = "MissingKey for shop type:" + shopType;
             }
@@ -1071,9 +1111,6 @@ public class ContainerShop implements Shop, Reloadable {
             Log.debug("Dupe unload request, canceled.");
             return;
         }
-        if (inventoryPreview != null) {
-            inventoryPreview.close();
-        }
         if (this.displayItem != null) {
             this.displayItem.remove();
         }
@@ -1084,10 +1121,7 @@ public class ContainerShop implements Shop, Reloadable {
 
     @Override
     public void openPreview(@NotNull Player player) {
-        if (inventoryPreview == null) {
-            inventoryPreview = new InventoryPreview(plugin, getItem().clone(), player.getLocale());
-        }
-        inventoryPreview.show(player);
+        plugin.getInventoryPreviewPool().show(player, getItem());
 
     }
 
@@ -1233,8 +1267,14 @@ public class ContainerShop implements Shop, Reloadable {
     }
 
     @Override
+    @Deprecated
     public @NotNull String saveExtraToYaml() {
-        return extra.saveToString();
+        return extra.toLegacyYaml();
+    }
+
+    @Override
+    public @NotNull String saveExtra() {
+        return extra.serialize();
     }
 
     @Override
@@ -1243,7 +1283,7 @@ public class ContainerShop implements Shop, Reloadable {
                 new BlockPos(getLocation()), this.owner, this.price,
                 Util.serialize(this.originalItem), isUnlimited() ? 1 : 0
                 , getShopType().toID(),
-                saveExtraToYaml(), this.currency,this.disableDisplay,
+                saveExtra(), this.currency,this.disableDisplay,
                 this.taxAccount, inventoryWrapperProvider,
                 saveToSymbolLink(), this.playerGroup);
     }
@@ -1312,6 +1352,48 @@ public class ContainerShop implements Shop, Reloadable {
     @Override
     public void setDirty() {
         this.dirty = true;
+        this.revision++;
+    }
+
+    @Override
+    public long getRevision() {
+        return this.revision;
+    }
+
+    /**
+     * Drop all cached sign lines of all shops, used when the configuration or languages reloaded.
+     */
+    public static void invalidateSignCaches() {
+        signCacheEpoch++;
+    }
+
+    /**
+     * Gets the hit count of the sign lines cache
+     *
+     * @return The hit count
+     */
+    public static long getSignCacheHits() {
+        return SIGN_CACHE_HITS.sum();
+    }
+
+    /**
+     * Gets the miss count of the sign lines cache
+     *
+     * @return The miss count
+     */
+    public static long getSignCacheMisses() {
+        return SIGN_CACHE_MISSES.sum();
+    }
+
+    /**
+     * Gets the hit rate of the sign lines cache
+     *
+     * @return The hit rate, 1.0 if never requested
+     */
+    public static double getSignCacheHitRate() {
+        long hits = getSignCacheHits();
+        long total = hits + getSignCacheMisses();
+        return total == 0 ? 1.0 : (double) hits / total;
     }
 
     /**
@@ -1377,6 +1459,8 @@ public class ContainerShop implements Shop, Reloadable {
         if (!Util.isLoaded(this.location)) {
             return;
         }
+        // Signs refreshing after the inventory changed, the stock and space may changed
+        this.revision++;
         this.setSignText(getSignText(plugin.getTextManager().findRelativeLanguages(MsgUtil.getDefaultGameLanguageCode())));
     }
 
@@ -1407,9 +1491,8 @@ public class ContainerShop implements Shop, Reloadable {
             new ShopSignUpdateEvent(this, sign).callEvent();
         }
         if (plugin.getSignHooker() != null) {
-            Log.debug("Start sign broadcast...");
-            Bukkit.getScheduler().runTaskLater(plugin.getJavaPlugin(), () -> plugin.getSignHooker().updatePerPlayerShopSignBroadcast(getLocation(), this), 2);
-            Log.debug("Sign broadcast completed.");
+            Log.debug("Queue sign broadcast...");
+            plugin.getSignHooker().updatePerPlayerShopSignBroadcast(getLocation(), this);
         }
     }
 
@@ -1424,6 +1507,8 @@ public class ContainerShop implements Shop, Reloadable {
         if (!Util.isLoaded(this.location)) {
             return;
         }
+        // Signs refreshing after the inventory changed, the stock and space may changed
+        this.revision++;
         this.setSignText(getSignText(locale));
     }
 
@@ -1482,7 +1567,7 @@ public class ContainerShop implements Shop, Reloadable {
                 isDisableDisplay(),
                 getTaxAccount(),
                 JsonUtil.getGson().toJson(getPermissionAudiences()),
-                saveExtraToYaml(),
+                saveExtra(),
                 getInventoryWrapperProvider(),
                 saveToSymbolLink(),
                 new Date(),
@@ -1543,6 +1628,17 @@ public class ContainerShop implements Shop, Reloadable {
         return Reloadable.super.reloadModule();
     }
 
+    /**
+     * The rendered sign lines of a locale
+     *
+     * @param revision  The shop revision when rendered
+     * @param epoch     The cache epoch when rendered
+     * @param remaining The stock or space when rendered
+     * @param lines     The lines
+     */
+    private record SignLines(long revision, long epoch, int remaining, @NotNull List<Component> lines) {
+    }
+
     private ShopSignStorage saveToShopSignStorage() {
         return new ShopSignStorage(getLocation().getWorld().getName(), getLocation().getBlockX(), getLocation().getBlockY(), getLocation().getBlockZ());
     }
@@ -6,7 +6,6 @@ import com.ghostchu.quickshop.shop.datatype.PreviewGuiPersistentDataType;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.holder.QuickShopPreviewGUIHolder;
 import com.ghostchu.quickshop.util.logger.Log;
-import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import org.apache.commons.lang3.StringUtils;
@@ -15,7 +14,6 @@ import org.bukkit.ChatColor;
 import org.bukkit.NamespacedKey;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
-import org.bukkit.event.Listener;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -27,27 +25,32 @@ import java.util.Collections;
 import java.util.UUID;
 
 /**
- * A class to create a GUI item preview quickly
+ * A read-only GUI item preview, shared by all viewers of the same (item, locale).
+ * Use {@link InventoryPreviewPool} to get a preview instead of creating it directly.
  */
-@EqualsAndHashCode
 @ToString
-public class InventoryPreview implements Listener {
+public class InventoryPreview {
 
     private static final NamespacedKey NAMESPACED_KEY = new NamespacedKey(QuickShop.getInstance().getJavaPlugin(), "preview-item");
+    private static final int SIZE = 9;
     private final ItemStack itemStack;
-    private final QuickShop plugin = QuickShop.getInstance();
-    private String previewStr;
+    private final QuickShop plugin;
+    private final String locale;
     @Nullable
     private Inventory inventory;
+    private long lastAccess = System.currentTimeMillis();
 
     /**
      * Create a preview item GUI.
      *
-     * @param itemStack The item you want create.
      * @param plugin    The plugin instance.
+     * @param itemStack The item you want create.
+     * @param locale    The locale of the preview
      */
     public InventoryPreview(@NotNull QuickShop plugin, @NotNull ItemStack itemStack, @NotNull String locale) {
         Util.ensureThread(false);
+        this.plugin = plugin;
+        this.locale = locale;
         this.itemStack = itemStack.clone();
         ItemMeta itemMeta;
         if (itemStack.hasItemMeta()) {
@@ -55,7 +58,7 @@ public class InventoryPreview implements Listener {
         } else {
             itemMeta = Bukkit.getItemFactory().getItemMeta(itemStack.getType());
         }
-        previewStr = LegacyComponentSerializer.legacySection().serialize(plugin.text().of("quickshop-gui-preview").forLocale(locale));
+        String previewStr = LegacyComponentSerializer.legacySection().serialize(plugin.text().of("quickshop-gui-preview").forLocale(locale));
         if (StringUtils.isEmpty(previewStr)) {
             previewStr = ChatColor.RED + "FIXME: Do not set quickshop-gui-preview to null or empty string.";
         }
@@ -85,11 +88,13 @@ public class InventoryPreview implements Listener {
 
     /**
      * Open the preview GUI for player.
+     *
+     * @param player The player
+     * @param holder The holder for the new inventory, only used at first show
      */
-    public void show(Player player) {
+    public void show(@NotNull Player player, @NotNull QuickShopPreviewGUIHolder holder) {
         Util.ensureThread(false);
-        if (itemStack == null || player == null || player.isSleeping()) // Null pointer exception
-        {
+        if (player.isSleeping()) {
             return;
         }
         ShopInventoryPreviewEvent shopInventoryPreview = new ShopInventoryPreviewEvent(player, itemStack);
@@ -98,13 +103,32 @@ public class InventoryPreview implements Listener {
             return;
         }
         if (inventory == null) {
-            final int size = 9;
-            inventory = Bukkit.createInventory(new QuickShopPreviewGUIHolder(), size, LegacyComponentSerializer.legacySection().serialize(plugin.text().of(player, "menu.preview").forLocale()));
-            for (int i = 0; i < size; i++) {
+            inventory = Bukkit.createInventory(holder, SIZE, LegacyComponentSerializer.legacySection().serialize(plugin.text().of("menu.preview").forLocale(locale)));
+            for (int i = 0; i < SIZE; i++) {
                 inventory.setItem(i, itemStack);
             }
         }
+        touch();
         player.openInventory(inventory);
     }
 
+    /**
+     * Mark this preview was accessed now
+     */
+    public void touch() {
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets if nobody is viewing this preview since the given time
+     *
+     * @param before The time
+     * @return idle
+     */
+    public boolean isIdleSince(long before) {
+        if (inventory != null && !inventory.getViewers().isEmpty()) {
+            return false;
+        }
+        return lastAccess < before;
+    }
 }
@@ -0,0 +1,96 @@
+package com.ghostchu.quickshop.shop;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.util.Util;
+import com.ghostchu.quickshop.util.holder.QuickShopPreviewGUIHolder;
+import com.ghostchu.quickshop.util.logger.Log;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pool of the read-only preview GUIs, the previews are shared by (item, locale),
+ * and evicted after the last viewer closed plus a grace period.
+ * <p>
+ * The pool is main thread only, the eviction runs as a timer task.
+ */
+public class InventoryPreviewPool extends BukkitRunnable {
+    private static final long GRACE_PERIOD = TimeUnit.SECONDS.toMillis(60);
+    private final QuickShop plugin;
+    private final Map<PreviewKey, InventoryPreview> previews = new HashMap<>();
+
+    public InventoryPreviewPool(@NotNull QuickShop plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Open the preview GUI of the item for player, reuse the pooled preview if possible
+     *
+     * @param player    The player
+     * @param itemStack The item
+     */
+    public void show(@NotNull Player player, @NotNull ItemStack itemStack) {
+        Util.ensureThread(false);
+        String locale = plugin.text().findRelativeLanguages(player.getLocale()).getLocale();
+        ItemStack item = itemStack.clone();
+        PreviewKey key = new PreviewKey(item, locale);
+        InventoryPreview preview = previews.computeIfAbsent(key, k -> new InventoryPreview(plugin, item, locale));
+        preview.show(player, new QuickShopPreviewGUIHolder(key));
+    }
+
+    /**
+     * Callback when a viewer closed the preview GUI
+     *
+     * @param holder The GUI holder
+     */
+    public void onClose(@NotNull QuickShopPreviewGUIHolder holder) {
+        if (!(holder.getPreviewKey() instanceof PreviewKey key)) {
+            return;
+        }
+        InventoryPreview preview = previews.get(key);
+        if (preview != null) {
+            preview.touch();
+        }
+    }
+
+    /**
+     * Close and remove all previews
+     */
+    public void closeAll() {
+        previews.values().forEach(InventoryPreview::close);
+        previews.clear();
+    }
+
+    @Override
+    public void run() {
+        long before = System.currentTimeMillis() - GRACE_PERIOD;
+        int evicted = 0;
+        Iterator<InventoryPreview> it = previews.values().iterator();
+        while (it.hasNext()) {
+            InventoryPreview preview = it.next();
+            if (preview.isIdleSince(before)) {
+                preview.close();
+                it.remove();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            Log.debug("Evicted " + evicted + " idle inventory previews, " + previews.size() + " remaining.");
+        }
+    }
+
+    /**
+     * The pool key, the item is compared by content.
+     *
+     * @param item   The item, amount included
+     * @param locale The locale
+     */
+    private record PreviewKey(@NotNull ItemStack item, @NotNull String locale) {
+    }
+}
@@ -0,0 +1,277 @@
+package com.ghostchu.quickshop.shop;
+
+import com.ghostchu.quickshop.util.logger.Log;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.apache.commons.lang3.StringUtils;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The shop extra data store, the data is keyed by namespace (the addon plugin name).
+ * <p>
+ * Stored as a JSON object, every namespace is serialized separately and cached:
+ * <pre>{"version":1,"namespaces":{"PluginName":"&lt;namespace yaml&gt;"}}</pre>
+ * The namespace data can contain any ConfigurationSerializable, so the namespace payload is still the YAML of the section,
+ * but only the namespaces written through {@link #set(String, ConfigurationSection)} since the last serialization will be
+ * re-serialized, and the cached string is reused unless any payload actually changed. Reading a namespace never
+ * invalidates the cache, the changes made on the returned section are saved by the explicit write only.
+ * <p>
+ * The legacy format (the whole extra as one YAML tree) is still readable, and will be written back as-is until any
+ * namespace changed. The legacy top-level keys which are not a section are kept in the {@link #LEGACY_NAMESPACE}.
+ * The stored format changed in database version 16, see {@link #toLegacyYaml()} for the old format.
+ */
+public class ShopExtraStore {
+    private static final int FORMAT_VERSION = 1;
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_NAMESPACES = "namespaces";
+    /**
+     * The namespace of the legacy top-level values that not belong to any namespace
+     */
+    public static final String LEGACY_NAMESPACE = "QuickShop-Legacy";
+    private final Map<String, Namespace> namespaces = new LinkedHashMap<>();
+    @Nullable
+    private String serialized;
+    private boolean touched;
+
+    /**
+     * Create an empty extra store
+     */
+    public ShopExtraStore() {
+        this.serialized = null;
+    }
+
+    private ShopExtraStore(@Nullable String serialized) {
+        this.serialized = serialized;
+    }
+
+    /**
+     * Read the extra store from the stored string, both JSON and legacy YAML format are supported.
+     *
+     * @param str The stored string
+     * @return The extra store
+     * @throws InvalidConfigurationException The string is not a valid extra data
+     */
+    @NotNull
+    public static ShopExtraStore deserialize(@Nullable String str) throws InvalidConfigurationException {
+        if (StringUtils.isBlank(str)) {
+            return new ShopExtraStore();
+        }
+        ShopExtraStore store = new ShopExtraStore(str);
+        JsonObject root = parseJson(str);
+        if (root != null && root.has(KEY_VERSION) && root.has(KEY_NAMESPACES)) {
+            for (Map.Entry<String, JsonElement> entry : root.getAsJsonObject(KEY_NAMESPACES).entrySet()) {
+                // Parse the namespace on first access
+                store.namespaces.put(entry.getKey(), new Namespace(null, entry.getValue().getAsString()));
+            }
+            return store;
+        }
+        // Legacy format, the whole extra is a YAML tree
+        YamlConfiguration legacy = new YamlConfiguration();
+        legacy.loadFromString(str);
+        YamlConfiguration orphans = new YamlConfiguration();
+        for (String key : legacy.getKeys(false)) {
+            ConfigurationSection section = legacy.getConfigurationSection(key);
+            if (section == null) {
+                Log.debug("Moving non-namespace legacy extra key into " + LEGACY_NAMESPACE + ": " + key);
+                orphans.set(key, legacy.get(key));
+                continue;
+            }
+            store.namespaces.put(key, new Namespace(section, null));
+        }
+        if (!orphans.getKeys(false).isEmpty()) {
+            Namespace ns = store.namespaces.get(LEGACY_NAMESPACE);
+            if (ns == null) {
+                store.namespaces.put(LEGACY_NAMESPACE, new Namespace(orphans, null));
+            } else {
+                orphans.getValues(false).forEach(ns.section()::set);
+            }
+        }
+        return store;
+    }
+
+    @Nullable
+    private static JsonObject parseJson(@NotNull String str) {
+        if (!str.startsWith("{")) {
+            return null;
+        }
+        try {
+            JsonElement element = JsonParser.parseString(str);
+            return element.isJsonObject() ? element.getAsJsonObject() : null;
+        } catch (JsonParseException | IllegalStateException e) {
+            // YAML flow mapping is not always a valid JSON
+            return null;
+        }
+    }
+
+    @NotNull
+    private static String dump(@NotNull ConfigurationSection section) {
+        if (section instanceof YamlConfiguration yaml) {
+            return yaml.saveToString();
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        for (String key : section.getKeys(false)) {
+            yaml.set(key, section.get(key));
+        }
+        return yaml.saveToString();
+    }
+
+    /**
+     * Gets the section of the namespace, the changes must be saved through {@link #set(String, ConfigurationSection)}.
+     *
+     * @param namespace The namespace
+     * @return The section, created if absent
+     */
+    @NotNull
+    public synchronized ConfigurationSection get(@NotNull String namespace) {
+        return namespaces.computeIfAbsent(namespace, k -> new Namespace(new YamlConfiguration(), "")).section();
+    }
+
+    /**
+     * Gets the section of the namespace without creating it, the changes must be saved through
+     * {@link #set(String, ConfigurationSection)}.
+     *
+     * @param namespace The namespace
+     * @return The section, null if absent
+     */
+    @Nullable
+    public synchronized ConfigurationSection peek(@NotNull String namespace) {
+        Namespace ns = namespaces.get(namespace);
+        return ns == null ? null : ns.section();
+    }
+
+    /**
+     * Sets the section of the namespace
+     *
+     * @param namespace The namespace
+     * @param data      The data, null to remove the namespace
+     */
+    public synchronized void set(@NotNull String namespace, @Nullable ConfigurationSection data) {
+        if (data == null) {
+            if (namespaces.remove(namespace) != null) {
+                this.serialized = null;
+            }
+            return;
+        }
+        Namespace ns = namespaces.computeIfAbsent(namespace, k -> new Namespace(data, ""));
+        ns.section = data;
+        ns.touched = true;
+        this.touched = true;
+    }
+
+    /**
+     * Serialize the store, only the changed namespaces will be serialized again.
+     *
+     * @return The serialized string
+     */
+    @NotNull
+    public synchronized String serialize() {
+        boolean changed = serialized == null;
+        if (touched) {
+            for (Namespace ns : namespaces.values()) {
+                changed |= ns.refresh();
+            }
+            touched = false;
+        }
+        if (!changed) {
+            return serialized;
+        }
+        JsonObject payloads = new JsonObject();
+        for (Map.Entry<String, Namespace> entry : namespaces.entrySet()) {
+            String payload = entry.getValue().payload();
+            if (payload != null) {
+                payloads.addProperty(entry.getKey(), payload);
+            }
+        }
+        JsonObject root = new JsonObject();
+        root.addProperty(KEY_VERSION, FORMAT_VERSION);
+        root.add(KEY_NAMESPACES, payloads);
+        this.serialized = root.toString();
+        return serialized;
+    }
+
+    /**
+     * Serialize the store into the legacy format (before database version 16), the whole extra as one YAML tree
+     * keyed by the namespace.
+     *
+     * @return The YAML string
+     */
+    @NotNull
+    public synchronized String toLegacyYaml() {
+        YamlConfiguration yaml = new YamlConfiguration();
+        for (Map.Entry<String, Namespace> entry : namespaces.entrySet()) {
+            ConfigurationSection section = entry.getValue().section();
+            if (LEGACY_NAMESPACE.equals(entry.getKey())) {
+                section.getValues(false).forEach(yaml::set);
+            } else if (!section.getKeys(false).isEmpty()) {
+                yaml.set(entry.getKey(), section);
+            }
+        }
+        return yaml.saveToString();
+    }
+
+    private static class Namespace {
+        @Nullable
+        private ConfigurationSection section;
+        // The last serialized payload, null if unknown (legacy section)
+        @Nullable
+        private String payload;
+        private boolean touched;
+
+        private Namespace(@Nullable ConfigurationSection section, @Nullable String payload) {
+            this.section = section;
+            this.payload = payload;
+        }
+
+        @NotNull
+        private ConfigurationSection section() {
+            if (section == null) {
+                YamlConfiguration yaml = new YamlConfiguration();
+                try {
+                    yaml.loadFromString(payload == null ? "" : payload);
+                } catch (InvalidConfigurationException e) {
+                    Log.debug("Failed to parse the shop extra namespace, resetting: " + e.getMessage());
+                }
+                section = yaml;
+            }
+            return section;
+        }
+
+        /**
+         * Dump the touched section again and compare with the last payload.
+         *
+         * @return true if the payload changed
+         */
+        private boolean refresh() {
+            if (!touched && payload != null) {
+                return false;
+            }
+            touched = false;
+            ConfigurationSection current = section();
+            String dumped = current.getKeys(false).isEmpty() ? "" : dump(current);
+            if (dumped.equals(payload)) {
+                return false;
+            }
+            payload = dumped;
+            return true;
+        }
+
+        /**
+         * Gets the namespace payload, null if the namespace is empty.
+         */
+        @Nullable
+        private String payload() {
+            refresh();
+            //noinspection ConstantConditions
+            return payload.isEmpty() ? null : payload;
+        }
+    }
+}
@@ -26,7 +26,6 @@ import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.configuration.InvalidConfigurationException;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -43,6 +42,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
  * A class allow plugin load shops fast and simply.
@@ -75,6 +75,16 @@ public class ShopLoader implements SubPasteItem {
      * @param worldName The world name, null if load all shops
      */
     public void loadShops(@Nullable String worldName) {
+        loadShops(worldName, null);
+    }
+
+    /**
+     * Load the shops in the specified world which matches the filter
+     *
+     * @param worldName The world name, null if load all shops
+     * @param filter    The filter, null if load all shops in the world
+     */
+    public void loadShops(@Nullable String worldName, @Nullable Predicate<InfoRecord> filter) {
         if (worldName != null) {
             if (Bukkit.getWorld(worldName) == null) {
                 plugin.logger().warn("World {} not exists, skip loading shops in this world.", worldName);
@@ -92,6 +102,9 @@ public class ShopLoader implements SubPasteItem {
         AtomicInteger chunkNotLoaded = new AtomicInteger(0);
         List<Shop> shopsLoadInNextTick = new CopyOnWriteArrayList<>();
         for (ShopRecord record : records) {
+            if (filter != null && !filter.test(record.getInfoRecord())) {
+                continue;
+            }
             loadShopFromShopRecord(worldName, record, deleteCorruptShops,
                     shopsLoadInNextTick, successCounter, chunkNotLoaded)
                     .exceptionally(e -> {
@@ -289,7 +302,7 @@ public class ShopLoader implements SubPasteItem {
         private boolean hologram;
         private QUser taxAccount;
         private Map<UUID, String> permissions;
-        private YamlConfiguration extra;
+        private ShopExtraStore extra;
         private String invWrapper;
         private String invSymbolLink;
         private long createTime;
@@ -338,15 +351,13 @@ public class ShopLoader implements SubPasteItem {
             }
         }
 
-        private @NotNull YamlConfiguration deserializeExtra(@NotNull String extraString) {
-            YamlConfiguration yamlConfiguration = new YamlConfiguration();
+        private @NotNull ShopExtraStore deserializeExtra(@NotNull String extraString) {
             try {
-                yamlConfiguration.loadFromString(extraString);
+                return ShopExtraStore.deserialize(extraString);
             } catch (InvalidConfigurationException e) {
-                yamlConfiguration = new YamlConfiguration();
                 needUpdate = true;
+                return new ShopExtraStore();
             }
-            return yamlConfiguration;
         }
 
 
@@ -13,6 +13,7 @@ import com.ghostchu.simplereloadlib.ReloadResult;
 import com.ghostchu.simplereloadlib.Reloadable;
 import lombok.Data;
 import org.apache.commons.lang3.StringUtils;
+import org.bukkit.Material;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -28,6 +29,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -35,6 +37,18 @@ import java.util.regex.PatternSyntaxException;
 public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteItem {
     private final QuickShop plugin;
     private final Map<String, RuleSet> rules = new LinkedHashMap<>();
+    /**
+     * Rules indexed by the plain materials they list, each bucket sorted by rule order
+     */
+    private final Map<Material, List<RuleSet>> materialIndex = new EnumMap<>(Material.class);
+    /**
+     * Rules that contain enchantment or item reference expressions, they must be evaluated against the item
+     */
+    private final List<RuleSet> expressionRules = new ArrayList<>();
+    /**
+     * Currency name to the set of rule ordinals whose currency patterns match it, resolved lazily
+     */
+    private final Map<String, BitSet> currencyIndex = new ConcurrentHashMap<>();
     private boolean wholeNumberOnly = false;
     private double undefinedMin = 0.0d;
     private double undefinedMax = Double.MAX_VALUE;
@@ -48,6 +62,9 @@ public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteIte
 
     public void loadConfiguration() {
         this.rules.clear();
+        this.materialIndex.clear();
+        this.expressionRules.clear();
+        this.currencyIndex.clear();
         File configFile = new File(plugin.getDataFolder(), "price-restriction.yml");
         if (!configFile.exists()) {
             try {
@@ -77,14 +94,24 @@ public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteIte
             return;
         }
         for (String ruleName : rules.getKeys(false)) {
-            RuleSet rule = readRule(ruleName, rules.getConfigurationSection(ruleName));
+            RuleSet rule = readRule(ruleName, this.rules.size(), rules.getConfigurationSection(ruleName));
             if (rule == null) {
                 plugin.logger().warn("Failed to read rule {}, syntax invalid! Skipping...", ruleName);
                 continue;
             }
             this.rules.put(ruleName, rule);
+            indexRule(rule);
+        }
+        plugin.logger().info("Loaded {} price restriction rules! ({} indexed materials, {} expression rules)", this.rules.size(), this.materialIndex.size(), this.expressionRules.size());
+    }
+
+    private void indexRule(@NotNull RuleSet rule) {
+        for (Material material : rule.getMaterials()) {
+            this.materialIndex.computeIfAbsent(material, k -> new ArrayList<>()).add(rule);
+        }
+        if (!rule.getExpressions().isEmpty()) {
+            this.expressionRules.add(rule);
         }
-        plugin.logger().info("Loaded {} price restriction rules!", this.rules.size());
     }
 
     private boolean performMigrate(@NotNull FileConfiguration configuration) {
@@ -110,18 +137,27 @@ public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteIte
 
     @Nullable
     @Contract("_,null -> null")
-    private RuleSet readRule(@NotNull String ruleName, @Nullable ConfigurationSection section) {
+    private RuleSet readRule(@NotNull String ruleName, int ordinal, @Nullable ConfigurationSection section) {
         if (section == null) {
             return null;
         }
         String bypassPermission = "quickshop.price.restriction.bypass." + ruleName;
         List<Function<ItemStack, Boolean>> items = new ArrayList<>();
+        Set<Material> materials = EnumSet.noneOf(Material.class);
+        List<Function<ItemStack, Boolean>> expressions = new ArrayList<>();
         double min = section.getDouble("min", 0d);
         double max = section.getDouble("max", Double.MAX_VALUE);
         for (String item : section.getStringList("items")) {
-            Optional<Function<ItemStack, Boolean>> func = new ItemExpression(plugin, item).getFunction();
+            ItemExpression expression = new ItemExpression(plugin, item);
+            Optional<Function<ItemStack, Boolean>> func = expression.getFunction();
             if (func.isPresent()) {
                 items.add(func.get());
+                Optional<Material> material = expression.getMaterial();
+                if (material.isPresent()) {
+                    materials.add(material.get());
+                } else {
+                    expressions.add(func.get());
+                }
             } else {
                 plugin.logger().warn("Failed to parse item expression: {}", item);
             }
@@ -135,7 +171,7 @@ public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteIte
                 plugin.logger().warn("Failed to read rule {}'s a Currency option, invalid pattern {}! Skipping...", ruleName, currencyStr1);
             }
         }
-        return new RuleSet(items, bypassPermission, currency, min, max);
+        return new RuleSet(ordinal, items, materials, expressions, bypassPermission, currency, min, max);
     }
     /**
      * Check the price restriction rules
@@ -163,14 +199,9 @@ public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteIte
                 return new SimplePriceLimiterCheckResult(PriceLimiterStatus.NOT_A_WHOLE_NUMBER, undefinedMin, undefinedMax);
             }
         }
-        for (RuleSet rule : rules.values()) {
-            if (!rule.isApply(sender, itemStack, currency)) {
-                continue;
-            }
-            if (rule.isAllowed(price)) {
-                continue;
-            }
-            return new SimplePriceLimiterCheckResult(PriceLimiterStatus.PRICE_RESTRICTED, rule.getMin(), rule.getMax());
+        RuleSet violated = findViolatedRule(sender, itemStack, currency, price);
+        if (violated != null) {
+            return new SimplePriceLimiterCheckResult(PriceLimiterStatus.PRICE_RESTRICTED, violated.getMin(), violated.getMax());
         }
         if (undefinedMin != -1 && price < undefinedMin) {
             return new SimplePriceLimiterCheckResult(PriceLimiterStatus.PRICE_RESTRICTED, undefinedMin, undefinedMax);
@@ -181,6 +212,66 @@ public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteIte
         return new SimplePriceLimiterCheckResult(PriceLimiterStatus.PASS, undefinedMin, undefinedMax);
     }
 
+    /**
+     * Find the first rule (in configuration order) that applies to given item and disallows the price.
+     * Only rules indexed under the item material and rules with enchantment/reference expressions are visited,
+     * the two candidate lists are merged by rule ordinal to keep the original rule priority.
+     */
+    @Nullable
+    private RuleSet findViolatedRule(@NotNull CommandSender sender, @NotNull ItemStack itemStack, @Nullable String currency, double price) {
+        List<RuleSet> byMaterial = materialIndex.getOrDefault(itemStack.getType(), Collections.emptyList());
+        List<RuleSet> byExpression = expressionRules;
+        BitSet currencyMatches = currency == null ? null : resolveCurrency(currency);
+        int i = 0;
+        int j = 0;
+        while (i < byMaterial.size() || j < byExpression.size()) {
+            RuleSet rule;
+            boolean itemMatched;
+            RuleSet a = i < byMaterial.size() ? byMaterial.get(i) : null;
+            RuleSet b = j < byExpression.size() ? byExpression.get(j) : null;
+            if (b == null || (a != null && a.getOrdinal() <= b.getOrdinal())) {
+                rule = a;
+                itemMatched = true;
+                i++;
+                if (b != null && b.getOrdinal() == a.getOrdinal()) {
+                    // Same rule presents in both lists, material already matched
+                    j++;
+                }
+            } else {
+                rule = b;
+                itemMatched = false;
+                j++;
+            }
+            if (rule.isAllowed(price)) {
+                continue;
+            }
+            if (currencyMatches != null && !currencyMatches.get(rule.getOrdinal())) {
+                continue;
+            }
+            if (!itemMatched && !rule.matchesExpressions(itemStack)) {
+                continue;
+            }
+            if (QuickShop.getPermissionManager().hasPermission(sender, rule.getBypassPermission())) {
+                continue;
+            }
+            return rule;
+        }
+        return null;
+    }
+
+    @NotNull
+    private BitSet resolveCurrency(@NotNull String currency) {
+        return currencyIndex.computeIfAbsent(currency, name -> {
+            BitSet bitSet = new BitSet(rules.size());
+            for (RuleSet rule : rules.values()) {
+                if (rule.getCurrency().stream().anyMatch(pattern -> pattern.matcher(name).matches())) {
+                    bitSet.set(rule.getOrdinal());
+                }
+            }
+            return bitSet;
+        });
+    }
+
     @Override
     public ReloadResult reloadModule() throws Exception {
         loadConfiguration();
@@ -196,6 +287,8 @@ public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteIte
         meta.insert("Undefined Maximum", undefinedMax);
         meta.insert("Only WholeNumber", wholeNumberOnly);
         meta.insert("Rules", rules.size());
+        meta.insert("Indexed Materials", materialIndex.size());
+        meta.insert("Expression Rules", expressionRules.size());
         joiner.add(meta.render());
         joiner.add("<h5>Rules</h5>");
         HTMLTable rules = new HTMLTable(5);
@@ -219,14 +312,20 @@ public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteIte
 
     @Data
     static class RuleSet {
+        private final int ordinal;
         private final List<Function<ItemStack, Boolean>> items;
+        private final Set<Material> materials;
+        private final List<Function<ItemStack, Boolean>> expressions;
         private final String bypassPermission;
         private final List<Pattern> currency;
         private final double min;
         private final double max;
 
-        public RuleSet(List<Function<ItemStack, Boolean>> items, String bypassPermission, List<Pattern> currency, double min, double max) {
+        public RuleSet(int ordinal, List<Function<ItemStack, Boolean>> items, Set<Material> materials, List<Function<ItemStack, Boolean>> expressions, String bypassPermission, List<Pattern> currency, double min, double max) {
+            this.ordinal = ordinal;
             this.items = items;
+            this.materials = materials;
+            this.expressions = expressions;
             this.bypassPermission = bypassPermission;
             this.currency = currency;
             this.min = min;
@@ -273,5 +372,20 @@ public class SimplePriceLimiter implements Reloadable, PriceLimiter, SubPasteIte
             }
             return false;
         }
+
+        /**
+         * Check if the given item matches any enchantment or reference expression in this rule.
+         *
+         * @param item the item
+         * @return true if any expression matches
+         */
+        public boolean matchesExpressions(@NotNull ItemStack item) {
+            for (Function<ItemStack, Boolean> fun : expressions) {
+                if (fun.apply(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 }
@@ -3,36 +3,52 @@ package com.ghostchu.quickshop.shop;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.shop.ShopItemBlackList;
 import com.ghostchu.quickshop.util.ItemExpression;
+import com.ghostchu.quickshop.util.ItemFingerprintIndex;
+import com.ghostchu.quickshop.util.paste.GuavaCacheRender;
 import com.ghostchu.quickshop.util.paste.item.SubPasteItem;
 import com.ghostchu.simplereloadlib.ReloadResult;
 import com.ghostchu.simplereloadlib.Reloadable;
+import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.Function;
 
 public class SimpleShopItemBlackList implements Reloadable, ShopItemBlackList, SubPasteItem {
     private final QuickShop plugin;
+    // Rules can't be indexed, e.g. enchantment rules
     private final List<Function<ItemStack, Boolean>> BLACKLIST = new ArrayList<>();
+    private final Set<Material> materialRules = EnumSet.noneOf(Material.class);
+    private final ItemFingerprintIndex<String> referenceRules;
+    private int rules = 0;
 
     public SimpleShopItemBlackList(@NotNull QuickShop plugin) {
         this.plugin = plugin;
+        this.referenceRules = new ItemFingerprintIndex<>(plugin);
         init();
         plugin.getReloadManager().register(this);
     }
 
     private void init() {
         BLACKLIST.clear();
+        materialRules.clear();
+        referenceRules.clear();
+        rules = 0;
         List<String> configBlacklist = plugin.getConfig().getStringList("blacklist");
         for (String s : configBlacklist) {
-            Optional<Function<ItemStack, Boolean>> func = new ItemExpression(plugin, s).getFunction();
-            if (func.isPresent()) {
-                BLACKLIST.add(func.get());
-            } else {
+            ItemExpression expression = new ItemExpression(plugin, s);
+            Optional<Function<ItemStack, Boolean>> func = expression.getFunction();
+            if (func.isEmpty()) {
                 plugin.logger().warn("Failed to parse item expression: {}", s);
+                continue;
+            }
+            rules++;
+            switch (expression.getType()) {
+                case MATERIAL -> expression.getMaterial().ifPresent(materialRules::add);
+                // Reference to a missing item never matches
+                case REFERENCE -> expression.getReference().ifPresent(stack -> referenceRules.add(stack, s));
+                default -> BLACKLIST.add(func.get());
             }
         }
     }
@@ -45,6 +61,12 @@ public class SimpleShopItemBlackList implements Reloadable, ShopItemBlackList, S
      */
     @Override
     public boolean isBlacklisted(@NotNull ItemStack itemStack) {
+        if (materialRules.contains(itemStack.getType())) {
+            return true;
+        }
+        if (referenceRules.find(itemStack) != null) {
+            return true;
+        }
         for (Function<ItemStack, Boolean> f : BLACKLIST) {
             if (f.apply(itemStack)) {
                 return true;
@@ -62,7 +84,10 @@ public class SimpleShopItemBlackList implements Reloadable, ShopItemBlackList, S
 
     @Override
     public @NotNull String genBody() {
-        return "<p>Blacklist Rules: " + BLACKLIST.size() + "</p>";
+        return "<p>Blacklist Rules: " + rules + "</p>" +
+                "<p>Material Rules: " + materialRules.size() + ", Item Reference Rules: " + referenceRules.size() + ", Other Rules: " + BLACKLIST.size() + "</p>" +
+                "<h5>Item Reference Lookup Cache</h5>" +
+                GuavaCacheRender.renderTable(referenceRules.getStats());
     }
 
     @Override
@@ -21,6 +21,7 @@ import com.ghostchu.quickshop.util.PackageUtil;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.economyformatter.EconomyFormatter;
 import com.ghostchu.quickshop.util.holder.Result;
+import com.ghostchu.quickshop.util.inbox.TransactionSummary;
 import com.ghostchu.quickshop.util.logger.Log;
 import com.ghostchu.quickshop.util.performance.PerfMonitor;
 import com.ghostchu.simplereloadlib.ReloadResult;
@@ -44,7 +45,6 @@ import org.bukkit.block.*;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.Waterlogged;
 import org.bukkit.block.data.type.WallSign;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
@@ -71,6 +71,8 @@ public class SimpleShopManager implements ShopManager, Reloadable {
     private final Map<String, Map<ShopChunk, Map<Location, Shop>>> shops = Maps.newConcurrentMap();
     private final Set<Shop> loadedShops = Sets.newConcurrentHashSet(); // Handle it by collection to reduce
     // the performance impact on busy server
+    // Owner key -> shops, see ownerKey(QUser)
+    private final Map<String, Map<Location, Shop>> ownerIndex = Maps.newConcurrentMap();
     private final InteractiveManager interactiveManager;
     private final QuickShop plugin;
     private final Cache<UUID, Shop> shopRuntimeUUIDCaching =
@@ -245,10 +247,10 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         sendSellSuccess(buyerQUser, shop, amount, total, transaction.getTax());
         new ShopSuccessPurchaseEvent(shop, buyerQUser, buyerInventory, amount, total, transaction.getTax()).callEvent();
         shop.setSignText(plugin.text().findRelativeLanguages(buyer)); // Update the signs count
-        notifySold(buyerQUser, shop, amount, space);
+        notifySold(buyerQUser, shop, amount, space, total, transaction.getTax());
     }
 
-    private void notifySold(@NotNull QUser buyerQUser, @NotNull Shop shop, int amount, int space) {
+    private void notifySold(@NotNull QUser buyerQUser, @NotNull Shop shop, int amount, int space, double total, double tax) {
         Util.asyncThreadRun(() -> {
             String langCode = plugin.text().findRelativeLanguages(buyerQUser, true).getLocale();
             List<Component> sendList = new ArrayList<>();
@@ -257,6 +259,7 @@ public class SimpleShopManager implements ShopManager, Reloadable {
                             Util.getItemStackName(shop.getItem())).forLocale(langCode)
                     .hoverEvent(plugin.getPlatform().getItemStackHoverEvent(shop.getItem()));
             sendList.add(notify);
+            TransactionSummary summary = TransactionSummary.of(shop, ShopType.BUYING, buyerQUser.getDisplay(), amount, total, tax);
             if (space == amount) {
                 Component spaceWarn;
                 if (shop.getShopName() == null) {
@@ -273,12 +276,14 @@ public class SimpleShopManager implements ShopManager, Reloadable {
                 sendList.add(spaceWarn);
             }
             for (Component component : sendList) {
+                // Only the transaction message can be coalesced, the warnings are sent as is
+                TransactionSummary componentSummary = component == notify ? summary : null;
                 if (sendStockMessageToStaff) {
                     for (UUID recv : shop.playersCanAuthorize(BuiltInShopPermission.RECEIVE_ALERT)) {
-                        MsgUtil.send(shop, recv, component);
+                        MsgUtil.send(shop, recv, component, componentSummary);
                     }
                 } else {
-                    MsgUtil.send(shop, shop.getOwner(), component);
+                    MsgUtil.send(shop, shop.getOwner(), component, componentSummary);
                 }
             }
         });
@@ -342,7 +347,7 @@ public class SimpleShopManager implements ShopManager, Reloadable {
                     createQUser,
                     false,
                     ShopType.SELLING,
-                    new YamlConfiguration(),
+                    new ShopExtraStore(),
                     null,
                     false,
                     null,
@@ -493,6 +498,41 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         // Put it in the world
         // Put the shop in its location in the chunk list.
         inChunk.put(shop.getLocation(), shop);
+        ownerIndex.computeIfAbsent(ownerKey(shop.getOwner()), k -> Maps.newConcurrentMap()).put(shop.getLocation(), shop);
+    }
+
+    /**
+     * Gets the owner index key, the users equal to each other always have the same key.
+     *
+     * @param user The owner
+     * @return The key
+     */
+    @NotNull
+    private static String ownerKey(@NotNull QUser user) {
+        if (user.isRealPlayer() && user.getUniqueId() != null) {
+            return user.getUniqueId().toString();
+        }
+        return "[" + StringUtils.lowerCase(user.getUsername()) + "]";
+    }
+
+    /**
+     * Move the shop to the new owner in the owner index, must be called after the shop owner changed.
+     *
+     * @param shop     The shop
+     * @param oldOwner The owner before changed
+     */
+    void reindexOwner(@NotNull Shop shop, @NotNull QUser oldOwner) {
+        String oldKey = ownerKey(oldOwner);
+        String newKey = ownerKey(shop.getOwner());
+        if (oldKey.equals(newKey)) {
+            return;
+        }
+        Map<Location, Shop> oldShops = ownerIndex.get(oldKey);
+        if (oldShops == null || oldShops.remove(shop.getLocation()) == null) {
+            return; // Not registered
+        }
+        ownerIndex.computeIfPresent(oldKey, (k, v) -> v.isEmpty() ? null : v);
+        ownerIndex.computeIfAbsent(newKey, k -> Maps.newConcurrentMap()).put(shop.getLocation(), shop);
     }
 
     @Override
@@ -527,6 +567,7 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         }
         this.interactiveManager.reset();
         this.shops.clear();
+        this.ownerIndex.clear();
     }
 
     /**
@@ -776,7 +817,11 @@ public class SimpleShopManager implements ShopManager, Reloadable {
     @Override
     public @NotNull List<Shop> getAllShops(@NotNull QUser playerUUID) {
         final List<Shop> playerShops = new ArrayList<>(10);
-        for (final Shop shop : getAllShops()) {
+        Map<Location, Shop> indexed = ownerIndex.get(ownerKey(playerUUID));
+        if (indexed == null) {
+            return playerShops;
+        }
+        for (final Shop shop : indexed.values()) {
             if (shop.getOwner().equals(playerUUID)) {
                 playerShops.add(shop);
             }
@@ -787,7 +832,11 @@ public class SimpleShopManager implements ShopManager, Reloadable {
     @Override
     public @NotNull List<Shop> getAllShops(@NotNull UUID playerUUID) {
         final List<Shop> playerShops = new ArrayList<>(10);
-        for (final Shop shop : getAllShops()) {
+        Map<Location, Shop> indexed = ownerIndex.get(playerUUID.toString());
+        if (indexed == null) {
+            return playerShops;
+        }
+        for (final Shop shop : indexed.values()) {
             UUID shopUuid = shop.getOwner().getUniqueIdIfRealPlayer().orElse(null);
             if (playerUUID.equals(shopUuid)) {
                 playerShops.add(shop);
@@ -796,6 +845,48 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         return playerShops;
     }
 
+    @Override
+    public @NotNull CompletableFuture<List<Shop>> transferOwnership(@NotNull QUser from, @NotNull QUser to) {
+        Util.ensureThread(false);
+        List<Shop> candidates = getAllShops(from);
+        if (candidates.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        ShopOwnershipBulkTransferEvent event = new ShopOwnershipBulkTransferEvent(candidates, from, to);
+        if (event.callCancellableEvent()) {
+            Log.debug("Bulk ownership transfer was cancelled by 3rd-party plugin");
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        List<Shop> transferring = new ArrayList<>(candidates.size());
+        for (Shop shop : event.getTransferringShops()) {
+            // The per-shop event still fires, the protection compatibility modules veto the transfer with it
+            if (new ShopOwnershipTransferEvent(shop, shop.getOwner(), to).callCancellableEvent()) {
+                Log.debug("Ownership transfer of shop " + shop + " was cancelled by 3rd-party plugin");
+                continue;
+            }
+            transferring.add(shop);
+        }
+        for (Shop shop : transferring) {
+            QUser oldOwner = shop.getOwner();
+            if (shop instanceof ContainerShop containerShop) {
+                // Persisted below in batches, don't let every shop save itself
+                containerShop.applyOwnerTransfer(to);
+                reindexOwner(shop, oldOwner);
+                plugin.getSignUpdateWatcher().scheduleSignUpdate(shop);
+            } else {
+                shop.setOwner(to);
+            }
+        }
+        Log.debug("Transferring " + transferring.size() + " shops from " + from + " to " + to + ", " + (candidates.size() - transferring.size()) + " vetoed");
+        return plugin.getDatabaseHelper().updateShopOwners(transferring).handle((updated, throwable) -> {
+            if (throwable != null) {
+                plugin.logger().warn("Failed to persist the bulk ownership transfer, saving the shops one by one", throwable);
+                Util.mainThreadRun(() -> transferring.forEach(Shop::setDirty));
+            }
+            return transferring;
+        });
+    }
+
     @Override
     public @NotNull PriceLimiter getPriceLimiter() {
         return this.priceLimiter;
@@ -1213,6 +1304,12 @@ public class SimpleShopManager implements ShopManager, Reloadable {
             return;
         }
         inChunk.remove(loc);
+        String ownerKey = ownerKey(shop.getOwner());
+        Map<Location, Shop> ownerShops = ownerIndex.get(ownerKey);
+        if (ownerShops != null) {
+            ownerShops.remove(loc);
+            ownerIndex.computeIfPresent(ownerKey, (k, v) -> v.isEmpty() ? null : v);
+        }
     }
 
     /**
@@ -1422,6 +1519,7 @@ public class SimpleShopManager implements ShopManager, Reloadable {
                         .hoverEvent(plugin.getPlatform().getItemStackHoverEvent(shop.getItem()));
             }
             sendList.add(notify);
+            TransactionSummary summary = TransactionSummary.of(shop, ShopType.SELLING, seller.getDisplay(), (long) amount * shop.getItem().getAmount(), total - tax, tax);
             // Transfers the item from A to B
             if (stock == amount) {
                 Component stockWarn;
@@ -1440,12 +1538,14 @@ public class SimpleShopManager implements ShopManager, Reloadable {
                 sendList.add(stockWarn);
             }
             for (Component component : sendList) {
+                // Only the transaction message can be coalesced, the warnings are sent as is
+                TransactionSummary componentSummary = component == notify ? summary : null;
                 if (sendStockMessageToStaff) {
                     for (UUID recv : shop.playersCanAuthorize(BuiltInShopPermission.RECEIVE_ALERT)) {
-                        MsgUtil.send(shop, recv, component);
+                        MsgUtil.send(shop, recv, component, componentSummary);
                     }
                 } else {
-                    MsgUtil.send(shop, shop.getOwner(), component);
+                    MsgUtil.send(shop, shop.getOwner(), component, componentSummary);
                 }
             }
         });
@@ -1698,7 +1798,7 @@ public class SimpleShopManager implements ShopManager, Reloadable {
         }
         // typed 'all', check if player has enough money than price * amount
         double price = shop.getPrice();
-        double balance = eco.getBalance(p.getUniqueId(), shop.getLocation().getWorld(),
+        double balance = eco.getBalance(QUserImpl.createFullFilled(p), shop.getLocation().getWorld(),
                 shop.getCurrency());
         amount = Math.min(amount, (int) Math.floor(balance / price));
         if (amount < 1) { // typed 'all' but the auto set amount is 0
@@ -7,18 +7,32 @@ import com.ghostchu.quickshop.api.shop.ShopControlPanel;
 import com.ghostchu.quickshop.api.shop.ShopControlPanelPriority;
 import com.ghostchu.quickshop.api.shop.permission.BuiltInShopPermission;
 import com.ghostchu.quickshop.util.MsgUtil;
+import com.ghostchu.simplereloadlib.ReloadResult;
+import com.ghostchu.simplereloadlib.Reloadable;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.event.HoverEvent;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SimpleShopControlPanel implements ShopControlPanel, Reloadable {
+    // Rendered templates per (locale, key), the dynamic values are filled when generating
+    private final Map<String, Optional<Component>> templates = new ConcurrentHashMap<>();
+
+    public SimpleShopControlPanel() {
+        QuickShop.getInstance().getReloadManager().register(this);
+    }
 
-public class SimpleShopControlPanel implements ShopControlPanel {
     /**
      * Generate components for the shop control panel.
      *
@@ -33,22 +47,22 @@ public class SimpleShopControlPanel implements ShopControlPanel {
         ProxiedLocale locale = plugin.text().findRelativeLanguages(sender.getLocale());
         // Owner
         if (!plugin.perm().hasPermission(sender, "quickshop.setowner")) {
-            components.add(plugin.text().of(sender, "menu.owner", shop.ownerName(locale)).forLocale());
+            components.add(template(sender, locale, "menu.owner", shop.ownerName(locale)));
         } else {
             Component text;
             if (plugin.getConfig().getBoolean("shop.show-owner-uuid-in-controlpanel-if-op") && shop.isUnlimited()) {
-                text = plugin.text().of(sender, "controlpanel.setowner-uuid", shop.ownerName(locale), shop.getOwner().toString()).forLocale();
+                text = template(sender, locale, "controlpanel.setowner-uuid", shop.ownerName(locale), shop.getOwner().toString());
             } else {
-                text = plugin.text().of(sender, "controlpanel.setowner", shop.ownerName(locale)).forLocale();
+                text = template(sender, locale, "controlpanel.setowner", shop.ownerName(locale));
             }
             components.add(text
-                    .hoverEvent(HoverEvent.showText(plugin.text().of(sender, "controlpanel.setowner-hover").forLocale()))
+                    .hoverEvent(HoverEvent.showText(template(sender, locale, "controlpanel.setowner-hover")))
                     .clickEvent(ClickEvent.clickEvent(ClickEvent.Action.SUGGEST_COMMAND, "/quickshop setowner ")));
         }
         // Unlimited
         if (plugin.perm().hasPermission(sender, "quickshop.unlimited")) {
-            Component text = plugin.text().of(sender, "controlpanel.unlimited", MsgUtil.bool2String(shop.isUnlimited())).forLocale();
-            Component hoverText = plugin.text().of(sender, "controlpanel.unlimited-hover").forLocale();
+            Component text = template(sender, locale, "controlpanel.unlimited", bool2String(shop.isUnlimited()));
+            Component hoverText = template(sender, locale, "controlpanel.unlimited-hover");
             String clickCommand = MsgUtil.fillArgs("/quickshop silentunlimited {0}", shop.getRuntimeRandomUniqueId().toString());
             components.add(text
                     .hoverEvent(HoverEvent.showText(hoverText))
@@ -60,15 +74,15 @@ public class SimpleShopControlPanel implements ShopControlPanel {
                 && (shop.playerAuthorize(sender.getUniqueId(), BuiltInShopPermission.SET_SHOPTYPE) ||
                 plugin.perm().hasPermission(sender, "quickshop.create.admin"))) {
             if (shop.isSelling()) {
-                Component text = plugin.text().of(sender, "controlpanel.mode-selling").forLocale();
-                Component hoverText = plugin.text().of(sender, "controlpanel.mode-selling-hover").forLocale();
+                Component text = template(sender, locale, "controlpanel.mode-selling");
+                Component hoverText = template(sender, locale, "controlpanel.mode-selling-hover");
                 String clickCommand = MsgUtil.fillArgs("/quickshop silentbuy {0}", shop.getRuntimeRandomUniqueId().toString());
                 components.add(text
                         .hoverEvent(HoverEvent.showText(hoverText))
                         .clickEvent(ClickEvent.clickEvent(ClickEvent.Action.RUN_COMMAND, clickCommand)));
             } else if (shop.isBuying()) {
-                Component text = plugin.text().of(sender, "controlpanel.mode-buying").forLocale();
-                Component hoverText = plugin.text().of(sender, "controlpanel.mode-buying-hover").forLocale();
+                Component text = template(sender, locale, "controlpanel.mode-buying");
+                Component hoverText = template(sender, locale, "controlpanel.mode-buying-hover");
                 String clickCommand = MsgUtil.fillArgs("/quickshop silentsell {0}", shop.getRuntimeRandomUniqueId().toString());
                 components.add(text
                         .hoverEvent(HoverEvent.showText(hoverText))
@@ -79,13 +93,13 @@ public class SimpleShopControlPanel implements ShopControlPanel {
         if (plugin.perm().hasPermission(sender, "quickshop.other.price")
                 || (plugin.perm().hasPermission(sender, "quickshop.create.changeprice") && shop.playerAuthorize(sender.getUniqueId(), BuiltInShopPermission.SET_PRICE))) {
             Component text = MsgUtil.fillArgs(
-                    plugin.text().of(sender, "controlpanel.price").forLocale(),
+                    template(sender, locale, "controlpanel.price"),
                     LegacyComponentSerializer.legacySection().deserialize(
                             (plugin.getConfig().getBoolean("use-decimal-format"))
                                     ? MsgUtil.decimalFormat(shop.getPrice())
                                     : Double.toString(shop.getPrice()))
             );
-            Component hoverText = plugin.text().of(sender, "controlpanel.price-hover").forLocale();
+            Component hoverText = template(sender, locale, "controlpanel.price-hover");
             String clickCommand = "/quickshop price ";
 
             components.add(text
@@ -97,8 +111,8 @@ public class SimpleShopControlPanel implements ShopControlPanel {
             if (plugin.perm().hasPermission(sender, "quickshop.other.amount") ||
                     shop.playerAuthorize(sender.getUniqueId(), BuiltInShopPermission.SET_STACK_AMOUNT) &&
                             plugin.perm().hasPermission(sender, "quickshop.create.changeamount")) {
-                Component text = plugin.text().of(sender, "controlpanel.stack", shop.getItem().getAmount()).forLocale();
-                Component hoverText = plugin.text().of(sender, "controlpanel.stack-hover").forLocale();
+                Component text = template(sender, locale, "controlpanel.stack", shop.getItem().getAmount());
+                Component hoverText = template(sender, locale, "controlpanel.stack-hover");
                 String clickCommand = "/quickshop size ";
                 components.add(text
                         .hoverEvent(HoverEvent.showText(hoverText))
@@ -108,8 +122,8 @@ public class SimpleShopControlPanel implements ShopControlPanel {
         if (!shop.isUnlimited()) {
             // Refill
             if (plugin.perm().hasPermission(sender, "quickshop.refill")) {
-                Component text = plugin.text().of(sender, "controlpanel.refill", shop.getPrice()).forLocale();
-                Component hoverText = plugin.text().of(sender, "controlpanel.refill-hover").forLocale();
+                Component text = template(sender, locale, "controlpanel.refill", shop.getPrice());
+                Component hoverText = template(sender, locale, "controlpanel.refill-hover");
                 String clickCommand = "/quickshop refill ";
                 components.add(text
                         .hoverEvent(HoverEvent.showText(hoverText))
@@ -117,8 +131,8 @@ public class SimpleShopControlPanel implements ShopControlPanel {
             }
             // Empty
             if (plugin.perm().hasPermission(sender, "quickshop.empty")) {
-                Component text = plugin.text().of(sender, "controlpanel.empty", shop.getPrice()).forLocale();
-                Component hoverText = plugin.text().of(sender, "controlpanel.empty-hover").forLocale();
+                Component text = template(sender, locale, "controlpanel.empty", shop.getPrice());
+                Component hoverText = template(sender, locale, "controlpanel.empty-hover");
                 String clickCommand = MsgUtil.fillArgs("/quickshop silentempty {0}", shop.getRuntimeRandomUniqueId().toString());
                 components.add(text
                         .hoverEvent(HoverEvent.showText(hoverText))
@@ -130,8 +144,8 @@ public class SimpleShopControlPanel implements ShopControlPanel {
         if ((plugin.perm().hasPermission(sender, "quickshop.other.toggledisplay")
                 || shop.playerAuthorize(sender.getUniqueId(), BuiltInShopPermission.TOGGLE_DISPLAY))
                 && plugin.isDisplayEnabled()) {
-            Component text = plugin.text().of(sender, "controlpanel.toggledisplay", MsgUtil.bool2String(!shop.isDisableDisplay())).forLocale();
-            Component hoverText = plugin.text().of(sender, "controlpanel.toggledisplay-hover").forLocale();
+            Component text = template(sender, locale, "controlpanel.toggledisplay", bool2String(!shop.isDisableDisplay()));
+            Component hoverText = template(sender, locale, "controlpanel.toggledisplay-hover");
             String clickCommand = MsgUtil.fillArgs("/quickshop silenttoggledisplay {0}", shop.getRuntimeRandomUniqueId().toString());
             components.add(text
                     .hoverEvent(HoverEvent.showText(hoverText))
@@ -142,8 +156,8 @@ public class SimpleShopControlPanel implements ShopControlPanel {
 
         // Remove
         if (plugin.perm().hasPermission(sender, "quickshop.other.destroy") || shop.playerAuthorize(sender.getUniqueId(), BuiltInShopPermission.DELETE)) {
-            Component text = plugin.text().of(sender, "controlpanel.remove", shop.getPrice()).forLocale();
-            Component hoverText = plugin.text().of(sender, "controlpanel.remove-hover").forLocale();
+            Component text = template(sender, locale, "controlpanel.remove", shop.getPrice());
+            Component hoverText = template(sender, locale, "controlpanel.remove-hover");
             String clickCommand = MsgUtil.fillArgs("/quickshop silentremove {0}", shop.getRuntimeRandomUniqueId().toString());
             components.add(text
                     .hoverEvent(HoverEvent.showText(hoverText))
@@ -152,6 +166,40 @@ public class SimpleShopControlPanel implements ShopControlPanel {
         return components;
     }
 
+    @NotNull
+    private Component template(@Nullable Player sender, @NotNull ProxiedLocale locale, @NotNull String key, @Nullable Object... args) {
+        QuickShop plugin = QuickShop.getInstance();
+        Optional<Component> template = templates.computeIfAbsent(locale.getLocale() + ":" + key, k -> {
+            Component rendered = plugin.text().of(key).forLocale(locale.getLocale());
+            // PlaceholderAPI placeholders are resolved per player, can't be cached
+            if (PlainTextComponentSerializer.plainText().serialize(rendered).indexOf('%') != -1) {
+                return Optional.empty();
+            }
+            return Optional.of(rendered);
+        });
+        if (template.isEmpty()) {
+            if (sender == null) {
+                return plugin.text().of(key, args).forLocale(locale.getLocale());
+            }
+            return plugin.text().of(sender, key, args).forLocale();
+        }
+        if (args == null || args.length == 0) {
+            return template.get();
+        }
+        return MsgUtil.fillArgs(template.get(), plugin.text().convert(args));
+    }
+
+    @NotNull
+    private Component bool2String(boolean bool) {
+        return template(null, MsgUtil.getDefaultGameLanguageLocale(), bool ? "booleanformat.success" : "booleanformat.failed");
+    }
+
+    @Override
+    public ReloadResult reloadModule() throws Exception {
+        templates.clear();
+        return Reloadable.super.reloadModule();
+    }
+
     /**
      * The shop control panel's priority.
      * HIGH = Earlier shown
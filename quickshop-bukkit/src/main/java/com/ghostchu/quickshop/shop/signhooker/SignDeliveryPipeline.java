@@ -0,0 +1,214 @@
+package com.ghostchu.quickshop.shop.signhooker;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.localization.text.ProxiedLocale;
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.util.Util;
+import com.ghostchu.quickshop.util.logger.Log;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.block.Sign;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the per-player shop signs.
+ * The (player, chunk) pairs are queued once and drained on the main thread under a time budget per tick,
+ * the sign lines are shared per (shop revision, locale) by the shop itself.
+ * <p>
+ * The chunks sent to the players are tracked here, so broadcasting a shop sign only visits the players
+ * that have the shop chunk loaded on client.
+ */
+public class SignDeliveryPipeline extends BukkitRunnable implements Listener {
+    private static final long TICK_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    // Give the client time to receive the chunk (or the real sign update) before we override the signs
+    private static final long DELIVERY_DELAY_TICKS = 2;
+    private final QuickShop plugin;
+    private final Queue<QueuedDelivery> queue = new ConcurrentLinkedQueue<>();
+    private final Set<Delivery> pending = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Set<ChunkKey>> trackedChunks = new ConcurrentHashMap<>();
+    private final Map<ChunkKey, Set<UUID>> chunkViewers = new ConcurrentHashMap<>();
+    private volatile long tick = 0;
+
+    public SignDeliveryPipeline(@NotNull QuickShop plugin) {
+        this.plugin = plugin;
+    }
+
+    public void register() {
+        Bukkit.getPluginManager().registerEvents(this, plugin.getJavaPlugin());
+        runTaskTimer(plugin.getJavaPlugin(), 1, 1);
+    }
+
+    public void unregister() {
+        HandlerList.unregisterAll(this);
+        cancel();
+        queue.clear();
+        pending.clear();
+        trackedChunks.clear();
+        chunkViewers.clear();
+    }
+
+    /**
+     * Mark the chunk was sent to the player, and queue the shop signs in this chunk for delivery.
+     * Can be called from any thread.
+     *
+     * @param player The player
+     * @param world  The world name
+     * @param x      The chunk x
+     * @param z      The chunk z
+     */
+    public void chunkSent(@NotNull Player player, @NotNull String world, int x, int z) {
+        ChunkKey chunk = new ChunkKey(world, x, z);
+        trackedChunks.computeIfAbsent(player.getUniqueId(), k -> ConcurrentHashMap.newKeySet()).add(chunk);
+        chunkViewers.computeIfAbsent(chunk, k -> ConcurrentHashMap.newKeySet()).add(player.getUniqueId());
+        if (plugin.getShopManager().getShops(world, x, z) != null) {
+            enqueue(player.getUniqueId(), chunk);
+        }
+    }
+
+    /**
+     * Mark the chunk was unloaded on the player client.
+     * Can be called from any thread.
+     *
+     * @param player The player
+     * @param world  The world name
+     * @param x      The chunk x
+     * @param z      The chunk z
+     */
+    public void chunkUnloaded(@NotNull Player player, @NotNull String world, int x, int z) {
+        ChunkKey chunk = new ChunkKey(world, x, z);
+        Set<ChunkKey> chunks = trackedChunks.get(player.getUniqueId());
+        if (chunks != null) {
+            chunks.remove(chunk);
+        }
+        removeViewer(chunk, player.getUniqueId());
+    }
+
+    /**
+     * Queue the shop signs delivery for all players that can see the shop chunk.
+     *
+     * @param shop The shop
+     */
+    public void broadcast(@NotNull Shop shop) {
+        Location location = shop.getLocation();
+        if (location.getWorld() == null) {
+            return;
+        }
+        ChunkKey chunk = new ChunkKey(location.getWorld().getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        Set<UUID> viewers = chunkViewers.get(chunk);
+        if (viewers == null) {
+            return;
+        }
+        for (UUID viewer : viewers) {
+            enqueue(viewer, chunk);
+        }
+    }
+
+    private void enqueue(@NotNull UUID player, @NotNull ChunkKey chunk) {
+        Delivery delivery = new Delivery(player, chunk);
+        if (pending.add(delivery)) {
+            queue.add(new QueuedDelivery(delivery, tick + DELIVERY_DELAY_TICKS));
+        }
+    }
+
+    @Override
+    public void run() {
+        long now = ++tick;
+        if (queue.isEmpty()) {
+            return;
+        }
+        boolean glowing = plugin.getConfig().getBoolean("shop.sign-glowing");
+        long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+        int delivered = 0;
+        while (System.nanoTime() < deadline) {
+            QueuedDelivery head = queue.peek();
+            // Queued in order, the rest deliveries are not due too
+            if (head == null || head.dueTick() > now) {
+                break;
+            }
+            queue.poll();
+            pending.remove(head.delivery());
+            deliver(head.delivery(), glowing);
+            delivered++;
+        }
+        if (delivered > 0) {
+            Log.debug("Delivered " + delivered + " per-player shop sign chunks, " + queue.size() + " chunks remaining.");
+        }
+    }
+
+    private void deliver(@NotNull Delivery delivery, boolean glowing) {
+        Player player = Bukkit.getPlayer(delivery.player());
+        if (player == null || !player.isOnline()) {
+            return;
+        }
+        ChunkKey chunk = delivery.chunk();
+        if (!player.getWorld().getName().equals(chunk.world())) {
+            return;
+        }
+        Map<Location, Shop> shops = plugin.getShopManager().getShops(chunk.world(), chunk.x(), chunk.z());
+        if (shops == null) {
+            return;
+        }
+        ProxiedLocale locale = plugin.getTextManager().findRelativeLanguages(player);
+        for (Map.Entry<Location, Shop> entry : shops.entrySet()) {
+            Shop shop = entry.getValue();
+            if (!shop.isLoaded() || !Util.isLoaded(entry.getKey())) {
+                continue;
+            }
+            List<Component> lines = shop.getSignText(locale);
+            for (Sign sign : shop.getSigns()) {
+                plugin.getPlatform().sendSignTextChange(player, sign, glowing, lines);
+            }
+        }
+    }
+
+    private void untrackAll(@NotNull UUID player) {
+        Set<ChunkKey> chunks = trackedChunks.remove(player);
+        if (chunks == null) {
+            return;
+        }
+        for (ChunkKey chunk : chunks) {
+            removeViewer(chunk, player);
+        }
+    }
+
+    private void removeViewer(@NotNull ChunkKey chunk, @NotNull UUID player) {
+        chunkViewers.computeIfPresent(chunk, (k, viewers) -> {
+            viewers.remove(player);
+            return viewers.isEmpty() ? null : viewers;
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        untrackAll(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        // Client drops all chunks when changing the world
+        untrackAll(event.getPlayer().getUniqueId());
+    }
+
+    record ChunkKey(@NotNull String world, int x, int z) {
+    }
+
+    private record Delivery(@NotNull UUID player, @NotNull ChunkKey chunk) {
+    }
+
+    private record QueuedDelivery(@NotNull Delivery delivery, long dueTick) {
+    }
+}
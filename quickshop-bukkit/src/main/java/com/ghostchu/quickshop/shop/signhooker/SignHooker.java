@@ -5,32 +5,33 @@ import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.ProtocolManager;
 import com.comphenix.protocol.events.ListenerPriority;
 import com.comphenix.protocol.events.PacketAdapter;
+import com.comphenix.protocol.events.PacketContainer;
 import com.comphenix.protocol.events.PacketEvent;
 import com.comphenix.protocol.reflect.StructureModifier;
+import com.comphenix.protocol.wrappers.ChunkCoordIntPair;
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.util.Util;
 import com.ghostchu.quickshop.util.logger.Log;
 import net.kyori.adventure.text.Component;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.block.Sign;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 public class SignHooker {
     private final QuickShop PLUGIN;
     private final ProtocolManager PROTOCOL_MANAGER = ProtocolLibrary.getProtocolManager();
+    private final SignDeliveryPipeline deliveryPipeline;
     private PacketAdapter chunkAdapter;
+    private PacketAdapter chunkUnloadAdapter;
 
     public SignHooker(QuickShop plugin) {
         PLUGIN = plugin;
+        this.deliveryPipeline = new SignDeliveryPipeline(plugin);
+        this.deliveryPipeline.register();
         registerListener();
     }
 
@@ -58,15 +59,37 @@ public class SignHooker {
                 //chunk z
                 int z = integerStructureModifier.read(1);
 
-                Map<Location, Shop> shops = PLUGIN.getShopManager().getShops(player.getWorld().getName(), x, z);
-                if (shops == null) {
+                deliveryPipeline.chunkSent(player, player.getWorld().getName(), x, z);
+            }
+        };
+        chunkUnloadAdapter = new PacketAdapter(PLUGIN.getJavaPlugin(), ListenerPriority.MONITOR, PacketType.Play.Server.UNLOAD_CHUNK) {
+            @Override
+            public void onPacketSending(@NotNull PacketEvent event) {
+                Player player = event.getPlayer();
+                if (player == null || event.isCancelled()) {
+                    return;
+                }
+                if (player.getClass().getName().contains("TemporaryPlayer")) {
                     return;
                 }
-                Bukkit.getScheduler().runTaskLater(PLUGIN.getJavaPlugin(), () -> shops.forEach((loc, shop) -> updatePerPlayerShopSign(player, loc, shop)), 2);
+                PacketContainer packet = event.getPacket();
+                Integer x = packet.getIntegers().readSafely(0);
+                Integer z = packet.getIntegers().readSafely(1);
+                if (x == null || z == null) {
+                    // 1.20.2+ sends the ChunkCoordIntPair
+                    ChunkCoordIntPair pair = packet.getChunkCoordIntPairs().readSafely(0);
+                    if (pair == null) {
+                        return;
+                    }
+                    x = pair.getChunkX();
+                    z = pair.getChunkZ();
+                }
+                deliveryPipeline.chunkUnloaded(player, player.getWorld().getName(), x, z);
             }
         };
 
         PROTOCOL_MANAGER.addPacketListener(chunkAdapter);
+        PROTOCOL_MANAGER.addPacketListener(chunkUnloadAdapter);
         Log.debug("SignHooker chunk adapter registered.");
     }
 
@@ -92,18 +115,19 @@ public class SignHooker {
         if (this.chunkAdapter != null) {
             PROTOCOL_MANAGER.removePacketListener(chunkAdapter);
         }
+        if (this.chunkUnloadAdapter != null) {
+            PROTOCOL_MANAGER.removePacketListener(chunkUnloadAdapter);
+        }
+        deliveryPipeline.unregister();
     }
 
+    /**
+     * Queue the per-player sign update for all players that can see the shop
+     *
+     * @param location The shop location
+     * @param shop     The shop
+     */
     public void updatePerPlayerShopSignBroadcast(Location location, Shop shop) {
-        World world = shop.getLocation().getWorld();
-        if (world == null) {
-            return;
-        }
-        Collection<Entity> nearbyPlayers = world.getNearbyEntities(shop.getLocation(), Bukkit.getViewDistance() * 16, shop.getLocation().getWorld().getMaxHeight(), Bukkit.getViewDistance() * 16);
-        for (Entity nearbyPlayer : nearbyPlayers) {
-            if (nearbyPlayer instanceof Player player) {
-                updatePerPlayerShopSign(player, location, shop);
-            }
-        }
+        deliveryPipeline.broadcast(shop);
     }
 }
@@ -1,35 +1,166 @@
 package com.ghostchu.quickshop.util;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-
 import java.util.concurrent.TimeUnit;
 
+/**
+ * A set that the items expire after a fixed lifetime since added.
+ * <p>
+ * It used on the hot interaction paths (cooldowns, rate limits), so instead of a Guava cache it is an open addressing
+ * hash table with a deadline ring: all items share the same lifetime, so the ring is always ordered by deadline and
+ * the expired items are swept lazily from its head, the size is tracked as a counter.
+ */
 public class ExpiringSet<T> {
-    private final Cache<T, Long> cache;
+    private static final int INITIAL_CAPACITY = 16;
     private final long lifetime;
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private long[] deadlines = new long[INITIAL_CAPACITY];
+    private int size;
+    // The deadline ring, the entries may be stale if the item re-added or removed
+    private Object[] ringKeys = new Object[INITIAL_CAPACITY];
+    private long[] ringDeadlines = new long[INITIAL_CAPACITY];
+    private int ringHead;
+    private int ringSize;
 
     public ExpiringSet(long lifetime, TimeUnit timeUnit) {
-        this.cache = CacheBuilder
-                .newBuilder()
-                .expireAfterWrite(lifetime, timeUnit).build();
         this.lifetime = timeUnit.toMillis(lifetime);
     }
 
-    public void add(T item) {
-        this.cache.put(item, System.currentTimeMillis() + this.lifetime);
+    public synchronized void add(T item) {
+        long now = System.currentTimeMillis();
+        sweep(now);
+        long deadline = now + this.lifetime;
+        int slot = find(item);
+        if (slot < 0) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            slot = hash(item) & (keys.length - 1);
+            while (keys[slot] != null) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = item;
+            size++;
+        }
+        deadlines[slot] = deadline;
+        pushRing(item, deadline);
+    }
+
+    public synchronized boolean contains(T item) {
+        long now = System.currentTimeMillis();
+        sweep(now);
+        int slot = find(item);
+        return slot >= 0 && deadlines[slot] > now;
+    }
+
+    public synchronized void remove(T item) {
+        int slot = find(item);
+        if (slot >= 0) {
+            delete(slot);
+        }
+    }
+
+    public synchronized long size() {
+        sweep(System.currentTimeMillis());
+        return this.size;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(Object key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        Object k;
+        while ((k = keys[slot]) != null) {
+            if (k.equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void delete(int slot) {
+        // Backward shift deletion, no tombstones left in the table
+        int mask = keys.length - 1;
+        int gap = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            Object k = keys[i];
+            if (k == null) {
+                break;
+            }
+            int home = hash(k) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = k;
+                deadlines[gap] = deadlines[i];
+                gap = i;
+            }
+        }
+        keys[gap] = null;
+        size--;
     }
 
-    public boolean contains(T item) {
-        Long timeout = this.cache.getIfPresent(item);
-        return timeout != null && timeout > System.currentTimeMillis();
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        long[] oldDeadlines = deadlines;
+        keys = new Object[capacity];
+        deadlines = new long[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object k = oldKeys[i];
+            if (k == null) {
+                continue;
+            }
+            int slot = hash(k) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = k;
+            deadlines[slot] = oldDeadlines[i];
+        }
     }
 
-    public void remove(T item) {
-        this.cache.invalidate(item);
+    private void pushRing(Object key, long deadline) {
+        if (ringSize == ringKeys.length) {
+            int capacity = ringKeys.length * 2;
+            Object[] newKeys = new Object[capacity];
+            long[] newDeadlines = new long[capacity];
+            int firstPart = ringKeys.length - ringHead;
+            System.arraycopy(ringKeys, ringHead, newKeys, 0, firstPart);
+            System.arraycopy(ringKeys, 0, newKeys, firstPart, ringHead);
+            System.arraycopy(ringDeadlines, ringHead, newDeadlines, 0, firstPart);
+            System.arraycopy(ringDeadlines, 0, newDeadlines, firstPart, ringHead);
+            ringKeys = newKeys;
+            ringDeadlines = newDeadlines;
+            ringHead = 0;
+        }
+        int tail = (ringHead + ringSize) & (ringKeys.length - 1);
+        ringKeys[tail] = key;
+        ringDeadlines[tail] = deadline;
+        ringSize++;
     }
 
-    public long size(){
-        return this.cache.size();
+    private void sweep(long now) {
+        while (ringSize > 0 && ringDeadlines[ringHead] <= now) {
+            Object key = ringKeys[ringHead];
+            ringKeys[ringHead] = null;
+            ringHead = (ringHead + 1) & (ringKeys.length - 1);
+            ringSize--;
+            int slot = find(key);
+            // Skip if the item was removed, or re-added with a later deadline
+            if (slot >= 0 && deadlines[slot] <= now) {
+                delete(slot);
+            }
+        }
+        if (ringSize == 0 && ringKeys.length > INITIAL_CAPACITY * 4) {
+            // Release the memory after a burst
+            ringKeys = new Object[INITIAL_CAPACITY];
+            ringDeadlines = new long[INITIAL_CAPACITY];
+            ringHead = 0;
+        }
     }
 }
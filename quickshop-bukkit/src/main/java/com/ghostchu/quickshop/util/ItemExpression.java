@@ -18,14 +18,23 @@ public class ItemExpression {
     private final QuickShop plugin;
     @Nullable
     private final Function<ItemStack, Boolean> function;
+    @NotNull
+    private final ExpressionType type;
+    @Nullable
+    private Material material;
+    @Nullable
+    private ItemStack reference;
 
     public ItemExpression(@NotNull QuickShop plugin, @NotNull String item) {
         this.plugin = plugin;
         if (item.startsWith(ITEM_REFERENCE_MARKER)) {
+            this.type = ExpressionType.REFERENCE;
             this.function = handleItemReference(item);
         } else if (item.startsWith(ENCHANTMENT_MARKER)) {
+            this.type = ExpressionType.ENCHANTMENT;
             this.function = parseEnchantment(item);
         } else {
+            this.type = ExpressionType.MATERIAL;
             this.function = handleItemMaterial(item);
         }
     }
@@ -34,6 +43,7 @@ public class ItemExpression {
     private @NotNull Function<ItemStack, Boolean> handleItemReference(@NotNull String item) {
         String reference = item.substring(1);
         ItemStack stack = plugin.getItemMarker().get(reference);
+        this.reference = stack;
         return itemStack -> plugin.getItemMatcher().matches(stack, itemStack);
     }
 
@@ -98,6 +108,7 @@ public class ItemExpression {
             plugin.logger().warn("Failed to read a ItemRule option, invalid item {}! Skipping...", item);
             return null;
         }
+        this.material = mat;
         return itemStack -> itemStack.getType() == mat;
     }
 
@@ -105,4 +116,42 @@ public class ItemExpression {
     public Optional<Function<ItemStack, Boolean>> getFunction() {
         return Optional.ofNullable(this.function);
     }
+
+    /**
+     * Gets the expression type
+     *
+     * @return The expression type
+     */
+    @NotNull
+    public ExpressionType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the material that this expression matches, only available for {@link ExpressionType#MATERIAL} expressions.
+     * Callers can index the expression by material instead of evaluating the function.
+     *
+     * @return The material, or empty if this expression is not a valid material expression
+     */
+    @NotNull
+    public Optional<Material> getMaterial() {
+        return Optional.ofNullable(this.material);
+    }
+
+    /**
+     * Gets the referenced item that this expression matches, only available for {@link ExpressionType#REFERENCE} expressions
+     * and the referenced item exists.
+     *
+     * @return The referenced item, or empty if this expression is not a valid reference expression
+     */
+    @NotNull
+    public Optional<ItemStack> getReference() {
+        return Optional.ofNullable(this.reference);
+    }
+
+    public enum ExpressionType {
+        MATERIAL,
+        ENCHANTMENT,
+        REFERENCE
+    }
 }
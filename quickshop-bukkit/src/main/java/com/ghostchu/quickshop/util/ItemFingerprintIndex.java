@@ -0,0 +1,156 @@
+package com.ghostchu.quickshop.util;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.shop.ItemMatcher;
+import com.ghostchu.quickshop.util.matcher.item.BukkitItemMatcherImpl;
+import com.ghostchu.quickshop.util.matcher.item.QuickShopItemMatcherImpl;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Classify the items against a large amount of registered items.
+ * <p>
+ * The built-in item matchers never match two items with different material unless they have the same platform shop id,
+ * so the registered items are bucketed by material and shop id, a lookup only runs the full matching inside the buckets
+ * of the given item. The lookup results are memoized by the item fingerprint (the item without amount, which contains
+ * the material and the meta), so repeated lookups of the same item are a map lookup.
+ * <p>
+ * Third-party item matchers may match across materials, every registered item will be tested in that case.
+ *
+ * @param <T> The value type bound with the registered items
+ */
+public class ItemFingerprintIndex<T> {
+    private static final int MAX_FINGERPRINTS = 1024;
+    private final QuickShop plugin;
+    private final List<Entry<T>> entries = new ArrayList<>();
+    private final Map<Material, List<Entry<T>>> byMaterial = new EnumMap<>(Material.class);
+    private final Map<String, List<Entry<T>>> byShopId = new HashMap<>();
+    private final Cache<ItemStack, Optional<T>> results = CacheBuilder.newBuilder()
+            .maximumSize(MAX_FINGERPRINTS)
+            .recordStats()
+            .build();
+
+    public ItemFingerprintIndex(@NotNull QuickShop plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Register an item into the index
+     *
+     * @param stack The item
+     * @param value The value will be returned when matched
+     */
+    public void add(@NotNull ItemStack stack, @NotNull T value) {
+        Entry<T> entry = new Entry<>(stack, value);
+        entries.add(entry);
+        byMaterial.computeIfAbsent(stack.getType(), k -> new ArrayList<>()).add(entry);
+        String shopId = plugin.getPlatform().getItemShopId(stack);
+        if (shopId != null) {
+            byShopId.computeIfAbsent(shopId, k -> new ArrayList<>()).add(entry);
+        }
+        results.invalidateAll();
+    }
+
+    /**
+     * Unregister all items bound with the value
+     *
+     * @param value The value
+     */
+    public void remove(@NotNull T value) {
+        entries.removeIf(entry -> entry.value().equals(value));
+        byMaterial.values().forEach(list -> list.removeIf(entry -> entry.value().equals(value)));
+        byMaterial.values().removeIf(List::isEmpty);
+        byShopId.values().forEach(list -> list.removeIf(entry -> entry.value().equals(value)));
+        byShopId.values().removeIf(List::isEmpty);
+        results.invalidateAll();
+    }
+
+    /**
+     * Unregister all items and drop all memoized results, must be called when the item matcher reloaded.
+     */
+    public void clear() {
+        entries.clear();
+        byMaterial.clear();
+        byShopId.clear();
+        results.invalidateAll();
+    }
+
+    /**
+     * Find the first registered item that matches the given item
+     *
+     * @param item The item to test
+     * @return The value bound with the matched registered item, null if nothing matched
+     */
+    @Nullable
+    public T find(@NotNull ItemStack item) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        ItemStack fingerprint = item.clone();
+        fingerprint.setAmount(1);
+        Optional<T> cached = results.getIfPresent(fingerprint);
+        //noinspection OptionalAssignedToNull
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        T result = lookup(fingerprint);
+        results.put(fingerprint, Optional.ofNullable(result));
+        return result;
+    }
+
+    @Nullable
+    private T lookup(@NotNull ItemStack item) {
+        ItemMatcher matcher = plugin.getItemMatcher();
+        if (!(matcher instanceof QuickShopItemMatcherImpl) && !(matcher instanceof BukkitItemMatcherImpl)) {
+            return lookup(matcher, entries, item);
+        }
+        T result = lookup(matcher, byMaterial.get(item.getType()), item);
+        if (result != null || byShopId.isEmpty()) {
+            return result;
+        }
+        String shopId = plugin.getPlatform().getItemShopId(item);
+        return shopId == null ? null : lookup(matcher, byShopId.get(shopId), item);
+    }
+
+    @Nullable
+    private T lookup(@NotNull ItemMatcher matcher, @Nullable List<Entry<T>> candidates, @NotNull ItemStack item) {
+        if (candidates == null) {
+            return null;
+        }
+        for (Entry<T> candidate : candidates) {
+            if (matcher.matches(candidate.stack(), item)) {
+                return candidate.value();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the size of registered items
+     *
+     * @return The size
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the memoized lookup results cache stats
+     *
+     * @return The stats
+     */
+    @NotNull
+    public CacheStats getStats() {
+        return results.stats();
+    }
+
+    private record Entry<T>(@NotNull ItemStack stack, @NotNull T value) {
+    }
+}
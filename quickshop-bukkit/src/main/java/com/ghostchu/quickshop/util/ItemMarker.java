@@ -2,6 +2,7 @@ package com.ghostchu.quickshop.util;
 
 import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.util.logger.Log;
+import com.ghostchu.quickshop.util.paste.GuavaCacheRender;
 import com.ghostchu.quickshop.util.paste.item.SubPasteItem;
 import com.ghostchu.quickshop.util.paste.util.HTMLTable;
 import com.ghostchu.simplereloadlib.ReloadResult;
@@ -25,6 +26,7 @@ public class ItemMarker implements Reloadable, SubPasteItem {
     private static final String NAME_REG_EXP = "[a-zA-Z0-9_]*";
     private final QuickShop plugin;
     private final Map<String, ItemStack> stacks = new HashMap<>();
+    private final ItemFingerprintIndex<String> index;
     private final File file;
     //private static final String NAME_REG_EXP = "\\w";
     private final Pattern namePattern = Pattern.compile(NAME_REG_EXP);
@@ -32,6 +34,7 @@ public class ItemMarker implements Reloadable, SubPasteItem {
 
     public ItemMarker(@NotNull QuickShop plugin) {
         this.plugin = plugin;
+        this.index = new ItemFingerprintIndex<>(plugin);
         file = new File(plugin.getDataFolder(), "items-lookup.yml");
         init();
         plugin.getReloadManager().register(this);
@@ -40,13 +43,16 @@ public class ItemMarker implements Reloadable, SubPasteItem {
 
     public void init() {
         stacks.clear();
+        index.clear();
         if (!file.exists()) {
             initDefaultConfiguration(file);
         }
         configuration = YamlConfiguration.loadConfiguration(file);
         for (String key : configuration.getKeys(false)) {
             if (configuration.isItemStack(key)) {
-                stacks.put(key, configuration.getItemStack(key));
+                ItemStack stack = configuration.getItemStack(key);
+                stacks.put(key, stack);
+                index.add(stack, key);
             }
         }
     }
@@ -76,12 +82,7 @@ public class ItemMarker implements Reloadable, SubPasteItem {
 
     @Nullable
     public String get(@NotNull ItemStack item) {
-        for (Map.Entry<String, ItemStack> entry : stacks.entrySet()) {
-            if (plugin.getItemMatcher().matches(entry.getValue(), item)) {
-                return entry.getKey();
-            }
-        }
-        return null;
+        return index.find(item);
     }
 
     @NotNull
@@ -101,6 +102,7 @@ public class ItemMarker implements Reloadable, SubPasteItem {
             return OperationResult.NOT_EXISTS;
         }
         stacks.remove(itemName);
+        index.remove(itemName);
         configuration.set(itemName, null);
         if (saveConfig()) {
             Log.debug("Removed item " + itemName + " !");
@@ -129,6 +131,7 @@ public class ItemMarker implements Reloadable, SubPasteItem {
             return OperationResult.REGEXP_FAILURE;
         }
         stacks.put(itemName, itemStack);
+        index.add(itemStack, itemName);
         configuration.set(itemName, itemStack);
         if (saveConfig()) {
             Log.debug("Saved item " + itemName + " !");
@@ -145,7 +148,7 @@ public class ItemMarker implements Reloadable, SubPasteItem {
         for (Map.Entry<String, ItemStack> entry : stacks.entrySet()) {
             table.insert(entry.getKey(), PlainTextComponentSerializer.plainText().serialize(Util.getItemStackName(entry.getValue())) + " [" + entry.getValue().getType().getKey() + "]");
         }
-        return table.render();
+        return table.render() + "<h5>Lookup Cache</h5>" + GuavaCacheRender.renderTable(index.getStats());
     }
 
     @Override
@@ -9,6 +9,7 @@ import com.ghostchu.quickshop.api.shop.Shop;
 import com.ghostchu.quickshop.common.util.CommonUtil;
 import com.ghostchu.quickshop.common.util.RomanNumber;
 import com.ghostchu.quickshop.obj.QUserImpl;
+import com.ghostchu.quickshop.util.inbox.TransactionSummary;
 import com.ghostchu.quickshop.util.logger.Log;
 import com.ghostchu.quickshop.util.logging.container.PluginGlobalAlertLog;
 import com.google.common.collect.Iterables;
@@ -35,7 +36,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.Map.Entry;
@@ -147,7 +147,7 @@ public class MsgUtil {
     }
 
     /**
-     * Empties the queue of messages a player has and sends them to the player.
+     * Empties the inbox of messages a player has and sends them to the player as a digest.
      *
      * @param p The player to message
      * @return True if success, False if the player is offline or null
@@ -156,25 +156,11 @@ public class MsgUtil {
         Player player = p.getPlayer();
         if (player == null) return false;
         UUID playerUniqueId = player.getUniqueId();
-        try {
-            PLUGIN.getDatabaseHelper().selectPlayerMessages(playerUniqueId)
-                    .thenAccept(msgs -> {
-                        for (String msg : msgs) {
-                            PLUGIN.getPlatform().sendMessage(player, GsonComponentSerializer.gson().deserialize(msg));
-                        }
-                        PLUGIN.getDatabaseHelper().cleanMessageForPlayer(playerUniqueId)
-                                .exceptionally(error -> {
-                                    PLUGIN.logger().warn("Error on cleaning the purchase messages from the database", error);
-                                    return 0;
-                                });
-                    })
-                    .exceptionally(th -> {
-                        PLUGIN.logger().warn("Failed to retrieve player {} messages.", playerUniqueId, th);
-                        return null;
-                    });
-        } catch (SQLException e) {
-            PLUGIN.logger().warn("Failed to retrieve player messages due an SQLException.", e);
-        }
+        PLUGIN.getTransactionInbox().flush(player)
+                .exceptionally(th -> {
+                    PLUGIN.logger().warn("Failed to retrieve player {} messages.", playerUniqueId, th);
+                    return false;
+                });
         return false;
     }
 
@@ -287,6 +273,15 @@ public class MsgUtil {
         send(uuid, shopTransactionMessage, shop.isUnlimited());
     }
 
+    /**
+     * @param shop    The shop purchased
+     * @param uuid    The uuid of the player to message
+     * @param summary The transaction summary, it will be coalesced with other transactions if the player is offline
+     */
+    public static void send(@NotNull Shop shop, @Nullable UUID uuid, @NotNull Component shopTransactionMessage, @Nullable TransactionSummary summary) {
+        send(uuid, shopTransactionMessage, shop.isUnlimited(), summary);
+    }
+
     /**
      * @param shop  The shop purchased
      * @param qUser The uuid of the player to message
@@ -296,6 +291,16 @@ public class MsgUtil {
         send(uuid, shopTransactionMessage, shop.isUnlimited());
     }
 
+    /**
+     * @param shop    The shop purchased
+     * @param qUser   The uuid of the player to message
+     * @param summary The transaction summary, it will be coalesced with other transactions if the player is offline
+     */
+    public static void send(@NotNull Shop shop, @NotNull QUser qUser, @NotNull Component shopTransactionMessage, @Nullable TransactionSummary summary) {
+        UUID uuid = qUser.getUniqueIdIfRealPlayer().orElse(null);
+        send(uuid, shopTransactionMessage, shop.isUnlimited(), summary);
+    }
+
     /**
      * @param uuid                   The uuid of the player to message
      * @param shopTransactionMessage The message to send them Sends the given player a message if they're online.
@@ -305,38 +310,41 @@ public class MsgUtil {
      *                               Deprecated for always use for bukkit deserialize method (costing ~145ms)
      */
     public static void send(@Nullable UUID uuid, @NotNull Component shopTransactionMessage, boolean isUnlimited) {
+        send(uuid, shopTransactionMessage, isUnlimited, null);
+    }
+
+    /**
+     * @param uuid                   The uuid of the player to message
+     * @param shopTransactionMessage The message to send them Sends the given player a message if they're online.
+     *                               Else, if they're not online, puts it into the offline inbox.
+     * @param isUnlimited            The shop is or unlimited
+     * @param summary                The transaction summary, the inbox coalesces the offline transactions with it
+     */
+    public static void send(@Nullable UUID uuid, @NotNull Component shopTransactionMessage, boolean isUnlimited, @Nullable TransactionSummary summary) {
         if (isUnlimited && PLUGIN.getConfig().getBoolean("shop.ignore-unlimited-shop-messages")) {
             return; // Ignore unlimited shops messages.
         }
         if (uuid == null) return;
-        String serialized = GsonComponentSerializer.gson().serialize(shopTransactionMessage);
-        Log.debug(serialized);
-        OfflinePlayer p = Bukkit.getOfflinePlayer(uuid);
-        if (!p.isOnline()) {
-            PLUGIN.getDatabaseHelper().saveOfflineTransactionMessage(uuid, serialized, System.currentTimeMillis())
-                    .thenAccept(v -> {
-                    })
-                    .exceptionally(err -> {
-                        PLUGIN.logger().warn("Could not save transaction message to database", err);
-                        return null;
-                    });
-            try {
-                if (p.getName() != null && PLUGIN.getConfig().getBoolean("bungee-cross-server-msg", true)) {
-                    PLUGIN.getDatabaseHelper().getPlayerLocale(uuid).whenCompleteAsync((locale, err) -> {
-                        if (locale != null) {
-                            sendBungeeMessage(p.getName(), shopTransactionMessage, locale);
-                        }
-                    });
-                }
-            } catch (Exception e) {
-                Log.debug("Could not send shop transaction message to player " + p.getName() + " via BungeeCord: " + e.getMessage());
-            }
-        } else {
-            Player player = p.getPlayer();
-            if (player != null) {
-                PLUGIN.getPlatform().sendMessage(player, shopTransactionMessage);
-            }
+        Player player = Bukkit.getPlayer(uuid);
+        if (player != null) {
+            PLUGIN.getPlatform().sendMessage(player, shopTransactionMessage);
+            return;
+        }
+        PLUGIN.getTransactionInbox().offer(uuid, shopTransactionMessage, summary);
+        if (!PLUGIN.getConfig().getBoolean("bungee-cross-server-msg", true)) {
+            return;
         }
+        PLUGIN.getTransactionInbox().getPlayerLocale(uuid)
+                .thenCombine(PLUGIN.getPlayerFinder().uuid2NameFuture(uuid), (locale, name) -> {
+                    if (locale != null && name != null) {
+                        sendBungeeMessage(name, shopTransactionMessage, locale);
+                    }
+                    return null;
+                })
+                .exceptionally(err -> {
+                    Log.debug("Could not send shop transaction message to player " + uuid + " via BungeeCord: " + err.getMessage());
+                    return null;
+                });
     }
 
     public static void sendBungeeMessage(@NotNull String playerName, @NotNull Component message, @NotNull String locale) {
@@ -23,12 +23,15 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.event.server.ServerLoadEvent;
 import org.bukkit.plugin.RegisteredListener;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
+import java.util.*;
 
 /**
  * A helper to resolve issue around other plugins with BlockBreakEvent
@@ -36,22 +39,40 @@ import java.util.List;
  * @author Ghost_chu and sandtechnology
  */
 public class PermissionChecker implements Reloadable {
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
     private final QuickShop plugin;
+    private final ProbeListener probeListener = new ProbeListener();
 
     private boolean usePermissionChecker;
 
     private QuickEventManager eventManager;
 
+    private Set<String> worldBlacklist = Collections.emptySet();
+
 
     public PermissionChecker(@NotNull QuickShop plugin) {
         this.plugin = plugin;
         plugin.getReloadManager().register(this);
         init();
+        // Registered once, the probe events are correlated by the probe instance itself,
+        // so checking won't re-bake the BlockBreakEvent HandlerList anymore.
+        registerProbeListener();
+        Bukkit.getPluginManager().registerEvents(new ProbeOrderListener(), plugin.getJavaPlugin());
+    }
+
+    /**
+     * (Re-)register the probe listener, so it is the last one of the HIGHEST priority listeners.
+     * The protection plugins enabled after QuickShop must run before the probe finished.
+     */
+    private void registerProbeListener() {
+        HandlerList.unregisterAll(probeListener);
+        Bukkit.getPluginManager().registerEvents(probeListener, plugin.getJavaPlugin());
     }
 
     private void init() {
         usePermissionChecker = this.plugin.getConfig().getBoolean("shop.protection-checking");
         List<String> listenerBlacklist = plugin.getConfig().getStringList("shop.protection-checking-blacklist");
+        this.worldBlacklist = Set.copyOf(listenerBlacklist);
         listenerBlacklist.removeIf("ignored_listener"::equalsIgnoreCase); // Remove default demo rule
         if (listenerBlacklist.isEmpty()) {
             this.eventManager = new BukkitEventManager();
@@ -84,8 +105,7 @@ public class PermissionChecker implements Reloadable {
     @NotNull
     public Result canBuild(@NotNull Player player, @NotNull Block block) {
         try (PerfMonitor ignored = new PerfMonitor("Build Permission Check", Duration.of(1, ChronoUnit.SECONDS))) {
-            QUser qUser = QUserImpl.createFullFilled(player);
-            if (plugin.getConfig().getStringList("shop.protection-checking-blacklist").contains(block.getWorld().getName())) {
+            if (worldBlacklist.contains(block.getWorld().getName())) {
                 Log.debug("Skipping protection checking in world " + block.getWorld().getName() + " causing it in blacklist.");
                 return Result.SUCCESS;
             }
@@ -93,62 +113,21 @@ public class PermissionChecker implements Reloadable {
             if (!usePermissionChecker) {
                 return Result.SUCCESS;
             }
-            final Result isCanBuild = new Result();
-
-            BlockBreakEvent beMainHand;
-
-            beMainHand = new BlockBreakEvent(block, player) {
-
-                @Override
-                public void setCancelled(boolean cancel) {
-                    //tracking cancel plugin
-                    if (cancel && !isCancelled()) {
-                        Log.debug("An plugin blocked the protection checking event! See this stacktrace:");
-                        for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
-                            Log.debug(element.getClassName() + "." + element.getMethodName() + "(" + element.getLineNumber() + ")");
-                        }
-                        isCanBuild.setMessage(Thread.currentThread().getStackTrace()[2].getClassName());
-                        out:
-                        for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
-
-                            for (RegisteredListener listener : getHandlerList().getRegisteredListeners()) {
-                                if (listener.getListener().getClass().getName().equals(element.getClassName())) {
-                                    isCanBuild.setResult(false);
-                                    isCanBuild.setMessage(listener.getPlugin().getName());
-                                    isCanBuild.setListener(listener.getListener().getClass().getName());
-                                    break out;
-                                }
-                            }
-                        }
-                    }
-                    super.setCancelled(cancel);
-                }
-            };
+            // Nobody listening the check status, don't create the QUser for nothing
+            QUser qUser = ShopProtectionCheckEvent.getHandlerList().getRegisteredListeners().length == 0 ? null : QUserImpl.createFullFilled(player);
+            Probe probe = new Probe(block, player, qUser);
             // Call for event for protection check start
-            this.eventManager.callEvent(new ShopProtectionCheckEvent(block.getLocation(), qUser, ProtectionCheckStatus.BEGIN, beMainHand));
-            beMainHand.setDropItems(false);
-            beMainHand.setExpToDrop(0);
-
-            //register a listener to cancel test event
-            Bukkit.getPluginManager().registerEvents(new Listener() {
-                @EventHandler(priority = EventPriority.HIGHEST)
-                public void onTestEvent(BlockBreakEvent event) {
-                    if (event.equals(beMainHand)) {
-                        // Call for event for protection check end
-                        eventManager.callEvent(
-                                new ShopProtectionCheckEvent(
-                                        block.getLocation(), qUser, ProtectionCheckStatus.END, beMainHand));
-                        if (!event.isCancelled()) {
-                            //Ensure this test will no be logged by some plugin
-                            beMainHand.setCancelled(true);
-                            isCanBuild.setResult(true);
-                        }
-                        HandlerList.unregisterAll(this);
-                    }
-                }
-            }, plugin.getJavaPlugin());
-            this.eventManager.callEvent(beMainHand);
-            return isCanBuild;
+            if (qUser != null) {
+                this.eventManager.callEvent(new ShopProtectionCheckEvent(block.getLocation(), qUser, ProtectionCheckStatus.BEGIN, probe));
+            }
+            probe.setDropItems(false);
+            probe.setExpToDrop(0);
+            this.eventManager.callEvent(probe);
+            if (!probe.finished && !probe.isCancelled()) {
+                // The probe listener not reached (unregistered by someone), decide by the event state
+                probe.result.setResult(true);
+            }
+            return probe.result;
         }
     }
 
@@ -162,4 +141,103 @@ public class PermissionChecker implements Reloadable {
         init();
         return ReloadResult.builder().status(ReloadStatus.SUCCESS).build();
     }
+
+    /**
+     * The fake BlockBreakEvent to check the protection, tracking the plugin that cancelled it.
+     */
+    private static class Probe extends BlockBreakEvent {
+        private final Result result = new Result();
+        @Nullable
+        private final QUser qUser;
+        private boolean finished = false;
+
+        private Probe(@NotNull Block block, @NotNull Player player, @Nullable QUser qUser) {
+            super(block, player);
+            this.qUser = qUser;
+        }
+
+        @Override
+        public void setCancelled(boolean cancel) {
+            //tracking cancel plugin
+            if (cancel && !finished && !isCancelled()) {
+                attribute();
+            }
+            super.setCancelled(cancel);
+        }
+
+        /**
+         * Find out the plugin cancelled this probe, walks the stack until the first registered listener frame.
+         */
+        private void attribute() {
+            Map<Class<?>, RegisteredListener> listeners = new HashMap<>();
+            for (RegisteredListener listener : getHandlerList().getRegisteredListeners()) {
+                listeners.putIfAbsent(listener.getListener().getClass(), listener);
+            }
+            STACK_WALKER.walk(frames -> {
+                Iterator<StackWalker.StackFrame> it = frames.iterator();
+                while (it.hasNext()) {
+                    StackWalker.StackFrame frame = it.next();
+                    if (frame.getDeclaringClass() == Probe.class) {
+                        continue;
+                    }
+                    if (result.getMessage() == null) {
+                        // The caller of setCancelled, used when no listener matched
+                        result.setMessage(frame.getClassName());
+                    }
+                    RegisteredListener listener = listeners.get(frame.getDeclaringClass());
+                    if (listener != null) {
+                        result.setResult(false);
+                        result.setMessage(listener.getPlugin().getName());
+                        result.setListener(listener.getListener().getClass().getName());
+                        break;
+                    }
+                }
+                return null;
+            });
+            Log.debug("An plugin blocked the protection checking event! Plugin: " + result.getMessage() + ", Listener: " + result.getListener());
+            if (Util.isDevMode()) {
+                Log.debug("See this stacktrace:");
+                STACK_WALKER.forEach(frame -> Log.debug(frame.getClassName() + "." + frame.getMethodName() + "(" + frame.getLineNumber() + ")"));
+            }
+        }
+    }
+
+    /**
+     * The persistent listener to finish the probes at HIGHEST priority.
+     */
+    private class ProbeListener implements Listener {
+        @EventHandler(priority = EventPriority.HIGHEST)
+        public void onProbe(BlockBreakEvent event) {
+            if (!(event instanceof Probe probe)) {
+                return;
+            }
+            // Call for event for protection check end
+            if (probe.qUser != null) {
+                eventManager.callEvent(new ShopProtectionCheckEvent(probe.getBlock().getLocation(), probe.qUser, ProtectionCheckStatus.END, probe));
+            }
+            if (!probe.isCancelled()) {
+                //Ensure this test will no be logged by some plugin
+                probe.finished = true;
+                probe.setCancelled(true);
+                probe.result.setResult(true);
+            }
+        }
+    }
+
+    /**
+     * Move the probe listener to the end again when other plugins enabled after QuickShop.
+     */
+    private class ProbeOrderListener implements Listener {
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPluginEnable(PluginEnableEvent event) {
+            if (event.getPlugin() != plugin.getJavaPlugin()) {
+                registerProbeListener();
+            }
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onServerLoad(ServerLoadEvent event) {
+            registerProbeListener();
+        }
+    }
 }
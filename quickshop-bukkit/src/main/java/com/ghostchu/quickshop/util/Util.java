@@ -201,6 +201,36 @@ public class Util {
         }
     }
 
+    /**
+     * Check if the given inventory has at least one shop item, it stops at the first full shop item
+     * instead of counting the whole inventory.
+     *
+     * @param inv  The inventory to search
+     * @param shop The Shop for matching
+     * @return The inventory has at least one shop item.
+     */
+    public static boolean hasItems(@Nullable InventoryWrapper inv, @NotNull Shop shop) {
+        if (inv == null) {
+            return false;
+        }
+        if (inv instanceof CountableInventoryWrapper ciw) {
+            return ciw.countItem(shop::matches) >= shop.getItem().getAmount();
+        }
+        int items = 0;
+        for (final ItemStack iStack : inv) {
+            if (iStack == null || iStack.getType() == Material.AIR) {
+                continue;
+            }
+            if (shop.matches(iStack)) {
+                items += iStack.getAmount();
+                if (items >= shop.getItem().getAmount()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns the number of shop items that can be given to the inventory safely.
      *
@@ -93,6 +93,49 @@ public class ConfigUpdateScript {
         getConfig().set("plugin.NBTAPI", null);
     }
 
+    @UpdateScript(version = 1020)
+    public void rankLimiterCache() {
+        getConfig().set("limits.cache-ttl", 60);
+    }
+
+    @UpdateScript(version = 1021)
+    public void databaseIOBatching() {
+        getConfig().set("backup-policy.fetch-size", 1000);
+        getConfig().set("backup-policy.import-batch-size", 500);
+    }
+
+    @UpdateScript(version = 1022)
+    public void logDatabaseRetention() {
+        getConfig().set("logging.database-retention.days", 0);
+        getConfig().set("logging.database-retention.chunk-size", 1000);
+        getConfig().set("logging.database-retention.interval", 200);
+    }
+
+    @UpdateScript(version = 1023)
+    public void logPipeline() {
+        getConfig().set("logging.queue-capacity", 100000);
+        getConfig().set("logging.batch-size", 500);
+        getConfig().set("logging.rotate-daily", true);
+    }
+
+    @UpdateScript(version = 1024)
+    public void offlineMessageInbox() {
+        getConfig().set("shop.offline-message-cap", 50);
+    }
+
+    @UpdateScript(version = 1026)
+    public void shopJournal() {
+        getConfig().set("backup-policy.journal.enable", true);
+        getConfig().set("backup-policy.journal.snapshot-interval", 24);
+        getConfig().set("backup-policy.journal.retention-days", 14);
+        getConfig().set("backup-policy.journal.sync-interval", 1000);
+    }
+
+    @UpdateScript(version = 1025)
+    public void economyBalanceSnapshot() {
+        getConfig().set("economy-balance-snapshot", false);
+    }
+
     @UpdateScript(version = 1004)
     public void configurableDatabaseProperties() {
         getConfig().set("database.queue", null);
@@ -3,8 +3,30 @@ package com.ghostchu.quickshop.util.holder;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.InventoryHolder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class QuickShopPreviewGUIHolder implements InventoryHolder {
+    @Nullable
+    private final Object previewKey;
+
+    public QuickShopPreviewGUIHolder() {
+        this(null);
+    }
+
+    public QuickShopPreviewGUIHolder(@Nullable Object previewKey) {
+        this.previewKey = previewKey;
+    }
+
+    /**
+     * Gets the key of the pooled preview which owned this inventory
+     *
+     * @return The preview key, or null if not pooled
+     */
+    @Nullable
+    public Object getPreviewKey() {
+        return previewKey;
+    }
+
     @Override
     public @NotNull Inventory getInventory() {
         return null;
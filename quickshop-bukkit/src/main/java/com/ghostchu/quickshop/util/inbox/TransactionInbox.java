@@ -0,0 +1,500 @@
+package com.ghostchu.quickshop.util.inbox;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.shop.ShopType;
+import com.ghostchu.quickshop.common.util.QuickExecutor;
+import com.ghostchu.quickshop.database.SimpleDatabaseHelperV2;
+import com.ghostchu.quickshop.util.MsgUtil;
+import com.ghostchu.quickshop.util.logger.Log;
+import com.ghostchu.quickshop.util.paste.item.SubPasteItem;
+import com.ghostchu.quickshop.util.paste.util.HTMLTable;
+import com.ghostchu.simplereloadlib.ReloadResult;
+import com.ghostchu.simplereloadlib.Reloadable;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerLocaleChangeEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The offline transaction message inbox.
+ * <p>
+ * Transactions for offline players are coalesced per (receiver, shop, item, direction) into {@link TransactionSummary}
+ * in memory, and the background task writes the changed summaries to database in place, so a busy shop only keeps one
+ * row for each summary instead of one row for each purchase. If the row was already delivered (and cleaned) by another
+ * server sharing the database, only the transactions after the last write are inserted again. Other messages are
+ * deduplicated.
+ * When the player joins, a compact digest will be sent instead of replaying every message.
+ */
+public class TransactionInbox extends BukkitRunnable implements Listener, Reloadable, SubPasteItem {
+    private static final long IDLE_EVICT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private final QuickShop plugin;
+    private final Map<UUID, PlayerInbox> inboxes = new ConcurrentHashMap<>();
+    // The entries still stored in database of the evicted inboxes, keeps the per-player cap across evictions
+    private final Map<UUID, StoredEntries> evicted = new ConcurrentHashMap<>();
+    private final Cache<UUID, String> localeCache = CacheBuilder.newBuilder()
+            .expireAfterAccess(30, TimeUnit.MINUTES)
+            .maximumSize(5000)
+            .recordStats()
+            .build();
+    private final Object persistLock = new Object();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong omitted = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong digestsSent = new AtomicLong();
+    private volatile int maxEntriesPerPlayer;
+
+    public TransactionInbox(@NotNull QuickShop plugin) {
+        this.plugin = plugin;
+        init();
+        plugin.getReloadManager().register(this);
+        plugin.getPasteManager().register(plugin.getJavaPlugin(), this);
+        Bukkit.getPluginManager().registerEvents(this, plugin.getJavaPlugin());
+    }
+
+    private void init() {
+        this.maxEntriesPerPlayer = Math.max(1, plugin.getConfig().getInt("shop.offline-message-cap", 50));
+    }
+
+    /**
+     * Put a message into the inbox of an offline player
+     *
+     * @param receiver The receiver
+     * @param message  The message
+     * @param summary  The transaction summary of this message, null if it is not a transaction message
+     */
+    public void offer(@NotNull UUID receiver, @NotNull Component message, @Nullable TransactionSummary summary) {
+        received.incrementAndGet();
+        while (true) {
+            PlayerInbox inbox = inboxes.computeIfAbsent(receiver, uuid -> new PlayerInbox(evicted.remove(uuid)));
+            synchronized (inbox) {
+                if (inbox.closed) {
+                    // Evicted or flushed just now, retry with a new inbox
+                    continue;
+                }
+                inbox.lastAccess = System.currentTimeMillis();
+                if (summary != null) {
+                    offerSummary(inbox, summary);
+                } else {
+                    offerMessage(inbox, GsonComponentSerializer.gson().serialize(message));
+                }
+                return;
+            }
+        }
+    }
+
+    private void offerSummary(@NotNull PlayerInbox inbox, @NotNull TransactionSummary summary) {
+        InboxEntry entry = inbox.summaries.get(summary.getKey());
+        if (entry == null && !inbox.stored.keys().contains(summary.getKey()) && inbox.size() >= maxEntriesPerPlayer) {
+            // Reached the cap, merge into the overflow summary of this direction
+            summary = summary.toOverflow();
+            entry = inbox.summaries.get(summary.getKey());
+            overflowed.incrementAndGet();
+        }
+        if (entry == null) {
+            inbox.summaries.put(summary.getKey(), new InboxEntry(summary.copy()));
+            return;
+        }
+        if (entry.pending == null) {
+            entry.pending = summary.copy();
+        } else {
+            entry.pending.merge(summary);
+        }
+        coalesced.incrementAndGet();
+    }
+
+    private void offerMessage(@NotNull PlayerInbox inbox, @NotNull String content) {
+        if (inbox.knownMessages.contains(content)) {
+            coalesced.incrementAndGet();
+            return;
+        }
+        if (inbox.size() >= maxEntriesPerPlayer) {
+            omitted.incrementAndGet();
+            return;
+        }
+        inbox.knownMessages.add(content);
+        inbox.pendingMessages.add(content);
+    }
+
+    /**
+     * Gets the locale of the player, cached to avoid querying the database for every message
+     *
+     * @param uuid The player
+     * @return The locale, null if never recorded
+     */
+    @NotNull
+    public CompletableFuture<@Nullable String> getPlayerLocale(@NotNull UUID uuid) {
+        Player player = Bukkit.getPlayer(uuid);
+        if (player != null) {
+            return CompletableFuture.completedFuture(player.getLocale());
+        }
+        String cached = localeCache.getIfPresent(uuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return plugin.getDatabaseHelper().getPlayerLocale(uuid).thenApply(locale -> {
+            if (locale != null) {
+                localeCache.put(uuid, locale);
+            }
+            return locale;
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        localeCache.put(event.getPlayer().getUniqueId(), event.getPlayer().getLocale());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLocaleChange(PlayerLocaleChangeEvent event) {
+        localeCache.put(event.getPlayer().getUniqueId(), event.getLocale());
+    }
+
+    /**
+     * Write the changed summaries and messages to database
+     */
+    @Override
+    public void run() {
+        synchronized (persistLock) {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<UUID, PlayerInbox>> it = inboxes.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<UUID, PlayerInbox> entry = it.next();
+                PlayerInbox inbox = entry.getValue();
+                persist(entry.getKey(), inbox);
+                synchronized (inbox) {
+                    // Evict idle inboxes, the new transactions will create new rows and merged in the digest
+                    if (!inbox.hasPending() && now - inbox.lastAccess > IDLE_EVICT_MILLIS) {
+                        inbox.closed = true;
+                        StoredEntries stored = inbox.toStoredEntries();
+                        if (!stored.isEmpty()) {
+                            // Before removing, the next inbox of this player must see it
+                            evicted.put(entry.getKey(), stored);
+                        }
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private void persist(@NotNull UUID receiver, @NotNull PlayerInbox inbox) {
+        SimpleDatabaseHelperV2 databaseHelper = (SimpleDatabaseHelperV2) plugin.getDatabaseHelper();
+        Map<InboxEntry, TransactionSummary> deltas = new LinkedHashMap<>();
+        List<String> messages;
+        synchronized (inbox) {
+            for (InboxEntry entry : inbox.summaries.values()) {
+                if (entry.pending != null) {
+                    deltas.put(entry, entry.pending);
+                    entry.pending = null;
+                }
+            }
+            messages = new ArrayList<>(inbox.pendingMessages);
+            inbox.pendingMessages.clear();
+        }
+        for (Map.Entry<InboxEntry, TransactionSummary> delta : deltas.entrySet()) {
+            InboxEntry entry = delta.getKey();
+            try {
+                long now = System.currentTimeMillis();
+                if (entry.rowId != null && entry.persisted != null) {
+                    TransactionSummary merged = entry.persisted.copy().merge(delta.getValue());
+                    if (databaseHelper.updateOfflineMessage(entry.rowId, merged.toJson(), now)) {
+                        entry.persisted = merged;
+                        rowsWritten.incrementAndGet();
+                        continue;
+                    }
+                    // Row was delivered and cleaned, only the transactions after it are still unread
+                }
+                entry.rowId = databaseHelper.insertOfflineMessage(receiver, delta.getValue().toJson(), now);
+                entry.persisted = delta.getValue();
+                rowsWritten.incrementAndGet();
+            } catch (SQLException e) {
+                synchronized (inbox) {
+                    // Put it back, the newer transactions may already be pending
+                    entry.pending = entry.pending == null ? delta.getValue() : delta.getValue().merge(entry.pending);
+                }
+                plugin.logger().warn("Could not save transaction summary to database", e);
+            }
+        }
+        for (String message : messages) {
+            try {
+                databaseHelper.insertOfflineMessage(receiver, message, System.currentTimeMillis());
+                rowsWritten.incrementAndGet();
+            } catch (SQLException e) {
+                plugin.logger().warn("Could not save transaction message to database", e);
+            }
+        }
+    }
+
+    /**
+     * Collect all messages of the player, then send the digest to the player
+     *
+     * @param player The player
+     * @return The future, true if any message has been sent
+     */
+    @NotNull
+    public CompletableFuture<Boolean> flush(@NotNull Player player) {
+        UUID uuid = player.getUniqueId();
+        return CompletableFuture.supplyAsync(() -> collect(uuid), QuickExecutor.getCommonExecutor())
+                .thenApply(digest -> {
+                    if (digest.isEmpty()) {
+                        return false;
+                    }
+                    sendDigest(player, digest);
+                    digestsSent.incrementAndGet();
+                    return true;
+                });
+    }
+
+    @NotNull
+    private Digest collect(@NotNull UUID uuid) {
+        PlayerInbox inbox;
+        Map<Long, String> rows;
+        synchronized (persistLock) {
+            inbox = inboxes.remove(uuid);
+            evicted.remove(uuid);
+            try {
+                rows = ((SimpleDatabaseHelperV2) plugin.getDatabaseHelper()).selectPlayerMessageRows(uuid);
+            } catch (SQLException e) {
+                if (inbox != null) {
+                    // Put it back, we will try again next time
+                    inboxes.put(uuid, inbox);
+                }
+                throw new CompletionException(e);
+            }
+            if (!rows.isEmpty()) {
+                plugin.getDatabaseHelper().cleanMessageForPlayer(uuid).join();
+            }
+        }
+        Map<String, TransactionSummary> summaries = new LinkedHashMap<>();
+        Set<String> messages = new LinkedHashSet<>();
+        Set<Long> superseded = new HashSet<>();
+        if (inbox != null) {
+            synchronized (inbox) {
+                inbox.closed = true;
+                for (InboxEntry entry : inbox.summaries.values()) {
+                    if (entry.rowId != null) {
+                        superseded.add(entry.rowId);
+                    }
+                    TransactionSummary summary = entry.current();
+                    summaries.merge(summary.getKey(), summary, TransactionSummary::merge);
+                }
+                messages.addAll(inbox.knownMessages);
+            }
+        }
+        for (Map.Entry<Long, String> row : rows.entrySet()) {
+            if (superseded.contains(row.getKey())) {
+                // The in-memory summary is newer than the stored one
+                continue;
+            }
+            TransactionSummary summary = TransactionSummary.fromJson(row.getValue());
+            if (summary != null) {
+                summaries.merge(summary.getKey(), summary, TransactionSummary::merge);
+            } else {
+                messages.add(row.getValue());
+            }
+        }
+        List<TransactionSummary> sorted = new ArrayList<>(summaries.values());
+        sorted.sort(Comparator.comparing(TransactionSummary::isOverflow)
+                .thenComparing(Comparator.comparingLong(TransactionSummary::getLastTime).reversed()));
+        return new Digest(sorted, new ArrayList<>(messages));
+    }
+
+    private void sendDigest(@NotNull Player player, @NotNull Digest digest) {
+        int lines = 0;
+        int remaining = 0;
+        if (!digest.summaries().isEmpty()) {
+            int transactions = digest.summaries().stream().mapToInt(TransactionSummary::getTransactions).sum();
+            plugin.text().of(player, "offline-digest.header", transactions, digest.summaries().size()).send();
+            for (TransactionSummary summary : digest.summaries()) {
+                if (lines >= maxEntriesPerPlayer) {
+                    remaining++;
+                    continue;
+                }
+                plugin.getPlatform().sendMessage(player, renderSummary(player, summary));
+                lines++;
+            }
+        }
+        for (String message : digest.messages()) {
+            if (lines >= maxEntriesPerPlayer) {
+                remaining++;
+                continue;
+            }
+            plugin.getPlatform().sendMessage(player, GsonComponentSerializer.gson().deserialize(message));
+            lines++;
+        }
+        if (remaining > 0) {
+            plugin.text().of(player, "offline-digest.more", remaining).send();
+        }
+        Log.debug("Sent offline digest to " + player.getName() + ": " + digest.summaries().size() + " summaries, " + digest.messages().size() + " messages");
+    }
+
+    @NotNull
+    private Component renderSummary(@NotNull Player player, @NotNull TransactionSummary summary) {
+        String money = formatMoney(summary);
+        boolean selling = summary.getDirection() == ShopType.SELLING;
+        if (summary.isOverflow()) {
+            return plugin.text().of(player, selling ? "offline-digest.overflow-selling" : "offline-digest.overflow-buying",
+                    summary.getTransactions(), summary.getItems(), money).forLocale();
+        }
+        Component item = GsonComponentSerializer.gson().deserialize(summary.getItemName());
+        Component shop = summary.getShopName() != null ? Component.text(summary.getShopName())
+                : Component.text(summary.getWorld() + " " + summary.getX() + ", " + summary.getY() + ", " + summary.getZ());
+        return plugin.text().of(player, selling ? "offline-digest.entry-selling" : "offline-digest.entry-buying",
+                summary.getItems(), item, summary.getTransactions(), shop, money).forLocale();
+    }
+
+    @NotNull
+    private String formatMoney(@NotNull TransactionSummary summary) {
+        World world = Bukkit.getWorld(summary.getWorld());
+        if (world == null) {
+            return MsgUtil.decimalFormat(summary.getTotal());
+        }
+        return plugin.getShopManager().format(summary.getTotal(), world, summary.getCurrency());
+    }
+
+    /**
+     * Stop the background task and write all pending summaries to database
+     */
+    public void close() {
+        try {
+            cancel();
+        } catch (IllegalStateException ignored) {
+        }
+        run();
+        plugin.getPasteManager().unregister(plugin.getJavaPlugin(), this);
+    }
+
+    @Override
+    public ReloadResult reloadModule() throws Exception {
+        init();
+        return Reloadable.super.reloadModule();
+    }
+
+    @Override
+    public @NotNull String genBody() {
+        CacheStats stats = localeCache.stats();
+        HTMLTable table = new HTMLTable(2, true);
+        table.insert("Per-player Cap", maxEntriesPerPlayer);
+        table.insert("Inboxes In Memory", inboxes.size());
+        table.insert("Evicted Inboxes", evicted.size());
+        table.insert("Messages Received", received.get());
+        table.insert("Coalesced", coalesced.get());
+        table.insert("Overflowed", overflowed.get());
+        table.insert("Omitted", omitted.get());
+        table.insert("Rows Written", rowsWritten.get());
+        table.insert("Digests Sent", digestsSent.get());
+        table.insert("Locale Cache Hit Rate", String.format("%.2f%% (%d/%d)", stats.hitRate() * 100, stats.hitCount(), stats.requestCount()));
+        return table.render();
+    }
+
+    @Override
+    public @NotNull String getTitle() {
+        return "Offline Transaction Inbox";
+    }
+
+    private static class PlayerInbox {
+        private final Map<String, InboxEntry> summaries = new LinkedHashMap<>();
+        private final Set<String> knownMessages = new HashSet<>();
+        private final List<String> pendingMessages = new ArrayList<>();
+        private final StoredEntries stored;
+        private long lastAccess = System.currentTimeMillis();
+        private boolean closed;
+
+        private PlayerInbox(@Nullable StoredEntries stored) {
+            this.stored = stored == null ? new StoredEntries(Collections.emptySet(), 0) : stored;
+        }
+
+        private int size() {
+            int storedKeys = 0;
+            for (String key : stored.keys()) {
+                if (!summaries.containsKey(key)) {
+                    storedKeys++;
+                }
+            }
+            return summaries.size() + storedKeys + knownMessages.size() + stored.messages();
+        }
+
+        private boolean hasPending() {
+            if (!pendingMessages.isEmpty()) {
+                return true;
+            }
+            for (InboxEntry entry : summaries.values()) {
+                if (entry.pending != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @NotNull
+        private StoredEntries toStoredEntries() {
+            Set<String> keys = new HashSet<>(stored.keys());
+            keys.addAll(summaries.keySet());
+            return new StoredEntries(keys, stored.messages() + knownMessages.size());
+        }
+    }
+
+    private static class InboxEntry {
+        // The summary stored in the row, and the transactions not written yet
+        private volatile Long rowId;
+        @Nullable
+        private volatile TransactionSummary persisted;
+        @Nullable
+        private TransactionSummary pending;
+
+        private InboxEntry(@NotNull TransactionSummary summary) {
+            this.pending = summary;
+        }
+
+        @NotNull
+        private TransactionSummary current() {
+            TransactionSummary persisted = this.persisted;
+            if (persisted == null) {
+                //noinspection ConstantConditions
+                return pending.copy();
+            }
+            TransactionSummary current = persisted.copy();
+            return pending == null ? current : current.merge(pending);
+        }
+    }
+
+    /**
+     * The entries of an evicted inbox that still stored in database
+     *
+     * @param keys     The summary keys
+     * @param messages The count of the other messages
+     */
+    private record StoredEntries(@NotNull Set<String> keys, int messages) {
+        private boolean isEmpty() {
+            return keys.isEmpty() && messages == 0;
+        }
+    }
+
+    private record Digest(@NotNull List<TransactionSummary> summaries, @NotNull List<String> messages) {
+        private boolean isEmpty() {
+            return summaries.isEmpty() && messages.isEmpty();
+        }
+    }
+}
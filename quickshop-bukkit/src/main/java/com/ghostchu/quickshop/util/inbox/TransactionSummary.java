@@ -0,0 +1,198 @@
+package com.ghostchu.quickshop.util.inbox;
+
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.ShopType;
+import com.ghostchu.quickshop.common.util.JsonUtil;
+import com.ghostchu.quickshop.util.Util;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import lombok.Getter;
+import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A coalesced offline transaction record, all transactions for the same (shop, item, direction) are merged into one
+ * summary with counts and totals instead of one message per purchase.
+ * <p>
+ * Summaries are stored in the messages table as JSON, and told apart from the serialized components by the
+ * {@code inboxVersion} field.
+ */
+@Getter
+public class TransactionSummary {
+    private static final int FORMAT_VERSION = 1;
+    private static final long OVERFLOW_SHOP_ID = -1L;
+    private int inboxVersion = FORMAT_VERSION;
+    private long shopId;
+    private ShopType direction;
+    private int itemHash;
+    private String itemName;
+    @Nullable
+    private String shopName;
+    private String world;
+    private int x;
+    private int y;
+    private int z;
+    @Nullable
+    private String currency;
+    @Nullable
+    private String lastTrader;
+    private int transactions;
+    private long items;
+    private double total;
+    private double tax;
+    private long firstTime;
+    private long lastTime;
+
+    private TransactionSummary() {
+    }
+
+    /**
+     * Create a summary for a single transaction
+     *
+     * @param shop      The shop that traded
+     * @param direction The shop type when the transaction happened
+     * @param trader    The trader display name
+     * @param items     The amount of items traded
+     * @param total     The money the shop owner earned or paid
+     * @param tax       The tax of this transaction
+     * @return The summary
+     */
+    @NotNull
+    public static TransactionSummary of(@NotNull Shop shop, @NotNull ShopType direction, @Nullable String trader, long items, double total, double tax) {
+        TransactionSummary summary = new TransactionSummary();
+        Location location = shop.getLocation();
+        summary.shopId = shop.getShopId();
+        summary.direction = direction;
+        summary.itemHash = shop.getItem().hashCode();
+        summary.itemName = GsonComponentSerializer.gson().serialize(Util.getItemStackName(shop.getItem()));
+        summary.shopName = shop.getShopName();
+        summary.world = location.getWorld() == null ? "" : location.getWorld().getName();
+        summary.x = location.getBlockX();
+        summary.y = location.getBlockY();
+        summary.z = location.getBlockZ();
+        summary.currency = shop.getCurrency();
+        summary.lastTrader = trader;
+        summary.transactions = 1;
+        summary.items = items;
+        summary.total = total;
+        summary.tax = tax;
+        summary.firstTime = System.currentTimeMillis();
+        summary.lastTime = summary.firstTime;
+        return summary;
+    }
+
+    /**
+     * Parse a summary from the stored message content
+     *
+     * @param content The stored message content
+     * @return The summary, or null if the content is a regular message
+     */
+    @Nullable
+    public static TransactionSummary fromJson(@NotNull String content) {
+        try {
+            JsonElement element = JsonParser.parseString(content);
+            if (!element.isJsonObject() || !element.getAsJsonObject().has("inboxVersion")) {
+                return null;
+            }
+            return JsonUtil.getGson().fromJson(element, TransactionSummary.class);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    @NotNull
+    public String toJson() {
+        return JsonUtil.getGson().toJson(this);
+    }
+
+    /**
+     * The key used to coalesce the summaries, one key for each (shop, item, direction)
+     *
+     * @return The key
+     */
+    @NotNull
+    public String getKey() {
+        if (isOverflow()) {
+            return "overflow:" + direction.name() + ":" + currency;
+        }
+        return shopId + ":" + direction.name() + ":" + itemHash;
+    }
+
+    /**
+     * Gets if this summary collects the transactions of the shops which exceeded the per-player cap
+     *
+     * @return is overflow summary
+     */
+    public boolean isOverflow() {
+        return shopId == OVERFLOW_SHOP_ID;
+    }
+
+    /**
+     * Create a copy of this summary
+     *
+     * @return The copy
+     */
+    @NotNull
+    public TransactionSummary copy() {
+        TransactionSummary summary = new TransactionSummary();
+        summary.shopId = shopId;
+        summary.direction = direction;
+        summary.itemHash = itemHash;
+        summary.itemName = itemName;
+        summary.shopName = shopName;
+        summary.world = world;
+        summary.x = x;
+        summary.y = y;
+        summary.z = z;
+        summary.currency = currency;
+        summary.lastTrader = lastTrader;
+        summary.transactions = transactions;
+        summary.items = items;
+        summary.total = total;
+        summary.tax = tax;
+        summary.firstTime = firstTime;
+        summary.lastTime = lastTime;
+        return summary;
+    }
+
+    /**
+     * Create an overflow copy of this summary, which only keeps the direction, currency and totals
+     *
+     * @return The overflow summary
+     */
+    @NotNull
+    public TransactionSummary toOverflow() {
+        TransactionSummary summary = copy();
+        summary.shopId = OVERFLOW_SHOP_ID;
+        summary.itemHash = 0;
+        summary.shopName = null;
+        return summary;
+    }
+
+    /**
+     * Merge another summary with the same key into this summary
+     *
+     * @param other The other summary
+     * @return this
+     */
+    @NotNull
+    public TransactionSummary merge(@NotNull TransactionSummary other) {
+        this.transactions += other.transactions;
+        this.items += other.items;
+        this.total += other.total;
+        this.tax += other.tax;
+        this.firstTime = Math.min(this.firstTime, other.firstTime);
+        if (other.lastTime >= this.lastTime) {
+            this.lastTime = other.lastTime;
+            this.lastTrader = other.lastTrader;
+            if (!isOverflow()) {
+                this.shopName = other.shopName;
+                this.itemName = other.itemName;
+            }
+        }
+        return this;
+    }
+}
@@ -0,0 +1,302 @@
+package com.ghostchu.quickshop.util.journal;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A record in the shop journal.
+ * <p>
+ * Binary layout: every record is framed as length (int), CRC32 (int) and the body, so a record not fully written
+ * (or torn by a crash) is detected instead of being parsed as garbage.
+ * The body is type (byte), time (long), then the payload of the type.
+ * The shop position is written as world (string), x, y, z (int), strings are length (int) prefixed UTF-8,
+ * the full shop data is the data table row written as typed column values.
+ */
+@Getter
+public class JournalRecord {
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_INT = 2;
+    private static final byte VALUE_DOUBLE = 3;
+    private static final byte VALUE_BOOLEAN = 4;
+    private static final byte VALUE_DATE = 5;
+    private static final byte VALUE_LONG = 6;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+    private final Type type;
+    private final long time;
+    @Nullable
+    private final ShopPos pos;
+    private final long shopId;
+    private final double price;
+    @Nullable
+    private final String value;
+    @Nullable
+    private final Map<String, Object> data;
+    private final int count;
+
+    private JournalRecord(@NotNull Type type, long time, @Nullable ShopPos pos, long shopId, double price, @Nullable String value, @Nullable Map<String, Object> data, int count) {
+        this.type = type;
+        this.time = time;
+        this.pos = pos;
+        this.shopId = shopId;
+        this.price = price;
+        this.value = value;
+        this.data = data;
+        this.count = count;
+    }
+
+    /**
+     * A shop created, or the shop in snapshot
+     *
+     * @param pos    The shop position
+     * @param shopId The shop id
+     * @param data   The data table row of the shop
+     * @return The record
+     */
+    @NotNull
+    public static JournalRecord full(@NotNull ShopPos pos, long shopId, @NotNull Map<String, Object> data) {
+        return new JournalRecord(Type.FULL, System.currentTimeMillis(), pos, shopId, 0, null, data, 0);
+    }
+
+    @NotNull
+    public static JournalRecord delete(@NotNull ShopPos pos, long shopId) {
+        return new JournalRecord(Type.DELETE, System.currentTimeMillis(), pos, shopId, 0, null, null, 0);
+    }
+
+    @NotNull
+    public static JournalRecord price(@NotNull ShopPos pos, long shopId, double price) {
+        return new JournalRecord(Type.PRICE, System.currentTimeMillis(), pos, shopId, price, null, null, 0);
+    }
+
+    @NotNull
+    public static JournalRecord item(@NotNull ShopPos pos, long shopId, @NotNull String item) {
+        return new JournalRecord(Type.ITEM, System.currentTimeMillis(), pos, shopId, 0, item, null, 0);
+    }
+
+    @NotNull
+    public static JournalRecord owner(@NotNull ShopPos pos, long shopId, @NotNull String owner) {
+        return new JournalRecord(Type.OWNER, System.currentTimeMillis(), pos, shopId, 0, owner, null, 0);
+    }
+
+    @NotNull
+    public static JournalRecord snapshotBegin(long time, int count) {
+        return new JournalRecord(Type.SNAPSHOT_BEGIN, time, null, 0, 0, null, null, count);
+    }
+
+    @NotNull
+    public static JournalRecord snapshotEnd(long time) {
+        return new JournalRecord(Type.SNAPSHOT_END, time, null, 0, 0, null, null, 0);
+    }
+
+    /**
+     * Read a record
+     *
+     * @param in The input
+     * @return The record
+     * @throws IOException Broken record, EOFException if the journal ended (or truncated)
+     */
+    @NotNull
+    public static JournalRecord read(@NotNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_RECORD_LENGTH) {
+            throw new EOFException("Torn journal record with length " + length);
+        }
+        int checksum = in.readInt();
+        byte[] body = new byte[length];
+        in.readFully(body);
+        if (checksum(body) != checksum) {
+            throw new EOFException("Torn journal record, checksum mismatch");
+        }
+        DataInputStream bodyIn = new DataInputStream(new ByteArrayInputStream(body));
+        JournalRecord record = readBody(bodyIn);
+        if (bodyIn.available() != 0) {
+            throw new InvalidObjectException("Journal record " + record.getType() + " has " + bodyIn.available() + " unread bytes");
+        }
+        return record;
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    @NotNull
+    private static JournalRecord readBody(@NotNull DataInputStream in) throws IOException {
+        byte typeId = in.readByte();
+        if (typeId < 0 || typeId >= Type.values().length) {
+            throw new InvalidObjectException("Unknown journal record type " + typeId);
+        }
+        Type type = Type.values()[typeId];
+        long time = in.readLong();
+        return switch (type) {
+            case SNAPSHOT_BEGIN -> new JournalRecord(type, time, null, 0, 0, null, null, in.readInt());
+            case SNAPSHOT_END -> new JournalRecord(type, time, null, 0, 0, null, null, 0);
+            case FULL -> {
+                ShopPos pos = readPos(in);
+                long shopId = in.readLong();
+                int size = in.readShort();
+                Map<String, Object> data = new LinkedHashMap<>(size);
+                for (int i = 0; i < size; i++) {
+                    data.put(readString(in), readValue(in));
+                }
+                yield new JournalRecord(type, time, pos, shopId, 0, null, data, 0);
+            }
+            case DELETE -> new JournalRecord(type, time, readPos(in), in.readLong(), 0, null, null, 0);
+            case PRICE -> new JournalRecord(type, time, readPos(in), in.readLong(), in.readDouble(), null, null, 0);
+            case ITEM, OWNER -> new JournalRecord(type, time, readPos(in), in.readLong(), 0, readString(in), null, 0);
+        };
+    }
+
+    @NotNull
+    private static ShopPos readPos(@NotNull DataInputStream in) throws IOException {
+        return new ShopPos(readString(in), in.readInt(), in.readInt(), in.readInt());
+    }
+
+    @Nullable
+    private static Object readValue(@NotNull DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case VALUE_NULL -> null;
+            case VALUE_STRING -> readString(in);
+            case VALUE_INT -> in.readInt();
+            case VALUE_DOUBLE -> in.readDouble();
+            case VALUE_BOOLEAN -> in.readBoolean();
+            case VALUE_DATE -> new Date(in.readLong());
+            case VALUE_LONG -> in.readLong();
+            default -> throw new InvalidObjectException("Unknown journal value type " + tag);
+        };
+    }
+
+    @NotNull
+    private static String readString(@NotNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new InvalidObjectException("Negative string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(@NotNull DataOutputStream out, @NotNull String str) throws IOException {
+        // writeUTF is limited to 64KB, the items may be larger than that
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeValue(@NotNull DataOutputStream out, @Nullable Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String str) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, str);
+        } else if (value instanceof Integer i) {
+            out.writeByte(VALUE_INT);
+            out.writeInt(i);
+        } else if (value instanceof Double d) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(d);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof Date date) {
+            out.writeByte(VALUE_DATE);
+            out.writeLong(date.getTime());
+        } else if (value instanceof Long l) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong(l);
+        } else {
+            out.writeByte(VALUE_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private void writePos(@NotNull DataOutputStream out) throws IOException {
+        //noinspection ConstantConditions
+        writeString(out, pos.world());
+        out.writeInt(pos.x());
+        out.writeInt(pos.y());
+        out.writeInt(pos.z());
+    }
+
+    /**
+     * Write the record
+     *
+     * @param out The output
+     * @return The bytes written
+     * @throws IOException Failed to write
+     */
+    public int write(@NotNull DataOutputStream out) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        writeBody(new DataOutputStream(buffer));
+        byte[] body = buffer.toByteArray();
+        out.writeInt(body.length);
+        out.writeInt(checksum(body));
+        out.write(body);
+        return body.length + 8;
+    }
+
+    private void writeBody(@NotNull DataOutputStream out) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeLong(time);
+        switch (type) {
+            case SNAPSHOT_BEGIN -> out.writeInt(count);
+            case SNAPSHOT_END -> {
+            }
+            case FULL -> {
+                writePos(out);
+                out.writeLong(shopId);
+                //noinspection ConstantConditions
+                out.writeShort(data.size());
+                for (Map.Entry<String, Object> entry : data.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+            case DELETE -> {
+                writePos(out);
+                out.writeLong(shopId);
+            }
+            case PRICE -> {
+                writePos(out);
+                out.writeLong(shopId);
+                out.writeDouble(price);
+            }
+            case ITEM, OWNER -> {
+                writePos(out);
+                out.writeLong(shopId);
+                //noinspection ConstantConditions
+                writeString(out, value);
+            }
+        }
+    }
+
+    /**
+     * The record types, the ordinal is written into the journal, append only.
+     */
+    public enum Type {
+        SNAPSHOT_BEGIN,
+        SNAPSHOT_END,
+        FULL,
+        DELETE,
+        PRICE,
+        ITEM,
+        OWNER
+    }
+
+    /**
+     * The shop block position
+     */
+    public record ShopPos(@NotNull String world, int x, int y, int z) {
+    }
+}
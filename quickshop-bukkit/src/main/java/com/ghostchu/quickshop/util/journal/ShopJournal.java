@@ -0,0 +1,395 @@
+package com.ghostchu.quickshop.util.journal;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.event.*;
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.shop.ContainerShop;
+import com.ghostchu.quickshop.util.Util;
+import com.ghostchu.quickshop.util.logger.Log;
+import com.ghostchu.quickshop.util.paste.item.SubPasteItem;
+import com.ghostchu.quickshop.util.paste.util.HTMLTable;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The append-only shop journal.
+ * <p>
+ * Shop mutations (create, delete, price, item and owner) are appended as compact binary {@link JournalRecord}s
+ * by a background writer thread, the file is synced to disk in batches instead of every record.
+ * A new journal file is started periodically with a snapshot of all shops at the beginning, so reconstructing the
+ * shops at any point only reads one file. See {@link ShopJournalReplayer}.
+ * <p>
+ * The snapshot rows are built on the main thread (in chunks, the shops are not thread-safe), the writer thread only
+ * serializes the records and syncs the file.
+ */
+public class ShopJournal implements Listener, SubPasteItem {
+    public static final String FILE_PREFIX = "journal-";
+    public static final String FILE_SUFFIX = ".qsj";
+    public static final int MAGIC = 0x51534A32; // QSJ2
+    private static final int SNAPSHOT_CHUNK_SIZE = 500;
+    private static final Object STOP = new Object();
+    private final QuickShop plugin;
+    private final File folder;
+    private final long snapshotIntervalMillis;
+    private final long retentionMillis;
+    private final long syncIntervalMillis;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong recordsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+    // The shops deleted while the snapshot being built, main thread only
+    private final Set<Shop> deletedDuringSnapshot = Collections.newSetFromMap(new IdentityHashMap<>());
+    private volatile boolean closed;
+    private Thread writerThread;
+    @Nullable
+    private FileOutputStream fileOut;
+    @Nullable
+    private DataOutputStream out;
+    private long segmentStart;
+    private long lastSync;
+    private boolean unsynced;
+
+    public ShopJournal(@NotNull QuickShop plugin, @NotNull File folder, int snapshotIntervalHours, int retentionDays, int syncIntervalMillis) {
+        this.plugin = plugin;
+        this.folder = folder;
+        this.snapshotIntervalMillis = TimeUnit.HOURS.toMillis(Math.max(1, snapshotIntervalHours));
+        this.retentionMillis = TimeUnit.DAYS.toMillis(Math.max(0, retentionDays));
+        this.syncIntervalMillis = Math.max(50, syncIntervalMillis);
+    }
+
+    /**
+     * Start the writer thread, a snapshot will be taken at first.
+     */
+    public void start() {
+        if (!folder.exists() && !folder.mkdirs()) {
+            plugin.logger().warn("Failed to create the shop journal folder {}", folder);
+        }
+        writerThread = new Thread(this::writeLoop, "QuickShop-Hikari Shop Journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        requestSnapshot();
+        Bukkit.getPluginManager().registerEvents(this, plugin.getJavaPlugin());
+        plugin.getPasteManager().register(plugin.getJavaPlugin(), this);
+    }
+
+    /**
+     * Stop the writer thread, the pending records will be written and synced.
+     */
+    public void close() {
+        closed = true;
+        HandlerList.unregisterAll(this);
+        plugin.getPasteManager().unregister(plugin.getJavaPlugin(), this);
+        if (writerThread == null) {
+            return;
+        }
+        queue.add(STOP);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+    }
+
+    /**
+     * Start a new journal file with a snapshot of all shops, can be called from any thread.
+     * Nothing happens if a snapshot is being built.
+     */
+    public void requestSnapshot() {
+        if (closed || !snapshotPending.compareAndSet(false, true)) {
+            return;
+        }
+        Util.mainThreadRun(() -> {
+            long now = System.currentTimeMillis();
+            List<Shop> shops = new ArrayList<>(plugin.getShopManager().getAllShops());
+            deletedDuringSnapshot.clear();
+            queue.add(JournalRecord.snapshotBegin(now, shops.size()));
+            buildSnapshot(now, shops, 0);
+        });
+    }
+
+    /**
+     * Build the snapshot rows of a chunk of shops on the main thread, then continue at the next tick.
+     * The records appended between the chunks are still in order, a change of a shop not snapshot yet
+     * is covered by its row built later.
+     */
+    private void buildSnapshot(long time, @NotNull List<Shop> shops, int from) {
+        if (closed) {
+            snapshotPending.set(false);
+            return;
+        }
+        int to = Math.min(shops.size(), from + SNAPSHOT_CHUNK_SIZE);
+        for (int i = from; i < to; i++) {
+            Shop shop = shops.get(i);
+            if (deletedDuringSnapshot.contains(shop)) {
+                continue;
+            }
+            JournalRecord record = full(shop);
+            if (record != null) {
+                queue.add(record);
+            }
+        }
+        if (to < shops.size()) {
+            Bukkit.getScheduler().runTask(plugin.getJavaPlugin(), () -> buildSnapshot(time, shops, to));
+            return;
+        }
+        deletedDuringSnapshot.clear();
+        // Reset before the end record, so the writer can request another one if this snapshot failed
+        snapshotPending.set(false);
+        queue.add(JournalRecord.snapshotEnd(time));
+    }
+
+    /**
+     * Append a record, can be called from any thread
+     *
+     * @param record The record
+     */
+    public void append(@NotNull JournalRecord record) {
+        queue.add(record);
+    }
+
+    @NotNull
+    public File getFolder() {
+        return folder;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            try {
+                Object next = queue.poll(syncIntervalMillis, TimeUnit.MILLISECONDS);
+                if (next == STOP) {
+                    closeSegment();
+                    return;
+                }
+                if (next instanceof JournalRecord record) {
+                    switch (record.getType()) {
+                        case SNAPSHOT_BEGIN -> beginSegment(record);
+                        case SNAPSHOT_END -> endSnapshot(record);
+                        default -> write(record);
+                    }
+                }
+                if (unsynced && System.currentTimeMillis() - lastSync >= syncIntervalMillis) {
+                    sync();
+                }
+            } catch (InterruptedException e) {
+                closeSegment();
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable th) {
+                plugin.logger().warn("Failed to write the shop journal, starting a new journal file", th);
+                closeSegment();
+                requestSnapshot();
+            }
+        }
+    }
+
+    private void write(@NotNull JournalRecord record) throws IOException {
+        if (out == null) {
+            // No journal file (failed before), the snapshot built later covers this change
+            requestSnapshot();
+            return;
+        }
+        if (record.getType() != JournalRecord.Type.FULL && System.currentTimeMillis() - segmentStart >= snapshotIntervalMillis) {
+            requestSnapshot();
+        }
+        bytesWritten.addAndGet(record.write(out));
+        recordsWritten.incrementAndGet();
+        unsynced = true;
+    }
+
+    private void sync() throws IOException {
+        if (out == null || fileOut == null) {
+            return;
+        }
+        out.flush();
+        fileOut.getChannel().force(false);
+        syncs.incrementAndGet();
+        lastSync = System.currentTimeMillis();
+        unsynced = false;
+    }
+
+    private void closeSegment() {
+        if (out == null) {
+            return;
+        }
+        try {
+            sync();
+            out.close();
+        } catch (IOException e) {
+            plugin.logger().warn("Failed to close the shop journal file", e);
+        }
+        out = null;
+        fileOut = null;
+    }
+
+    private void beginSegment(@NotNull JournalRecord begin) throws IOException {
+        closeSegment();
+        long start = begin.getTime();
+        File file = new File(folder, FILE_PREFIX + start + FILE_SUFFIX);
+        fileOut = new FileOutputStream(file, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+        segmentStart = start;
+        out.writeInt(MAGIC);
+        out.writeLong(start);
+        write(begin);
+    }
+
+    private void endSnapshot(@NotNull JournalRecord end) throws IOException {
+        if (out == null) {
+            // The journal file failed during the snapshot
+            requestSnapshot();
+            return;
+        }
+        write(end);
+        sync();
+        snapshots.incrementAndGet();
+        Log.debug("Shop journal snapshot written to " + FILE_PREFIX + segmentStart + FILE_SUFFIX);
+        purgeExpired();
+    }
+
+    private void purgeExpired() {
+        if (retentionMillis <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (Segment segment : listSegments(folder)) {
+            // Never delete the current file
+            if (segment.start() < cutoff && segment.start() != segmentStart) {
+                try {
+                    Files.deleteIfExists(segment.file().toPath());
+                } catch (IOException e) {
+                    plugin.logger().warn("Failed to delete the expired shop journal file {}", segment.file().getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * List the journal files in the folder, sorted by the start time
+     *
+     * @param folder The journal folder
+     * @return The journal files
+     */
+    @NotNull
+    public static List<Segment> listSegments(@NotNull File folder) {
+        File[] files = folder.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<Segment> segments = new ArrayList<>(files.length);
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                segments.add(new Segment(Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())), file));
+            } catch (NumberFormatException e) {
+                Log.debug("Ignoring the unrecognized shop journal file " + name);
+            }
+        }
+        segments.sort(Comparator.comparingLong(Segment::start));
+        return segments;
+    }
+
+    @Nullable
+    private static JournalRecord.ShopPos pos(@NotNull Shop shop) {
+        Location loc = shop.getLocation();
+        if (loc.getWorld() == null) {
+            return null;
+        }
+        return new JournalRecord.ShopPos(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    }
+
+    @Nullable
+    private static JournalRecord full(@NotNull Shop shop) {
+        JournalRecord.ShopPos pos = pos(shop);
+        if (pos == null || !(shop instanceof ContainerShop containerShop)) {
+            return null;
+        }
+        return JournalRecord.full(pos, shop.getShopId(), containerShop.createDataRecord().generateParams());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onCreate(ShopCreateSuccessEvent event) {
+        JournalRecord record = full(event.getShop());
+        if (record != null) {
+            append(record);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDelete(ShopDeleteEvent event) {
+        if (snapshotPending.get()) {
+            deletedDuringSnapshot.add(event.getShop());
+        }
+        JournalRecord.ShopPos pos = pos(event.getShop());
+        if (pos != null) {
+            append(JournalRecord.delete(pos, event.getShop().getShopId()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPrice(ShopPriceChangeEvent event) {
+        JournalRecord.ShopPos pos = pos(event.getShop());
+        if (pos != null) {
+            append(JournalRecord.price(pos, event.getShop().getShopId(), event.getNewPrice()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItem(ShopItemChangeEvent event) {
+        JournalRecord.ShopPos pos = pos(event.getShop());
+        if (pos != null) {
+            append(JournalRecord.item(pos, event.getShop().getShopId(), Util.serialize(event.getNewItem())));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onOwner(ShopOwnershipTransferEvent event) {
+        JournalRecord.ShopPos pos = pos(event.getShop());
+        if (pos != null) {
+            append(JournalRecord.owner(pos, event.getShop().getShopId(), event.getNewOwner().serialize()));
+        }
+    }
+
+    @Override
+    public @NotNull String genBody() {
+        HTMLTable table = new HTMLTable(2, true);
+        table.insert("Current File Started", segmentStart == 0 ? "N/A" : new Date(segmentStart).toString());
+        table.insert("Pending Records", queue.size());
+        table.insert("Records Written", recordsWritten.get());
+        table.insert("Bytes Written", bytesWritten.get());
+        table.insert("Syncs", syncs.get());
+        table.insert("Snapshots", snapshots.get());
+        return table.render();
+    }
+
+    @Override
+    public @NotNull String getTitle() {
+        return "Shop Journal";
+    }
+
+    /**
+     * A journal file
+     *
+     * @param start The time the journal file started (and the snapshot taken)
+     * @param file  The file
+     */
+    public record Segment(long start, @NotNull File file) {
+    }
+}
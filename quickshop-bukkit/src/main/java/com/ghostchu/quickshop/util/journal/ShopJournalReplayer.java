@@ -0,0 +1,247 @@
+package com.ghostchu.quickshop.util.journal;
+
+import cc.carm.lib.easysql.api.SQLManager;
+import com.ghostchu.quickshop.database.DataTables;
+import com.ghostchu.quickshop.util.logger.Log;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.sql.*;
+import java.util.Date;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Reconstruct the shops at a point in time from the shop journal, and restore them into database.
+ */
+public class ShopJournalReplayer {
+    private final File folder;
+
+    public ShopJournalReplayer(@NotNull File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Reconstruct the shops at the given time.
+     * The newest journal file started before the time with a complete snapshot will be used.
+     *
+     * @param time The time
+     * @return The shops data table rows by the position, or null if no journal file covers the time
+     * @throws IOException Failed to read the journal
+     */
+    @Nullable
+    public Map<JournalRecord.ShopPos, Map<String, Object>> replay(long time) throws IOException {
+        List<ShopJournal.Segment> segments = ShopJournal.listSegments(folder);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            ShopJournal.Segment segment = segments.get(i);
+            if (segment.start() > time) {
+                continue;
+            }
+            Map<JournalRecord.ShopPos, Map<String, Object>> states = replay(segment, time);
+            if (states != null) {
+                return states;
+            }
+            Log.debug("Shop journal file " + segment.file().getName() + " has no complete snapshot, trying the previous one");
+        }
+        return null;
+    }
+
+    @Nullable
+    private Map<JournalRecord.ShopPos, Map<String, Object>> replay(@NotNull ShopJournal.Segment segment, long time) throws IOException {
+        Map<JournalRecord.ShopPos, Map<String, Object>> states = new HashMap<>();
+        boolean snapshotCompleted = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file()), 64 * 1024))) {
+            if (in.readInt() != ShopJournal.MAGIC) {
+                Log.debug("Skipping the shop journal file " + segment.file().getName() + " with unknown format");
+                return null;
+            }
+            in.readLong(); // start time
+            while (true) {
+                JournalRecord record;
+                try {
+                    record = JournalRecord.read(in);
+                } catch (EOFException e) {
+                    // End of the journal, or the last record was not fully written (checked by the record frame)
+                    if (e.getMessage() != null) {
+                        Log.debug("Shop journal file " + segment.file().getName() + " ends with a torn record: " + e.getMessage());
+                    }
+                    break;
+                }
+                if (record.getType() == JournalRecord.Type.SNAPSHOT_END) {
+                    snapshotCompleted = true;
+                    continue;
+                }
+                // The snapshot is the base state, only the changes after it are filtered by time
+                if (snapshotCompleted && record.getTime() > time) {
+                    continue;
+                }
+                apply(states, record);
+            }
+        }
+        return snapshotCompleted ? states : null;
+    }
+
+    private void apply(@NotNull Map<JournalRecord.ShopPos, Map<String, Object>> states, @NotNull JournalRecord record) {
+        if (record.getPos() == null) {
+            return;
+        }
+        switch (record.getType()) {
+            case FULL -> //noinspection ConstantConditions
+                    states.put(record.getPos(), new LinkedHashMap<>(record.getData()));
+            case DELETE -> states.remove(record.getPos());
+            case PRICE -> update(states, record, "price", record.getPrice());
+            case ITEM -> update(states, record, "item", record.getValue());
+            case OWNER -> update(states, record, "owner", record.getValue());
+            default -> {
+            }
+        }
+    }
+
+    private void update(@NotNull Map<JournalRecord.ShopPos, Map<String, Object>> states, @NotNull JournalRecord record, @NotNull String column, @Nullable Object value) {
+        Map<String, Object> data = states.get(record.getPos());
+        if (data == null) {
+            Log.debug("Shop journal record " + record.getType() + " references unknown shop at " + record.getPos());
+            return;
+        }
+        data.put(column, value);
+    }
+
+    /**
+     * Restore the shops in a region to the reconstructed states in one transaction.
+     * The shops not exists at the time will be removed, the others will be created or pointed to the restored data.
+     *
+     * @param manager The SQLManager
+     * @param states  The reconstructed states, see {@link #replay(long)}
+     * @param world   The world name
+     * @param minX    The min block x
+     * @param minZ    The min block z
+     * @param maxX    The max block x
+     * @param maxZ    The max block z
+     * @param dryRun  Only count the changes without writing
+     * @return The result
+     * @throws SQLException Failed to restore, nothing changed
+     */
+    @NotNull
+    public RestoreResult restore(@NotNull SQLManager manager, @NotNull Map<JournalRecord.ShopPos, Map<String, Object>> states, @NotNull String world, int minX, int minZ, int maxX, int maxZ, boolean dryRun) throws SQLException {
+        Map<JournalRecord.ShopPos, Map<String, Object>> targets = new LinkedHashMap<>();
+        states.forEach((pos, data) -> {
+            if (pos.world().equals(world) && pos.x() >= minX && pos.x() <= maxX && pos.z() >= minZ && pos.z() <= maxZ) {
+                targets.put(pos, data);
+            }
+        });
+        try (Connection connection = manager.getConnection()) {
+            Map<JournalRecord.ShopPos, Long> current = new HashMap<>();
+            try (PreparedStatement select = connection.prepareStatement("SELECT `x`, `y`, `z`, `shop` FROM `" + DataTables.SHOP_MAP.getName()
+                    + "` WHERE `world` = ? AND `x` BETWEEN ? AND ? AND `z` BETWEEN ? AND ?")) {
+                select.setString(1, world);
+                select.setInt(2, minX);
+                select.setInt(3, maxX);
+                select.setInt(4, minZ);
+                select.setInt(5, maxZ);
+                try (ResultSet set = select.executeQuery()) {
+                    while (set.next()) {
+                        current.put(new JournalRecord.ShopPos(world, set.getInt("x"), set.getInt("y"), set.getInt("z")), set.getLong("shop"));
+                    }
+                }
+            }
+            List<JournalRecord.ShopPos> removing = current.keySet().stream().filter(pos -> !targets.containsKey(pos)).toList();
+            int updating = (int) targets.keySet().stream().filter(current::containsKey).count();
+            RestoreResult result = new RestoreResult(targets.size() - updating, updating, removing.size());
+            if (dryRun || targets.isEmpty() && removing.isEmpty()) {
+                return result;
+            }
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                removeShops(connection, current, removing);
+                writeShops(connection, current, targets);
+                connection.commit();
+                return result;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void removeShops(@NotNull Connection connection, @NotNull Map<JournalRecord.ShopPos, Long> current, @NotNull List<JournalRecord.ShopPos> removing) throws SQLException {
+        try (PreparedStatement deleteMap = connection.prepareStatement("DELETE FROM `" + DataTables.SHOP_MAP.getName() + "` WHERE `world` = ? AND `x` = ? AND `y` = ? AND `z` = ?");
+             PreparedStatement deleteShop = connection.prepareStatement("DELETE FROM `" + DataTables.SHOPS.getName() + "` WHERE `id` = ?")) {
+            for (JournalRecord.ShopPos pos : removing) {
+                deleteMap.setString(1, pos.world());
+                deleteMap.setInt(2, pos.x());
+                deleteMap.setInt(3, pos.y());
+                deleteMap.setInt(4, pos.z());
+                deleteMap.addBatch();
+                deleteShop.setLong(1, current.get(pos));
+                deleteShop.addBatch();
+            }
+            deleteMap.executeBatch();
+            deleteShop.executeBatch();
+        }
+    }
+
+    private void writeShops(@NotNull Connection connection, @NotNull Map<JournalRecord.ShopPos, Long> current, @NotNull Map<JournalRecord.ShopPos, Map<String, Object>> targets) throws SQLException {
+        if (targets.isEmpty()) {
+            return;
+        }
+        // The data rows are referenced by the logs, always insert the new rows instead of updating
+        List<String> columns = new ArrayList<>(targets.values().iterator().next().keySet());
+        String insertDataSql = "INSERT INTO `" + DataTables.DATA.getName() + "` (" + columns.stream().map(c -> "`" + c + "`").collect(Collectors.joining(", "))
+                + ") VALUES (" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        try (PreparedStatement insertData = connection.prepareStatement(insertDataSql, Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement updateShop = connection.prepareStatement("UPDATE `" + DataTables.SHOPS.getName() + "` SET `data` = ? WHERE `id` = ?");
+             PreparedStatement insertShop = connection.prepareStatement("INSERT INTO `" + DataTables.SHOPS.getName() + "` (`data`) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement insertMap = connection.prepareStatement("INSERT INTO `" + DataTables.SHOP_MAP.getName() + "` (`world`, `x`, `y`, `z`, `shop`) VALUES (?, ?, ?, ?, ?)")) {
+            for (Map.Entry<JournalRecord.ShopPos, Map<String, Object>> target : targets.entrySet()) {
+                int index = 1;
+                for (String column : columns) {
+                    Object value = target.getValue().get(column);
+                    insertData.setObject(index++, value instanceof Date date ? new Timestamp(date.getTime()) : value);
+                }
+                insertData.executeUpdate();
+                long dataId = generatedKey(insertData);
+                JournalRecord.ShopPos pos = target.getKey();
+                Long shopId = current.get(pos);
+                if (shopId != null) {
+                    updateShop.setLong(1, dataId);
+                    updateShop.setLong(2, shopId);
+                    updateShop.addBatch();
+                    continue;
+                }
+                insertShop.setLong(1, dataId);
+                insertShop.executeUpdate();
+                insertMap.setString(1, pos.world());
+                insertMap.setInt(2, pos.x());
+                insertMap.setInt(3, pos.y());
+                insertMap.setInt(4, pos.z());
+                insertMap.setLong(5, generatedKey(insertShop));
+                insertMap.addBatch();
+            }
+            updateShop.executeBatch();
+            insertMap.executeBatch();
+        }
+    }
+
+    private long generatedKey(@NotNull PreparedStatement statement) throws SQLException {
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            if (!keys.next()) {
+                throw new SQLException("No generated key returned");
+            }
+            return keys.getLong(1);
+        }
+    }
+
+    /**
+     * The restore result
+     *
+     * @param created The shops created
+     * @param updated The shops restored to the old data
+     * @param removed The shops removed
+     */
+    public record RestoreResult(int created, int updated, int removed) {
+    }
+}
@@ -1,8 +1,11 @@
 package com.ghostchu.quickshop.util.paste.item;
 
 import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.economy.AbstractEconomy;
+import com.ghostchu.quickshop.shop.ContainerShop;
 import com.ghostchu.quickshop.util.FastPlayerFinder;
 import com.ghostchu.quickshop.util.paste.GuavaCacheRender;
+import com.ghostchu.quickshop.util.paste.util.HTMLTable;
 import com.google.common.cache.CacheStats;
 import org.jetbrains.annotations.NotNull;
 
@@ -18,7 +21,39 @@ public class CachePerformanceItem implements SubPasteItem {
                 "<h5>Player Lookup Cache</h5>" +
                 buildPlayerLookupCache() +
                 "<h5>QUser Reuse Memory Cache</h5>" +
-                buildQUserReuseCache();
+                buildQUserReuseCache() +
+                "<h5>Platform Item Prototype Cache</h5>" +
+                renderTable(plugin.getPlatform().getPlatformCache().getPrototypeStats()) +
+                "<h5>Economy Balance Snapshot</h5>" +
+                buildBalanceSnapshot() +
+                "<h5>Shop Sign Lines Cache</h5>" +
+                buildSignLinesCache();
+    }
+
+    @NotNull
+    private String buildSignLinesCache() {
+        HTMLTable table = new HTMLTable(2, true);
+        table.insert("Hit Rate", round(ContainerShop.getSignCacheHitRate() * 100) + "%");
+        table.insert("Hit Count", String.valueOf(ContainerShop.getSignCacheHits()));
+        table.insert("Miss Count", String.valueOf(ContainerShop.getSignCacheMisses()));
+        return table.render();
+    }
+
+    @NotNull
+    private String buildBalanceSnapshot() {
+        AbstractEconomy economy = plugin.getEconomy();
+        if (economy == null || !economy.isBalanceSnapshotEnabled()) {
+            return "<p>Economy Balance Snapshot disabled.</p>";
+        }
+        AbstractEconomy.BalanceSnapshotStats stats = economy.getBalanceSnapshotStats();
+        HTMLTable table = new HTMLTable(2, true);
+        table.insert("Hit Rate", round(stats.hitRate() * 100) + "%");
+        table.insert("Hit Count", String.valueOf(stats.hits()));
+        table.insert("Miss Count", String.valueOf(stats.misses()));
+        table.insert("Invalidation Count", String.valueOf(stats.invalidations()));
+        table.insert("Verified Samples", String.valueOf(stats.verified()));
+        table.insert("Mismatched Samples", String.valueOf(stats.mismatches()));
+        return table.render();
     }
 
     private String buildQUserReuseCache() {
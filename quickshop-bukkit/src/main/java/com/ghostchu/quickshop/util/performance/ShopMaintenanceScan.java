@@ -0,0 +1,248 @@
+package com.ghostchu.quickshop.util.performance;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.api.shop.Shop;
+import com.ghostchu.quickshop.api.shop.ShopChunk;
+import com.ghostchu.quickshop.common.util.CommonUtil;
+import com.ghostchu.quickshop.obj.QUserImpl;
+import com.ghostchu.quickshop.util.logger.Log;
+import com.ghostchu.quickshop.util.logging.container.ShopRemoveLog;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Scans all shops for the maintenance commands, the shops are walked chunk by chunk in tick-budgeted slices
+ * on the main thread.
+ * <p>
+ * A chunk that not loaded will never be loaded by the scan, the rules that require the chunk loaded
+ * are skipped for the shops in it. The matched shops are removed (or only listed in dry-run mode) and the
+ * progress is reported to the sender periodically.
+ */
+public class ShopMaintenanceScan {
+    private static final long PROGRESS_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private final QuickShop plugin;
+    private final CommandSender sender;
+    private final String source;
+    private final boolean dryRun;
+    private final List<Rule> rules = new ArrayList<>();
+    private int maxTickMsUsage = 5;
+    @Nullable
+    private BiConsumer<Shop, Rule> removeCallback;
+    private boolean started = false;
+
+    /**
+     * Create a maintenance scan
+     *
+     * @param plugin The plugin instance
+     * @param sender The sender to report the progress to
+     * @param source The source recorded in the shop remove logs, e.g. the command
+     * @param dryRun Only list the matched shops without removing them
+     */
+    public ShopMaintenanceScan(@NotNull QuickShop plugin, @NotNull CommandSender sender, @NotNull String source, boolean dryRun) {
+        this.plugin = plugin;
+        this.sender = sender;
+        this.source = source;
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Add a rule, the shop will be matched by the first rule that returns true.
+     * The predicate throwing IllegalStateException is treated as matched, the shop is not there anymore.
+     *
+     * @param reason        The reason shown to the sender
+     * @param chunkRequired The rule touches the shop block or container, and only runs when the shop chunk is loaded
+     * @param predicate     The predicate
+     * @return this
+     */
+    @NotNull
+    public ShopMaintenanceScan addRule(@NotNull String reason, boolean chunkRequired, @NotNull Predicate<Shop> predicate) {
+        if (started) {
+            throw new IllegalStateException("This scan has been started");
+        }
+        rules.add(new Rule(reason, chunkRequired, predicate));
+        return this;
+    }
+
+    /**
+     * Sets the callback called before a matched shop being removed, not called in dry-run mode
+     *
+     * @param removeCallback The callback with the shop and the matched rule
+     * @return this
+     */
+    @NotNull
+    public ShopMaintenanceScan onRemove(@NotNull BiConsumer<Shop, Rule> removeCallback) {
+        if (started) {
+            throw new IllegalStateException("This scan has been started");
+        }
+        this.removeCallback = removeCallback;
+        return this;
+    }
+
+    /**
+     * Sets the max time can be used in each tick
+     *
+     * @param maxTickMsUsage The max time in milliseconds
+     * @return this
+     */
+    @NotNull
+    public ShopMaintenanceScan maxTickMsUsage(int maxTickMsUsage) {
+        if (started) {
+            throw new IllegalStateException("This scan has been started");
+        }
+        this.maxTickMsUsage = maxTickMsUsage;
+        return this;
+    }
+
+    /**
+     * Start the scan, must be called on the main thread.
+     *
+     * @return The future completed with the scan result on the main thread
+     */
+    @NotNull
+    public CompletableFuture<Result> start() {
+        if (started) {
+            throw new IllegalStateException("This scan has been started");
+        }
+        started = true;
+        Queue<ChunkPos> chunks = new ArrayDeque<>();
+        int total = 0;
+        for (Map.Entry<String, Map<ShopChunk, Map<Location, Shop>>> world : plugin.getShopManager().getShops().entrySet()) {
+            for (Map.Entry<ShopChunk, Map<Location, Shop>> chunk : world.getValue().entrySet()) {
+                chunks.add(new ChunkPos(world.getKey(), chunk.getKey().getX(), chunk.getKey().getZ()));
+                total += chunk.getValue().size();
+            }
+        }
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        new ScanTask(chunks, total, future).runTaskTimer(plugin.getJavaPlugin(), 1L, 1L);
+        return future;
+    }
+
+    @Nullable
+    private Rule match(@NotNull Shop shop, boolean chunkLoaded) {
+        for (Rule rule : rules) {
+            if (rule.chunkRequired() && !chunkLoaded) {
+                continue;
+            }
+            try {
+                if (rule.predicate().test(shop)) {
+                    return rule;
+                }
+            } catch (IllegalStateException e) {
+                Log.debug("Shop " + shop + " failed the maintenance rule " + rule.reason() + ": " + e.getMessage());
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private void handle(@NotNull Shop shop, @NotNull Rule rule) {
+        if (dryRun) {
+            Location loc = shop.getLocation();
+            plugin.text().of(sender, "maintenance-scan.dry-run-entry", shop.getShopId(),
+                    loc.getWorld() == null ? "unloaded" : loc.getWorld().getName(),
+                    loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), rule.reason()).send();
+            return;
+        }
+        if (removeCallback != null) {
+            removeCallback.accept(shop, rule);
+        }
+        plugin.logEvent(new ShopRemoveLog(QUserImpl.createFullFilled(CommonUtil.getNilUniqueId(), "SYSTEM", false), source, shop.saveToInfoStorage()));
+        plugin.getShopManager().deleteShop(shop);
+    }
+
+    /**
+     * The maintenance rule
+     *
+     * @param reason        The reason shown to the sender
+     * @param chunkRequired The rule only runs when the shop chunk is loaded
+     * @param predicate     The predicate
+     */
+    public record Rule(@NotNull String reason, boolean chunkRequired, @NotNull Predicate<Shop> predicate) {
+    }
+
+    /**
+     * The scan result
+     *
+     * @param scanned         The shops scanned
+     * @param matched         The shops matched (and removed if not dry-run)
+     * @param unloadedChunks  The chunks that were not loaded, the chunk required rules skipped for them
+     * @param dryRun          The scan is dry-run
+     */
+    public record Result(int scanned, int matched, int unloadedChunks, boolean dryRun) {
+    }
+
+    private record ChunkPos(@NotNull String world, int x, int z) {
+    }
+
+    private class ScanTask extends BukkitRunnable {
+        private final Queue<ChunkPos> chunks;
+        private final int total;
+        private final CompletableFuture<Result> future;
+        private int scanned = 0;
+        private int matched = 0;
+        private int unloadedChunks = 0;
+        private long lastProgress = System.currentTimeMillis();
+
+        private ScanTask(@NotNull Queue<ChunkPos> chunks, int total, @NotNull CompletableFuture<Result> future) {
+            this.chunks = chunks;
+            this.total = total;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxTickMsUsage);
+                while (!chunks.isEmpty() && System.nanoTime() < deadline) {
+                    scan(chunks.poll());
+                }
+            } catch (Throwable th) {
+                this.cancel();
+                future.completeExceptionally(th);
+                return;
+            }
+            if (chunks.isEmpty()) {
+                this.cancel();
+                future.complete(new Result(scanned, matched, unloadedChunks, dryRun));
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastProgress >= PROGRESS_INTERVAL_MILLIS) {
+                lastProgress = now;
+                plugin.text().of(sender, "maintenance-scan.progress", scanned, total, matched).send();
+            }
+        }
+
+        private void scan(@NotNull ChunkPos pos) {
+            // The chunk map may have been changed since the scan started, read it again
+            Map<Location, Shop> inChunk = plugin.getShopManager().getShops(pos.world(), pos.x(), pos.z());
+            if (inChunk == null || inChunk.isEmpty()) {
+                return;
+            }
+            World world = Bukkit.getWorld(pos.world());
+            boolean chunkLoaded = world != null && world.isChunkLoaded(pos.x(), pos.z());
+            if (!chunkLoaded) {
+                unloadedChunks++;
+            }
+            for (Shop shop : new ArrayList<>(inChunk.values())) {
+                scanned++;
+                Rule rule = match(shop, chunkLoaded);
+                if (rule != null) {
+                    matched++;
+                    handle(shop, rule);
+                }
+            }
+        }
+    }
+}
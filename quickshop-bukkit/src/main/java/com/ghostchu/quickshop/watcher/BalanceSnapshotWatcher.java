@@ -0,0 +1,22 @@
+package com.ghostchu.quickshop.watcher;
+
+import com.ghostchu.quickshop.api.economy.AbstractEconomy;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * BalanceSnapshotWatcher drops the economy balance snapshot at every tick,
+ * so the snapshot only serves the repeated balance reads in the same tick.
+ */
+public class BalanceSnapshotWatcher extends BukkitRunnable {
+    private final AbstractEconomy economy;
+
+    public BalanceSnapshotWatcher(@NotNull AbstractEconomy economy) {
+        this.economy = economy;
+    }
+
+    @Override
+    public void run() {
+        economy.clearBalanceSnapshot();
+    }
+}
@@ -0,0 +1,53 @@
+package com.ghostchu.quickshop.watcher;
+
+import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.database.DataTables;
+import com.ghostchu.quickshop.database.SimpleDatabaseHelperV2;
+import com.ghostchu.quickshop.util.logger.Log;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * LogRetentionWatcher compacts the log tables in background.
+ * Every run only deletes a small chunk from each log table, so the live server never stalls on a huge DELETE.
+ */
+public class LogRetentionWatcher extends BukkitRunnable {
+    private final QuickShop plugin;
+    private final SimpleDatabaseHelperV2 databaseHelper;
+    private final long retentionMillis;
+    private final int chunkSize;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public LogRetentionWatcher(QuickShop plugin, SimpleDatabaseHelperV2 databaseHelper, int retentionDays, int chunkSize) {
+        this.plugin = plugin;
+        this.databaseHelper = databaseHelper;
+        this.retentionMillis = TimeUnit.DAYS.toMillis(retentionDays);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Override
+    public void run() {
+        if (!running.compareAndSet(false, true)) {
+            Log.debug("Another log compaction task still running!");
+            return;
+        }
+        try {
+            Date cutoff = new Date(System.currentTimeMillis() - retentionMillis);
+            int deleted = 0;
+            for (DataTables table : SimpleDatabaseHelperV2.LOG_TABLES) {
+                deleted += databaseHelper.purgeLogsChunk(table, cutoff, chunkSize);
+            }
+            if (deleted > 0) {
+                Log.debug("Log compaction deleted " + deleted + " expired log records in background.");
+            }
+        } catch (SQLException e) {
+            plugin.logger().warn("Failed to compact the log tables, will retry in next time", e);
+        } finally {
+            running.set(false);
+        }
+    }
+}
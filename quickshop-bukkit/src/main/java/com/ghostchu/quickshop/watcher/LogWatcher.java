@@ -1,104 +1,301 @@
 package com.ghostchu.quickshop.watcher;
 
 import com.ghostchu.quickshop.QuickShop;
+import com.ghostchu.quickshop.common.util.JsonUtil;
+import com.ghostchu.quickshop.database.SimpleDatabaseHelperV2;
+import com.ghostchu.quickshop.util.logger.Log;
+import com.ghostchu.quickshop.util.paste.item.SubPasteItem;
+import com.ghostchu.quickshop.util.paste.util.HTMLTable;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipParameters;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class LogWatcher extends BukkitRunnable implements AutoCloseable {
+/**
+ * LogWatcher is the event log pipeline.
+ * The callers only enqueue the raw log objects (lock-free), the background task serializes and writes them in batches
+ * to the log file (rotated by size and date) or to the database.
+ */
+public class LogWatcher extends BukkitRunnable implements AutoCloseable, SubPasteItem {
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
     private static final DateTimeFormatter LOG_FILE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
-    private final Queue<String> logs = new ConcurrentLinkedQueue<>();
+    private final QuickShop plugin;
+    private final File log;
+    private final Queue<PendingLog> logs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger peakPending = new AtomicInteger();
+    private final boolean toDatabase;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long rotateSize;
+    private final boolean rotateDaily;
+    private volatile long lastBatchTime;
+    private long rotations;
+    private boolean started = false;
 
-    private PrintWriter printWriter = null;
+    private Writer writer = null;
+    private String openedDate;
 
     public LogWatcher(QuickShop plugin, File log) {
-        try {
-            boolean deleteFailed = false;
-            if (!log.exists()) {
-                //noinspection ResultOfMethodCallIgnored
-                log.getParentFile().mkdirs();
-                //noinspection ResultOfMethodCallIgnored
-                log.createNewFile();
-            } else {
-                if ((log.length() / 1024f / 1024f) > plugin.getConfig().getDouble("logging.file-size")) {
-                    Path logPath = plugin.getDataFolder().toPath().resolve("logs");
-                    Files.createDirectories(logPath);
-                    //Find a available name
-                    Path targetPath;
-                    int i = 1;
-                    do {
-                        targetPath = logPath.resolve(ZonedDateTime.now().format(LOG_FILE_FORMATTER) + "-" + i + ".log.gz");
-                        i++;
-                    } while (Files.exists(targetPath));
-                    Files.createFile(targetPath);
-                    GzipParameters gzipParameters = new GzipParameters();
-                    gzipParameters.setFilename(log.getName());
-                    try (GzipCompressorOutputStream archiveOutputStream = new GzipCompressorOutputStream(new BufferedOutputStream(new FileOutputStream(targetPath.toFile())), gzipParameters)) {
-                        Files.copy(log.toPath(), archiveOutputStream);
-                        archiveOutputStream.finish();
-                        if (log.delete()) {
-                            //noinspection ResultOfMethodCallIgnored
-                            log.createNewFile();
-                        } else {
-                            deleteFailed = true;
-                        }
-                    }
+        this.plugin = plugin;
+        this.log = log;
+        this.toDatabase = plugin.getConfig().getInt("logging.location") == 1;
+        this.queueCapacity = plugin.getConfig().getInt("logging.queue-capacity", 100000);
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("logging.batch-size", 500));
+        this.rotateSize = (long) (plugin.getConfig().getDouble("logging.file-size") * 1024 * 1024);
+        this.rotateDaily = plugin.getConfig().getBoolean("logging.rotate-daily", true);
+        if (!toDatabase) {
+            try {
+                boolean deleteFailed = false;
+                if (!log.exists()) {
+                    //noinspection ResultOfMethodCallIgnored
+                    log.getParentFile().mkdirs();
+                    //noinspection ResultOfMethodCallIgnored
+                    log.createNewFile();
+                } else if (log.length() > rotateSize) {
+                    deleteFailed = !archive();
                 }
+                openWriter(deleteFailed);
+            } catch (FileNotFoundException e) {
+                plugin.logger().error("Log file was not found!", e);
+            } catch (IOException e) {
+                plugin.logger().error("Could not create the log file!", e);
             }
-            FileWriter logFileWriter;
-            if (deleteFailed) {
-                //If could not delete, just override it
-                logFileWriter = new FileWriter(log, false);
-            } else {
-                //Otherwise append
-                logFileWriter = new FileWriter(log, true);
-            }
-            printWriter = new PrintWriter(logFileWriter);
-        } catch (FileNotFoundException e) {
-            plugin.logger().error("Log file was not found!", e);
-        } catch (IOException e) {
-            plugin.logger().error("Could not create the log file!", e);
         }
+        plugin.getPasteManager().register(plugin.getJavaPlugin(), this);
+    }
+
+    /**
+     * Schedule this watcher to drain the log queue in background, only schedule once
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        runTaskTimerAsynchronously(plugin.getJavaPlugin(), 10, 10);
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    private void openWriter(boolean truncate) throws IOException {
+        if (truncate) {
+            //If could not delete, just override it
+            writer = Files.newBufferedWriter(log.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } else {
+            //Otherwise append
+            writer = Files.newBufferedWriter(log.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        openedDate = LOG_FILE_FORMATTER.format(Instant.now());
+    }
+
+    /**
+     * Compress current log file into logs folder and delete it
+     *
+     * @return true if the log file has been deleted
+     * @throws IOException Failed to archive
+     */
+    private boolean archive() throws IOException {
+        Path logPath = plugin.getDataFolder().toPath().resolve("logs");
+        Files.createDirectories(logPath);
+        //Find a available name
+        Path targetPath;
+        int i = 1;
+        do {
+            targetPath = logPath.resolve(ZonedDateTime.now().format(LOG_FILE_FORMATTER) + "-" + i + ".log.gz");
+            i++;
+        } while (Files.exists(targetPath));
+        Files.createFile(targetPath);
+        GzipParameters gzipParameters = new GzipParameters();
+        gzipParameters.setFilename(log.getName());
+        try (GzipCompressorOutputStream archiveOutputStream = new GzipCompressorOutputStream(new BufferedOutputStream(new FileOutputStream(targetPath.toFile())), gzipParameters)) {
+            Files.copy(log.toPath(), archiveOutputStream);
+            archiveOutputStream.finish();
+        }
+        rotations++;
+        if (log.delete()) {
+            //noinspection ResultOfMethodCallIgnored
+            log.createNewFile();
+            return true;
+        }
+        return false;
+    }
+
+    private void rotateIfNeeded() throws IOException {
+        boolean sizeExceeded = log.length() > rotateSize;
+        boolean dateChanged = rotateDaily && !LOG_FILE_FORMATTER.format(Instant.now()).equals(openedDate) && log.length() > 0;
+        if (!sizeExceeded && !dateChanged) {
+            return;
+        }
+        writer.close();
+        writer = null;
+        boolean deleted = archive();
+        openWriter(!deleted);
+        Log.debug("Log file rotated, size exceeded: " + sizeExceeded + ", date changed: " + dateChanged);
     }
 
     @Override
-    public void close() {
-        if (printWriter != null) {
-            printWriter.flush();
-            printWriter.close();
+    public synchronized void close() {
+        if (started) {
+            try {
+                cancel();
+            } catch (IllegalStateException ignored) {
+            }
+        }
+        drain(Integer.MAX_VALUE);
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                plugin.logger().warn("Failed to close the log file", e);
+            }
+            writer = null;
         }
+        plugin.getPasteManager().unregister(plugin.getJavaPlugin(), this);
     }
 
+    /**
+     * Enqueue a text line to log file
+     *
+     * @param log The log line
+     */
     public void log(@NotNull String log) {
-        logs.add("[" + DATETIME_FORMATTER.format(Instant.now()) + "] " + log);
+        offer(new PendingLog(System.currentTimeMillis(), log));
+    }
+
+    /**
+     * Enqueue an event object, the object will be serialized in background
+     *
+     * @param event The event object
+     */
+    public void logEvent(@NotNull Object event) {
+        offer(new PendingLog(System.currentTimeMillis(), event));
+    }
+
+    private void offer(@NotNull PendingLog pendingLog) {
+        int size = pending.incrementAndGet();
+        if (size > queueCapacity) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        logs.add(pendingLog);
+        enqueued.incrementAndGet();
+        peakPending.accumulateAndGet(size, Math::max);
     }
 
     @Override
-    public void run() {
-        if (printWriter == null) {
+    public synchronized void run() {
+        drain(batchSize * 20);
+    }
+
+    private void drain(int maxRecords) {
+        if (!toDatabase && writer == null) {
             //Waiting for init
             return;
         }
-        Iterator<String> iterator = logs.iterator();
-        while (iterator.hasNext()) {
-            String log = iterator.next();
-            printWriter.println(log);
-            iterator.remove();
+        int processed = 0;
+        List<PendingLog> batch = new ArrayList<>(Math.min(batchSize, Math.max(pending.get(), 1)));
+        while (processed < maxRecords) {
+            PendingLog pendingLog = logs.poll();
+            if (pendingLog == null) {
+                break;
+            }
+            pending.decrementAndGet();
+            batch.add(pendingLog);
+            processed++;
+            if (batch.size() >= batchSize) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+        if (!toDatabase && processed > 0) {
+            try {
+                writer.flush();
+                rotateIfNeeded();
+            } catch (IOException e) {
+                plugin.logger().warn("Failed to flush or rotate the log file", e);
+            }
         }
-        printWriter.flush();
     }
 
+    private void writeBatch(@NotNull List<PendingLog> batch) {
+        long startTime = System.currentTimeMillis();
+        try {
+            if (toDatabase) {
+                List<Object> records = new ArrayList<>(batch.size());
+                for (PendingLog pendingLog : batch) {
+                    records.add(pendingLog.content());
+                }
+                ((SimpleDatabaseHelperV2) plugin.getDatabaseHelper()).insertHistoryRecords(records);
+            } else {
+                for (PendingLog pendingLog : batch) {
+                    writer.write("[" + DATETIME_FORMATTER.format(Instant.ofEpochMilli(pendingLog.time())) + "] " + pendingLog.serialize());
+                    writer.write(System.lineSeparator());
+                }
+            }
+            written.addAndGet(batch.size());
+        } catch (IOException | SQLException e) {
+            failed.addAndGet(batch.size());
+            plugin.logger().warn("Failed to write {} log records", batch.size(), e);
+        }
+        lastBatchTime = System.currentTimeMillis() - startTime;
+    }
+
+    @Override
+    public @NotNull String genBody() {
+        HTMLTable table = new HTMLTable(2, true);
+        table.insert("Location", toDatabase ? "Database" : log.getName());
+        table.insert("Pending", pending.get());
+        table.insert("Peak Pending", peakPending.get());
+        table.insert("Queue Capacity", queueCapacity);
+        table.insert("Enqueued", enqueued.get());
+        table.insert("Written", written.get());
+        table.insert("Dropped (Back-pressure)", dropped.get());
+        table.insert("Failed", failed.get());
+        table.insert("Last Batch Time", lastBatchTime + "ms");
+        table.insert("Rotations", rotations);
+        return table.render();
+    }
+
+    @Override
+    public @NotNull String getTitle() {
+        return "Log Watcher";
+    }
+
+    private record PendingLog(long time, @NotNull Object content) {
+        @NotNull
+        public String serialize() {
+            if (content instanceof String str) {
+                return str;
+            }
+            return JsonUtil.getGson().toJson(content);
+        }
+    }
 }
@@ -4,7 +4,7 @@ import com.ghostchu.quickshop.QuickShop;
 import com.ghostchu.quickshop.api.event.ShopOngoingFeeEvent;
 import com.ghostchu.quickshop.api.obj.QUser;
 import com.ghostchu.quickshop.api.shop.Shop;
-import com.ghostchu.quickshop.economy.SimpleEconomyTransaction;
+import com.ghostchu.quickshop.economy.SimpleBatchEconomyTransaction;
 import com.ghostchu.quickshop.shop.SimpleShopManager;
 import com.ghostchu.quickshop.util.MsgUtil;
 import com.ghostchu.quickshop.util.Util;
@@ -16,6 +16,8 @@ import org.bukkit.World;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -42,6 +44,10 @@ public class OngoingFeeWatcher extends BukkitRunnable {
         boolean allowLoan = plugin.getConfig().getBoolean("shop.allow-economy-loan");
         boolean ignoreUnlimited = plugin.getConfig().getBoolean("shop.ongoing-fee.ignore-unlimited");
         double gobalCost = plugin.getConfig().getDouble("shop.ongoing-fee.cost-per-shop");
+        // The fees are collected in one batch per world, every owner only be withdrawn once
+        Map<World, SimpleBatchEconomyTransaction> batches = new HashMap<>();
+        // Remaining balance per owner, so the owner who can't afford all shops will lose the shops out of budget
+        Map<String, Double> remainingBalances = new HashMap<>();
         for (Shop shop : plugin.getShopManager().getAllShops()) {
             if (!shop.isUnlimited() || !ignoreUnlimited) {
                 QUser shopOwner = shop.getOwner();
@@ -51,9 +57,11 @@ public class OngoingFeeWatcher extends BukkitRunnable {
                     continue;
                 }
                 double cost = gobalCost;
-                World world = location.getWorld();
+                World world = Objects.requireNonNull(location.getWorld());
                 //We must check balance manually to avoid shop missing hell when tax account broken
-                if (allowLoan || plugin.getEconomy().getBalance(shopOwner, Objects.requireNonNull(world), plugin.getCurrency()) >= cost) {
+                String ownerKey = shopOwner.serialize() + "@" + world.getName();
+                double remaining = allowLoan ? Double.MAX_VALUE : remainingBalances.computeIfAbsent(ownerKey, k -> plugin.getEconomy().getBalance(shopOwner, world, plugin.getCurrency()));
+                if (remaining >= cost) {
                     QUser taxAccount = null;
                     if (shop.getTaxAccount() != null) {
                         taxAccount = shop.getTaxAccount();
@@ -70,29 +78,28 @@ public class OngoingFeeWatcher extends BukkitRunnable {
                     }
 
                     cost = event.getCost();
-                    double finalCost = cost;
-
-                    QUser finalTaxAccount = taxAccount;
-                    Util.mainThreadRun(() -> {
-                        SimpleEconomyTransaction transaction = SimpleEconomyTransaction.builder()
-                                .allowLoan(allowLoan)
-                                .currency(plugin.getCurrency())
-                                .core(plugin.getEconomy())
-                                .world(world)
-                                .amount(finalCost)
-                                .to(finalTaxAccount)
-                                .from(shopOwner).build();
-
-                        boolean success = transaction.failSafeCommit();
-                        if (!success) {
-                            warningSender.sendWarn("Unable to deposit ongoing fee to tax account, the last error is " + transaction.getLastError());
-                        }
-                    });
+                    if (!allowLoan) {
+                        remainingBalances.put(ownerKey, remaining - cost);
+                    }
+                    batches.computeIfAbsent(world, w -> SimpleBatchEconomyTransaction.builder()
+                                    .allowLoan(allowLoan)
+                                    .currency(plugin.getCurrency())
+                                    .core(plugin.getEconomy())
+                                    .world(w)
+                                    .build())
+                            .addPayment(shopOwner, taxAccount, cost, shop);
                 } else {
                     this.removeShop(shop);
                 }
             }
         }
+        for (SimpleBatchEconomyTransaction batch : batches.values()) {
+            Util.mainThreadRun(() -> batch.commit().whenComplete((failed, throwable) -> {
+                if (throwable != null || !failed.isEmpty()) {
+                    warningSender.sendWarn("Unable to deposit ongoing fee to tax account, the last error is " + batch.getLastError());
+                }
+            }));
+        }
     }
 
     /**
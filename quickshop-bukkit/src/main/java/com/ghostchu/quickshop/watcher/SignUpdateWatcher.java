@@ -6,11 +6,12 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 
 import java.time.Instant;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.*;
 
 public class SignUpdateWatcher extends BukkitRunnable {
-    private final Queue<Shop> signUpdateQueue = new LinkedList<>();
+    private final Deque<Shop> signUpdateQueue = new ArrayDeque<>();
+    // Shop equals compares the whole shop data, track the queued shops by identity
+    private final Set<Shop> scheduled = Collections.newSetFromMap(new IdentityHashMap<>());
 
     @Override
     public void run() {
@@ -18,13 +19,18 @@ public class SignUpdateWatcher extends BukkitRunnable {
         Instant endTime = startTime.plusMillis(50);
         Shop shop = signUpdateQueue.poll();
         while (shop != null && !Instant.now().isAfter(endTime)) {
+            scheduled.remove(shop);
             shop.setSignText(QuickShop.getInstance().text().findRelativeLanguages(shop.getOwner(), false));
             shop = signUpdateQueue.poll();
         }
+        if (shop != null) {
+            // Out of time, put it back
+            signUpdateQueue.addFirst(shop);
+        }
     }
 
     public void scheduleSignUpdate(@NotNull Shop shop) {
-        if (signUpdateQueue.contains(shop)) {
+        if (!scheduled.add(shop)) {
             return; // Ignore if schedule too frequently
         }
         signUpdateQueue.add(shop);